@@ -2,6 +2,7 @@ plugins {
     id("java")
     id("application")
     id("com.github.johnrengelman.shadow") version "8.1.1"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.gabby"
@@ -32,6 +33,25 @@ tasks.shadowJar {
     }
 }
 
+// Benchmarks live in src/jmh. Run all of them with "./gradlew jmh", or some of them with e.g.
+// "./gradlew jmh -PjmhIncludes=Parser"
+jmh {
+    jmhVersion.set("1.37")
+
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(2)
+    timeOnIteration.set("2s")
+    warmup.set("2s")
+
+    if (project.hasProperty("jmhIncludes")) {
+        includes.set(listOf(project.property("jmhIncludes").toString()))
+    }
+
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+}
+
 tasks.test {
     useJUnitPlatform()
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.softlocked.orbit.benchmark;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.exception.ParsingException;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the list functions of the container library on lists of different sizes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContainerBenchmark {
+    private static final String CODE = """
+            fun fill(n) {
+                var l = list()
+                for (i = 0 to n) {
+                    list.add(l, i)
+                }
+                return l
+            }
+            fun lists(n) {
+                var l = fill(n)
+                int sum = 0
+                for (i = 0 to n) {
+                    sum = sum + list.get(l, i)
+                    list.set(l, i, sum)
+                }
+                bool found = list.contains(l, sum)
+                while (!list.isEmpty(l)) {
+                    list.remove(l, list.size(l) - 1)
+                }
+                return sum
+            }
+            fun iterate(n) {
+                var l = fill(n)
+                int sum = 0
+                for x in l do
+                    sum = sum + x
+                end
+                return sum
+            }
+            """;
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private GlobalContext context;
+    private ASTNode fill;
+    private ASTNode operations;
+    private ASTNode iteration;
+
+    @Setup
+    public void setup() throws ParsingException, InterruptedException {
+        context = Scripts.load(CODE, false);
+        fill = Scripts.parse("return fill(" + size + ")", context);
+        operations = Scripts.parse("return lists(" + size + ")", context);
+        iteration = Scripts.parse("return iterate(" + size + ")", context);
+    }
+
+    @Benchmark
+    public Object fill() throws InterruptedException {
+        return fill.evaluate(context);
+    }
+
+    @Benchmark
+    public Object operations() throws InterruptedException {
+        return operations.evaluate(context);
+    }
+
+    @Benchmark
+    public Object iteration() throws InterruptedException {
+        return iteration.evaluate(context);
+    }
+}
@@ -0,0 +1,50 @@
+package com.softlocked.orbit.benchmark;
+
+import com.softlocked.orbit.core.datatypes.functions.IFunction;
+import com.softlocked.orbit.core.exception.ParsingException;
+import com.softlocked.orbit.interpreter.function.coroutine.Coroutine;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import com.softlocked.orbit.memory.LocalContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures running coroutines to completion with {@link Coroutine#resume()}, for coroutines yielding
+ * a different number of times
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CoroutineBenchmark {
+    @Param({"10", "100", "1000"})
+    public int yields;
+
+    private GlobalContext context;
+    private IFunction generator;
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    @Setup
+    public void setup() throws ParsingException, InterruptedException {
+        StringBuilder code = new StringBuilder("coroutine generator() {\n");
+        for (int i = 0; i < yields; i++) {
+            code.append("    yield ").append(i).append(" * 2\n");
+        }
+        code.append("}\n");
+
+        context = Scripts.load(code.toString(), false);
+        generator = context.getFunction("generator", 0);
+    }
+
+    @Benchmark
+    public Object resume() throws InterruptedException {
+        Coroutine coroutine = (Coroutine) generator.call(new LocalContext(context), NO_ARGS);
+
+        Object last = null;
+        while (!coroutine.isFinished()) {
+            last = coroutine.resume();
+        }
+        return last;
+    }
+}
@@ -0,0 +1,50 @@
+package com.softlocked.orbit.benchmark;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.exception.ParsingException;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures arithmetic in loops of Orbit code
+ *
+ * @see OperatorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EvaluatorBenchmark {
+    private static final String CODE = """
+            fun arithmetic(n) {
+                int sum = 0
+                double d = 0.5
+                for (i = 0 to n) {
+                    sum = sum + i * 3 % 7 - 1
+                    d = d * 1.0001 + i / 2.0
+                }
+                return sum + d
+            }
+            """;
+
+    @Param({"10", "1000", "100000"})
+    public int iterations;
+
+    @Param({"false", "true"})
+    public boolean compile;
+
+    private GlobalContext context;
+    private ASTNode call;
+
+    @Setup
+    public void setup() throws ParsingException, InterruptedException {
+        context = Scripts.load(CODE, compile);
+        call = Scripts.parse("return arithmetic(" + iterations + ")", context);
+    }
+
+    @Benchmark
+    public Object arithmetic() throws InterruptedException {
+        return call.evaluate(context);
+    }
+}
@@ -0,0 +1,65 @@
+package com.softlocked.orbit.benchmark;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.exception.ParsingException;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures calls to Orbit functions from a loop, which go through {@code FunctionCallASTNode}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FunctionCallBenchmark {
+    private static final String CODE = """
+            fun add(a, b) {
+                return a + b
+            }
+            fun fib(n) {
+                if (n < 2) {
+                    return n
+                }
+                return fib(n - 1) + fib(n - 2)
+            }
+            fun calls(n) {
+                int sum = 0
+                for (i = 0 to n) {
+                    sum = add(sum, i)
+                }
+                return sum
+            }
+            """;
+
+    @Param({"10", "1000", "100000"})
+    public int calls;
+
+    @Param({"false", "true"})
+    public boolean compile;
+
+    private GlobalContext context;
+    private ASTNode loop;
+    private ASTNode recursion;
+
+    @Setup
+    public void setup() throws ParsingException, InterruptedException {
+        context = Scripts.load(CODE, compile);
+        loop = Scripts.parse("return calls(" + calls + ")", context);
+
+        // fib(n) makes about 1.6^n calls
+        int n = (int) Math.round(Math.log(calls) / Math.log(1.618));
+        recursion = Scripts.parse("return fib(" + n + ")", context);
+    }
+
+    @Benchmark
+    public Object loop() throws InterruptedException {
+        return loop.evaluate(context);
+    }
+
+    @Benchmark
+    public Object recursion() throws InterruptedException {
+        return recursion.evaluate(context);
+    }
+}
@@ -0,0 +1,31 @@
+package com.softlocked.orbit.benchmark;
+
+import com.softlocked.orbit.core.exception.ParsingException;
+import com.softlocked.orbit.lexer.Lexer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures tokenizing programs of different sizes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LexerBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int statements;
+
+    private String code;
+
+    @Setup
+    public void setup() {
+        code = Scripts.program(statements);
+    }
+
+    @Benchmark
+    public List<String> tokenize() throws ParsingException {
+        return new Lexer(code).tokenize();
+    }
+}
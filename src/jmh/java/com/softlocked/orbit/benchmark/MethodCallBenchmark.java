@@ -0,0 +1,78 @@
+package com.softlocked.orbit.benchmark;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.datatypes.classes.OrbitObject;
+import com.softlocked.orbit.core.exception.ParsingException;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures calls to methods of {@link OrbitObject}s, from Orbit code and from Java
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MethodCallBenchmark {
+    private static final String CODE = """
+            class Counter {
+                int count = 0
+                fun increment(by) {
+                    count = count + by
+                }
+                fun get() {
+                    return count
+                }
+            }
+            class LoggingCounter : Counter {
+                int calls = 0
+                fun increment(by) {
+                    calls = calls + 1
+                    count = count + by
+                }
+            }
+            fun methods(n) {
+                var c = Counter()
+                var l = LoggingCounter()
+                for (i = 0 to n) {
+                    c:increment(1)
+                    l:increment(2)
+                }
+                return c:get() + l:get()
+            }
+            """;
+
+    @Param({"10", "1000", "100000"})
+    public int calls;
+
+    @Param({"false", "true"})
+    public boolean compile;
+
+    private GlobalContext context;
+    private ASTNode loop;
+    private OrbitObject counter;
+
+    private final List<Object> one = List.of(1);
+
+    @Setup
+    public void setup() throws ParsingException, InterruptedException {
+        context = Scripts.load(CODE, compile);
+        loop = Scripts.parse("return methods(" + calls + ")", context);
+        counter = context.getClassType("Counter").createInstance(List.of(), context);
+    }
+
+    @Benchmark
+    public Object orbit() throws InterruptedException {
+        return loop.evaluate(context);
+    }
+
+    @Benchmark
+    public Object java() throws InterruptedException {
+        for (int i = 0; i < calls; i++) {
+            counter.callFunction("increment", one);
+        }
+        return counter.callFunction("get", List.of());
+    }
+}
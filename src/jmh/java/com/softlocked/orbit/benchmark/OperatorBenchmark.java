@@ -0,0 +1,34 @@
+package com.softlocked.orbit.benchmark;
+
+import com.softlocked.orbit.core.evaluator.Evaluator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures calling the {@link Evaluator} directly with boxed operands of mixed types, which is what the
+ * interpreter does for operands it can't keep unboxed
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OperatorBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int iterations;
+
+    private final Object[] operands = {1, 2L, 3.5, 4.5f, 5};
+
+    @Benchmark
+    public void operators(Blackhole blackhole) throws InterruptedException {
+        for (int i = 0; i < iterations; i++) {
+            Object a = operands[i % operands.length];
+            Object b = operands[(i + 1) % operands.length];
+
+            blackhole.consume(Evaluator.add(a, b));
+            blackhole.consume(Evaluator.multiply(a, b));
+            blackhole.consume(Evaluator.modulo(a, b));
+            blackhole.consume(Evaluator.equal(a, b));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.softlocked.orbit.benchmark;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.exception.ParsingException;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import com.softlocked.orbit.lexer.Lexer;
+import com.softlocked.orbit.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing already tokenized programs of different sizes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParserBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int statements;
+
+    private List<String> tokens;
+    private GlobalContext context;
+
+    @Setup
+    public void setup() throws ParsingException {
+        tokens = new Lexer(Scripts.program(statements)).tokenize();
+        context = new GlobalContext();
+    }
+
+    @Benchmark
+    public ASTNode parse() throws ParsingException {
+        return Parser.parse(tokens, context);
+    }
+}
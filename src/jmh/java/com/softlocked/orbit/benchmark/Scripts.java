@@ -0,0 +1,58 @@
+package com.softlocked.orbit.benchmark;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.exception.ParsingException;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import com.softlocked.orbit.lexer.Lexer;
+import com.softlocked.orbit.parser.Parser;
+
+/**
+ * Helpers shared by the benchmarks for setting up contexts and generating sources of a given size
+ */
+final class Scripts {
+    private Scripts() {
+    }
+
+    /**
+     * Creates a context and runs the code in it, usually to declare the functions and classes a benchmark calls
+     */
+    static GlobalContext load(String code, boolean compile) throws ParsingException, InterruptedException {
+        GlobalContext context = new GlobalContext();
+        context.setCompilationEnabled(compile);
+
+        parse(code, context).evaluate(context);
+
+        return context;
+    }
+
+    static ASTNode parse(String code, GlobalContext context) throws ParsingException {
+        return Parser.parse(new Lexer(code).tokenize(), context);
+    }
+
+    /**
+     * Generates a program with the given number of statements, mixing declarations, arithmetic, conditions,
+     * loops, strings and calls, so that all kinds of tokens occur in it
+     */
+    static String program(int statements) {
+        StringBuilder code = new StringBuilder();
+
+        for (int i = 0; i < statements; i++) {
+            switch (i % 5) {
+                case 0 -> code.append("var v").append(i).append(" = ").append(i).append(" * 2 + 3.5\n");
+                case 1 -> code.append("int n").append(i).append(" = (").append(i).append(" % 7) << 2\n");
+                case 2 -> code.append("if (v").append(i - 2).append(" >= 10 && n").append(i - 1).append(" != 3) {\n")
+                        .append("    v").append(i - 2).append(" = v").append(i - 2).append(" - 1\n")
+                        .append("} else {\n")
+                        .append("    print(\"small: \" + v").append(i - 2).append(")\n")
+                        .append("}\n");
+                case 3 -> code.append("for (i = 0 to ").append(i).append(") {\n")
+                        .append("    n").append(i - 2).append(" += i\n")
+                        .append("}\n");
+                case 4 -> code.append("list l").append(i).append(" = [v").append(i - 4).append(", n").append(i - 3)
+                        .append(", \"item\", true]\n");
+            }
+        }
+
+        return code.toString();
+    }
+}
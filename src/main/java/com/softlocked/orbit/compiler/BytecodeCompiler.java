@@ -0,0 +1,1374 @@
+package com.softlocked.orbit.compiler;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.ast.SourceMap;
+import com.softlocked.orbit.core.ast.operation.OperationType;
+import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.core.datatypes.functions.IFunction;
+import com.softlocked.orbit.interpreter.ast.generic.BodyASTNode;
+import com.softlocked.orbit.interpreter.ast.generic.CompiledASTNode;
+import com.softlocked.orbit.interpreter.ast.generic.FrameASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.OptimizedLoopASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.WhileASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForDowntoASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForToASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.OperationASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.TernaryASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.BranchASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.ConditionalASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.controlflow.BreakASTNode;
+import com.softlocked.orbit.interpreter.ast.value.LocalVariableASTNode;
+import com.softlocked.orbit.interpreter.ast.value.StringTemplateASTNode;
+import com.softlocked.orbit.interpreter.ast.value.ValueASTNode;
+import com.softlocked.orbit.interpreter.ast.value.VariableASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.AssignLocalASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.AssignVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.ConstLocalASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.DecLocalASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.FunctionCallASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.collection.CollectionAccessASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.collection.CollectionSetASTNode;
+import com.softlocked.orbit.interpreter.function.OrbitFunction;
+import com.softlocked.orbit.interpreter.function.coroutine.CoroutineFunction;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import com.softlocked.orbit.memory.FrameLayout;
+import com.softlocked.orbit.utils.Pair;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.softlocked.orbit.compiler.CodeEmitter.*;
+
+/**
+ * Compiles resolved Orbit code into JVM classes, so that hot code is run by the JIT instead of the tree walker.
+ * <p>
+ * Two kinds of units are compiled: named functions declared at the top level of a program, and the top-level
+ * statements the resolver wrapped in a {@link FrameASTNode} (loops and blocks with locals of their own).
+ * Frame slots become JVM locals. Slots declared as <code>int</code>, <code>long</code>, <code>double</code> or
+ * <code>bool</code> are kept unboxed when every value stored in them is known to be a number (or a boolean),
+ * and arithmetic between such values is done with plain JVM instructions. Everything else is boxed and goes through
+ * {@link CompiledRuntime} and the {@link com.softlocked.orbit.core.evaluator.Evaluator}, exactly like the tree walker.
+ * <p>
+ * A unit containing anything the compiler doesn't handle (lambdas, references, try/catch, coroutines...) is left
+ * to the interpreter.
+ */
+public class BytecodeCompiler {
+    private static final AtomicInteger UNITS = new AtomicInteger();
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String CONTEXT = "com/softlocked/orbit/memory/ILocalContext";
+    private static final String GLOBAL = "com/softlocked/orbit/interpreter/memory/GlobalContext";
+    private static final String RUNTIME = "com/softlocked/orbit/compiler/CompiledRuntime";
+    private static final String EVALUATOR = "com/softlocked/orbit/core/evaluator/Evaluator";
+    private static final String FUNCTION = "com/softlocked/orbit/compiler/CompiledFunction";
+    private static final String CALL_SITE = "com/softlocked/orbit/compiler/CompiledCallSite";
+    private static final String TYPE = "com/softlocked/orbit/core/datatypes/Variable$Type";
+    private static final String VARIABLE_NODE = "com/softlocked/orbit/interpreter/ast/value/VariableASTNode";
+    private static final String ASSIGN_VAR = "com/softlocked/orbit/interpreter/ast/variable/AssignVarASTNode";
+
+    private static final String INVOKE = "(L" + CONTEXT + ";[Ljava/lang/Object;)Ljava/lang/Object;";
+    private static final String BINARY = "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;";
+
+    // Fixed JVM locals of the invoke method
+    private static final int THIS = 0;
+    private static final int CTX = 1;
+    private static final int ARGS = 2;
+    private static final int ROOT = 3;
+
+    /**
+     * Thrown when a unit uses something the compiler doesn't handle
+     */
+    private static class Unsupported extends RuntimeException {
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * The type of a value on the operand stack, or of a JVM local holding a slot
+     */
+    private enum Kind {
+        INT, LONG, DOUBLE, BOOL, OBJECT;
+
+        boolean isNumber() {
+            return this == INT || this == LONG || this == DOUBLE;
+        }
+
+        int size() {
+            return this == LONG || this == DOUBLE ? 2 : 1;
+        }
+
+        static Kind wider(Kind a, Kind b) {
+            return a.ordinal() > b.ordinal() ? a : b;
+        }
+    }
+
+    /**
+     * Compiles every unit of a resolved program which can be compiled
+     * @param program The resolved program
+     * @param context The context the program will run in, used to look up the functions it calls
+     * @return The program, with compiled statements replaced by {@link CompiledASTNode}s
+     */
+    public static ASTNode compile(ASTNode program, GlobalContext context) {
+        return compile(program, context, null);
+    }
+
+    /**
+     * Compiles a resolved program, giving the compiled statements the positions of the ones they replace
+     * @param source The positions of the parsed nodes, or null
+     */
+    public static ASTNode compile(ASTNode program, GlobalContext context, SourceMap source) {
+        if (!(program instanceof BodyASTNode body)) {
+            return compileStatement(program, context, source);
+        }
+
+        List<ASTNode> statements = new ArrayList<>();
+        for (ASTNode statement : body.statements()) {
+            statements.add(compileStatement(statement, context, source));
+        }
+        return new BodyASTNode(statements);
+    }
+
+    private static ASTNode compileStatement(ASTNode statement, GlobalContext context, SourceMap source) {
+        if (statement instanceof OrbitFunction function) {
+            compileFunction(function, context);
+            return statement;
+        }
+
+        if (statement instanceof FrameASTNode frame) {
+            CompiledFunction code = new BytecodeCompiler(context, frame.layout(), null).compileUnit(frame.body());
+
+            if (code != null) {
+                CompiledASTNode compiled = new CompiledASTNode(code, frame);
+                if (source != null) {
+                    source.copy(frame, compiled);
+                }
+                return compiled;
+            }
+        }
+        return statement;
+    }
+
+    /**
+     * Compiles a named function. The compiled code is attached to the function and used by every later call.
+     * @return Whether the function could be compiled
+     */
+    public static boolean compileFunction(OrbitFunction function, GlobalContext context) {
+        if (function instanceof CoroutineFunction || function.getName() == null || function.getLayout() == null
+                || function.getCompiled() != null || !(function.getBody() instanceof BodyASTNode)) {
+            return false;
+        }
+
+        CompiledFunction code = new BytecodeCompiler(context, function.getLayout(), function).compileUnit(function.getBody());
+        if (code == null) {
+            return false;
+        }
+
+        function.setCompiled(code);
+        return true;
+    }
+
+    // Unit state
+
+    private final GlobalContext context;
+    private final OrbitFunction function;
+
+    private final int slotCount;
+    private final String[] slotNames;
+    private final Variable.Type[] slotTypes;
+    private final boolean[] constant;
+    private final boolean[] declared;
+    private final Kind[] kinds;
+    private final int[] locals;
+
+    // Values stored into each slot, used to decide whether it can stay unboxed
+    private final List<List<ASTNode>> stores = new ArrayList<>();
+    private final HashSet<String> dynamicNames = new HashSet<>();
+
+    private final List<CompiledCallSite> sites = new ArrayList<>();
+    private final List<Object> constants = new ArrayList<>();
+
+    private ClassEmitter classEmitter;
+    private CodeEmitter code;
+
+    private final ArrayDeque<Label[]> loops = new ArrayDeque<>();
+    private final List<Integer> temps = new ArrayList<>();
+    private int tempsUsed;
+
+    private BytecodeCompiler(GlobalContext context, FrameLayout layout, OrbitFunction function) {
+        this.context = context;
+        this.function = function;
+
+        this.slotCount = layout.size();
+        this.slotNames = layout.names();
+        this.slotTypes = new Variable.Type[slotCount];
+        this.constant = new boolean[slotCount];
+        this.declared = new boolean[slotCount];
+        this.kinds = new Kind[slotCount];
+        this.locals = new int[slotCount];
+
+        for (int i = 0; i < slotCount; i++) {
+            stores.add(new ArrayList<>());
+        }
+    }
+
+    private CompiledFunction compileUnit(ASTNode body) {
+        try {
+            if (function != null) {
+                Pair<Integer, Variable.Type>[] parameters = function.getParameters();
+                for (int i = 0; i < parameters.length; i++) {
+                    declare(i, parameters[i].second, false);
+                    // Arguments can be anything, so parameters are always boxed
+                    stores.get(i).add(null);
+                }
+            }
+
+            scan(body);
+
+            for (String name : slotNames) {
+                if (dynamicNames.contains(name)) {
+                    // The interpreter would find the slot through the name, compiled code can't
+                    throw new Unsupported();
+                }
+            }
+
+            for (int i = 0; i < slotCount; i++) {
+                if (!declared[i]) {
+                    throw new Unsupported();
+                }
+            }
+
+            inferKinds();
+
+            return emit(body);
+        } catch (Unsupported | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    // Scanning
+
+    private void declare(int slot, Variable.Type type, boolean isConstant) {
+        switch (type) {
+            case REFERENCE, CONSUMER, VOID -> throw new Unsupported();
+        }
+
+        slotTypes[slot] = type;
+        constant[slot] = isConstant;
+        declared[slot] = true;
+    }
+
+    /**
+     * Checks that every node of the unit can be compiled, and records the declarations and stores of every slot
+     */
+    private void scan(ASTNode node) {
+        switch (node) {
+            case null -> {
+            }
+            case BodyASTNode body -> {
+                for (ASTNode statement : body.statements()) {
+                    scan(statement);
+                }
+            }
+            case DecLocalASTNode declaration -> {
+                declare(declaration.slot(), declaration.type(), false);
+                stores.get(declaration.slot()).add(declaration.value());
+                scan(declaration.value());
+            }
+            case ConstLocalASTNode declaration -> {
+                declare(declaration.slot(), declaration.type(), true);
+                stores.get(declaration.slot()).add(declaration.value());
+                scan(declaration.value());
+            }
+            case AssignLocalASTNode assign -> {
+                stores.get(assign.slot()).add(assign.value());
+                scan(assign.value());
+            }
+            case LocalVariableASTNode ignored -> {
+            }
+            // Names looked up past the frame can't end up in a slot
+            case VariableASTNode variable -> {
+                if (!variable.outer()) {
+                    dynamicNames.add(variable.name());
+                }
+            }
+            case AssignVarASTNode assign -> {
+                if (!assign.outer()) {
+                    dynamicNames.add(assign.variableName());
+                }
+                scan(assign.value());
+            }
+            case ValueASTNode ignored -> {
+            }
+            case StringTemplateASTNode template -> {
+                for (ASTNode expression : template.expressions()) {
+                    scan(expression);
+                }
+            }
+            case OperationASTNode operation -> {
+                scan(operation.left());
+                scan(operation.right());
+            }
+            case TernaryASTNode ternary -> {
+                scan(ternary.condition());
+                scan(ternary.trueBranch());
+                scan(ternary.falseBranch());
+            }
+            case ConditionalASTNode conditional -> {
+                scan(conditional.condition());
+                scan(conditional.thenBranch());
+                scan(conditional.elseBranch());
+            }
+            case BranchASTNode branch -> {
+                for (Pair<ASTNode, ASTNode> pair : branch.branches()) {
+                    scan(pair.first);
+                    scan(pair.second);
+                }
+            }
+            // The loop as it was written is compiled, and HotSpot moves what doesn't change out of it
+            case OptimizedLoopASTNode loop -> {
+                for (int slot : loop.slots()) {
+                    declare(slot, Variable.Type.ANY, false);
+                    stores.get(slot).add(null);
+                }
+                scan(loop.original());
+            }
+            case WhileASTNode loop -> {
+                scan(loop.condition());
+                loops.push(new Label[0]);
+                scan(loop.body());
+                loops.pop();
+            }
+            case ForToASTNode loop -> {
+                if (!(loop.init() instanceof DecLocalASTNode init) || init.type() == Variable.Type.FLOAT) {
+                    throw new Unsupported();
+                }
+                scan(init);
+                // The counter is stored into the variable before every iteration
+                stores.get(init.slot()).add(loop);
+                scan(loop.end());
+                loops.push(new Label[0]);
+                scan(loop.body());
+                loops.pop();
+            }
+            case ForDowntoASTNode loop -> {
+                if (!(loop.init() instanceof DecLocalASTNode init)) {
+                    throw new Unsupported();
+                }
+                scan(init);
+                stores.get(init.slot()).add(loop);
+                scan(loop.end());
+                loops.push(new Label[0]);
+                scan(loop.body());
+                loops.pop();
+            }
+            case BreakASTNode breakNode -> {
+                switch (breakNode.getType()) {
+                    case BREAK, CONTINUE -> {
+                        if (loops.isEmpty()) throw new Unsupported();
+                    }
+                    case RETURN, THROW -> {
+                    }
+                    default -> throw new Unsupported();
+                }
+                scan(breakNode.getValue());
+            }
+            case FunctionCallASTNode call -> {
+                if (call.name().equals("eval")) {
+                    // eval runs code which can see the locals of its caller
+                    throw new Unsupported();
+                }
+
+                IFunction callee = context.getFunction(call.name(), call.args().size());
+                if (callee != null && callee.getParameterCount() != -1) {
+                    for (Pair<Integer, Variable.Type> parameter : callee.getParameters()) {
+                        if (parameter.second == Variable.Type.CONSUMER) throw new Unsupported();
+                    }
+                }
+
+                for (ASTNode arg : call.args()) {
+                    scan(arg);
+                }
+            }
+            case CollectionAccessASTNode access -> {
+                scan(access.collection);
+                for (ASTNode index : access.indices) {
+                    scan(index);
+                }
+            }
+            case CollectionSetASTNode set -> {
+                scan(set.collection);
+                for (ASTNode index : set.indices) {
+                    scan(index);
+                }
+                scan(set.value);
+            }
+            default -> throw new Unsupported();
+        }
+    }
+
+    /**
+     * Decides which slots stay unboxed. Slots start out unboxed if their type allows it, and are boxed when a value
+     * which isn't known to be a number (or a boolean) is stored into them, until nothing changes.
+     */
+    private void inferKinds() {
+        for (int i = 0; i < slotCount; i++) {
+            kinds[i] = switch (slotTypes[i]) {
+                case INT -> Kind.INT;
+                case LONG -> Kind.LONG;
+                case DOUBLE -> Kind.DOUBLE;
+                case BOOL -> Kind.BOOL;
+                default -> Kind.OBJECT;
+            };
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = 0; i < slotCount; i++) {
+                if (kinds[i] == Kind.OBJECT) {
+                    continue;
+                }
+
+                for (ASTNode value : stores.get(i)) {
+                    Kind kind;
+                    if (value instanceof ForToASTNode) {
+                        kind = kinds[i];
+                    } else if (value == null || value instanceof ForDowntoASTNode) {
+                        kind = Kind.OBJECT;
+                    } else {
+                        kind = kindOf(value);
+                    }
+
+                    boolean fits = kinds[i] == Kind.BOOL ? kind == Kind.BOOL : kind.isNumber();
+                    if (!fits) {
+                        kinds[i] = Kind.OBJECT;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the kind of value an expression leaves on the stack
+     */
+    private Kind kindOf(ASTNode node) {
+        return switch (node) {
+            case ValueASTNode value -> switch (value.value()) {
+                case Integer ignored -> Kind.INT;
+                case Long ignored -> Kind.LONG;
+                case Double ignored -> Kind.DOUBLE;
+                case Boolean ignored -> Kind.BOOL;
+                case null, default -> Kind.OBJECT;
+            };
+            case LocalVariableASTNode local -> kinds[local.slot()];
+            case OperationASTNode operation -> {
+                Kind left = kindOf(operation.left());
+
+                yield switch (operation.type()) {
+                    case NOT -> left == Kind.OBJECT ? Kind.OBJECT : Kind.BOOL;
+                    case ADD, SUBTRACT, MULTIPLY, DIVIDE, MODULO, POWER -> {
+                        Kind right = kindOf(operation.right());
+                        yield left.isNumber() && right.isNumber() ? Kind.wider(left, right) : Kind.OBJECT;
+                    }
+                    case EQUALS, NOT_EQUALS, GREATER_THAN, LESS_THAN, GREATER_THAN_OR_EQUALS, LESS_THAN_OR_EQUALS -> {
+                        Kind right = kindOf(operation.right());
+                        yield left.isNumber() && right.isNumber() ? Kind.BOOL : Kind.OBJECT;
+                    }
+                    case AND, OR -> {
+                        Kind right = kindOf(operation.right());
+                        yield left != Kind.OBJECT && right != Kind.OBJECT ? Kind.BOOL : Kind.OBJECT;
+                    }
+                    default -> Kind.OBJECT;
+                };
+            }
+            default -> Kind.OBJECT;
+        };
+    }
+
+    // Emitting
+
+    private CompiledFunction emit(ASTNode body) {
+        String name = "orbit/compiled/" + (function != null ? "Function" : "Block") + UNITS.incrementAndGet();
+
+        classEmitter = new ClassEmitter(name, OBJECT, FUNCTION);
+        code = classEmitter.addMethod(ClassEmitter.ACC_PUBLIC, "invoke", INVOKE);
+
+        code.newLocal(1); // root context
+
+        // Every slot is initialized, since the verifier has to see a value in every local that is read
+        for (int i = 0; i < slotCount; i++) {
+            locals[i] = code.newLocal(kinds[i].size());
+
+            switch (kinds[i]) {
+                case INT, BOOL -> {
+                    code.pushInt(0);
+                    code.local(ISTORE, locals[i]);
+                }
+                case LONG -> {
+                    code.pushLong(0);
+                    code.local(LSTORE, locals[i]);
+                }
+                case DOUBLE -> {
+                    code.pushDouble(0);
+                    code.local(DSTORE, locals[i]);
+                }
+                case OBJECT -> {
+                    code.op(ACONST_NULL, 1);
+                    code.local(ASTORE, locals[i]);
+                }
+            }
+        }
+
+        code.local(ALOAD, CTX);
+        code.invoke(INVOKEINTERFACE, CONTEXT, "getRoot", "()L" + GLOBAL + ";");
+        code.local(ASTORE, ROOT);
+        checkInterrupted();
+
+        if (function != null) {
+            for (int i = 0; i < function.getParameterCount(); i++) {
+                code.local(ALOAD, ARGS);
+                code.pushInt(i);
+                code.op(AALOAD, -1);
+                castTo(slotTypes[i]);
+                code.local(ASTORE, locals[i]);
+            }
+        }
+
+        if (statement(body)) {
+            code.op(ACONST_NULL, 1);
+            code.op(ARETURN, -1);
+        }
+
+        // Every call site and constant gets a field of its own
+        CodeEmitter init = classEmitter.addMethod(ClassEmitter.ACC_PUBLIC, "<init>", "([L" + CALL_SITE + ";[Ljava/lang/Object;)V");
+        init.local(ALOAD, THIS);
+        init.invoke(INVOKESPECIAL, OBJECT, "<init>", "()V");
+        for (int i = 0; i < sites.size(); i++) {
+            classEmitter.addField(ClassEmitter.ACC_PRIVATE | ClassEmitter.ACC_FINAL, "site" + i, "L" + CALL_SITE + ";");
+            init.local(ALOAD, THIS);
+            init.local(ALOAD, 1);
+            init.pushInt(i);
+            init.op(AALOAD, -1);
+            init.field(PUTFIELD, name, "site" + i, "L" + CALL_SITE + ";");
+        }
+        for (int i = 0; i < constants.size(); i++) {
+            classEmitter.addField(ClassEmitter.ACC_PRIVATE | ClassEmitter.ACC_FINAL, "constant" + i, "Ljava/lang/Object;");
+            init.local(ALOAD, THIS);
+            init.local(ALOAD, 2);
+            init.pushInt(i);
+            init.op(AALOAD, -1);
+            init.field(PUTFIELD, name, "constant" + i, "Ljava/lang/Object;");
+        }
+        init.op(RETURN, 0);
+
+        Class<?> clazz = new CompilerClassLoader().define(name, classEmitter.toByteArray());
+        try {
+            return (CompiledFunction) clazz.getConstructor(CompiledCallSite[].class, Object[].class)
+                    .newInstance(sites.toArray(new CompiledCallSite[0]), constants.toArray());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to load compiled class " + name, e);
+        }
+    }
+
+    // Statements
+
+    /**
+     * Emits a statement, leaving the operand stack empty
+     * @return Whether execution can continue after the statement
+     */
+    private boolean statement(ASTNode node) {
+        switch (node) {
+            case null -> {
+                return true;
+            }
+            case BodyASTNode body -> {
+                for (ASTNode statement : body.statements()) {
+                    if (!statement(statement)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            case DecLocalASTNode declaration -> {
+                checkInterrupted();
+                store(declaration.slot(), declaration.value());
+                return true;
+            }
+            case ConstLocalASTNode declaration -> {
+                checkInterrupted();
+                store(declaration.slot(), declaration.value());
+                return true;
+            }
+            case AssignLocalASTNode assign -> {
+                if (constant[assign.slot()]) {
+                    throw new Unsupported();
+                }
+                store(assign.slot(), assign.value());
+                return true;
+            }
+            case AssignVarASTNode assign when assign.field() != null -> {
+                constant(assign);
+                code.type(CHECKCAST, ASSIGN_VAR);
+                code.local(ALOAD, CTX);
+                boxed(assign.value());
+                code.invoke(INVOKESTATIC, RUNTIME, "assignField", "(L" + ASSIGN_VAR + ";L" + CONTEXT + ";Ljava/lang/Object;)V");
+                return true;
+            }
+            case AssignVarASTNode assign -> {
+                code.local(ALOAD, CTX);
+                code.pushInt(assign.hash());
+                code.pushString(assign.variableName());
+                boxed(assign.value());
+                code.invoke(INVOKESTATIC, RUNTIME, assign.outer() ? "assignOuter" : "assign",
+                        "(L" + CONTEXT + ";ILjava/lang/String;Ljava/lang/Object;)V");
+                return true;
+            }
+            case CollectionSetASTNode set -> {
+                boxed(set.collection);
+                indices(set.indices);
+                boxed(set.value);
+                code.invoke(INVOKESTATIC, "com/softlocked/orbit/interpreter/ast/variable/collection/CollectionSetASTNode",
+                        "set", "(Ljava/lang/Object;Ljava/util/List;Ljava/lang/Object;)V");
+                return true;
+            }
+            case ConditionalASTNode conditional -> {
+                checkInterrupted();
+
+                Label otherwise = code.newLabel();
+                Label end = code.newLabel();
+
+                condition(conditional.condition());
+                code.jump(IFEQ, otherwise);
+                boolean thenCompletes = statement(conditional.thenBranch());
+                if (thenCompletes) {
+                    code.jump(GOTO, end);
+                }
+                code.mark(otherwise);
+                boolean elseCompletes = statement(conditional.elseBranch());
+                code.mark(end);
+
+                return thenCompletes || elseCompletes;
+            }
+            case BranchASTNode branch -> {
+                checkInterrupted();
+
+                Label end = code.newLabel();
+                for (Pair<ASTNode, ASTNode> pair : branch.branches()) {
+                    Label next = code.newLabel();
+                    condition(pair.first);
+                    code.jump(IFEQ, next);
+                    if (statement(pair.second)) {
+                        code.jump(GOTO, end);
+                    }
+                    code.mark(next);
+                }
+                code.mark(end);
+                return true;
+            }
+            case OptimizedLoopASTNode loop -> {
+                return statement(loop.original());
+            }
+            case WhileASTNode loop -> {
+                whileLoop(loop);
+                return true;
+            }
+            case ForToASTNode loop -> {
+                forTo(loop);
+                return true;
+            }
+            case ForDowntoASTNode loop -> {
+                forDownto(loop);
+                return true;
+            }
+            case BreakASTNode breakNode -> {
+                controlFlow(breakNode);
+                return false;
+            }
+            default -> {
+                // An expression used as a statement, evaluated for its side effects
+                Kind kind = expression(node);
+                code.op(kind.size() == 2 ? POP2 : POP, -kind.size());
+                return true;
+            }
+        }
+    }
+
+    private void controlFlow(BreakASTNode node) {
+        switch (node.getType()) {
+            case BREAK -> code.jump(GOTO, loops.peek()[1]);
+            case CONTINUE -> code.jump(GOTO, loops.peek()[0]);
+            case RETURN -> {
+                if (function == null) {
+                    // Blocks hand the value to the enclosing body, which stops like it would for a return statement
+                    code.local(ALOAD, CTX);
+                    boxed(node.getValue());
+                    code.invoke(INVOKESTATIC, RUNTIME, "returnValue", "(L" + CONTEXT + ";Ljava/lang/Object;)Ljava/lang/Object;");
+                } else {
+                    boxed(node.getValue());
+                }
+                code.op(ARETURN, -1);
+            }
+            case THROW -> {
+                code.local(ALOAD, CTX);
+                boxed(node.getValue());
+                code.invoke(INVOKESTATIC, RUNTIME, "raise", "(L" + CONTEXT + ";Ljava/lang/Object;)Ljava/lang/RuntimeException;");
+                code.op(ATHROW, -1);
+            }
+            default -> throw new Unsupported();
+        }
+    }
+
+    private void whileLoop(WhileASTNode loop) {
+        Label next = code.newLabel();
+        Label end = code.newLabel();
+
+        if (loop.condition() instanceof ValueASTNode) {
+            // A constant condition is only checked once
+            condition(loop.condition());
+            code.jump(IFEQ, end);
+            code.mark(next);
+        } else {
+            code.mark(next);
+            condition(loop.condition());
+            code.jump(IFEQ, end);
+        }
+
+        loops.push(new Label[]{next, end});
+        statement(loop.body());
+        loops.pop();
+
+        checkInterrupted();
+        code.jump(GOTO, next);
+        code.mark(end);
+    }
+
+    private void forTo(ForToASTNode loop) {
+        checkInterrupted();
+
+        DecLocalASTNode init = (DecLocalASTNode) loop.init();
+        int slot = init.slot();
+        store(slot, init.value());
+
+        // The counter has the type of the variable, ints for untyped ones
+        Kind counterKind = switch (init.type()) {
+            case LONG -> Kind.LONG;
+            case DOUBLE -> Kind.DOUBLE;
+            case INT, ANY -> Kind.INT;
+            default -> throw new Unsupported();
+        };
+
+        int counter = code.newLocal(counterKind.size());
+        int end = code.newLocal(2);
+
+        loadSlotAsLong(slot);
+        switch (counterKind) {
+            case INT -> {
+                code.invoke(INVOKESTATIC, "java/lang/Math", "toIntExact", "(J)I");
+                code.local(ISTORE, counter);
+            }
+            case LONG -> code.local(LSTORE, counter);
+            case DOUBLE -> {
+                code.op(L2D, 0);
+                code.local(DSTORE, counter);
+            }
+        }
+        longValue(loop.end());
+        code.local(LSTORE, end);
+
+        Label top = code.newLabel();
+        Label increment = code.newLabel();
+        Label exit = code.newLabel();
+
+        code.mark(top);
+        switch (counterKind) {
+            case INT -> {
+                code.local(ILOAD, counter);
+                code.op(I2L, 1);
+                code.local(LLOAD, end);
+                code.op(LCMP, -3);
+            }
+            case LONG -> {
+                code.local(LLOAD, counter);
+                code.local(LLOAD, end);
+                code.op(LCMP, -3);
+            }
+            case DOUBLE -> {
+                code.local(DLOAD, counter);
+                code.local(LLOAD, end);
+                code.op(L2D, 0);
+                code.op(DCMPG, -3);
+            }
+        }
+        code.jump(IFGT, exit);
+
+        // variable = counter, without a cast
+        switch (counterKind) {
+            case INT -> code.local(ILOAD, counter);
+            case LONG -> code.local(LLOAD, counter);
+            case DOUBLE -> code.local(DLOAD, counter);
+        }
+        if (kinds[slot] == Kind.OBJECT) {
+            box(counterKind);
+        }
+        storeLocal(slot);
+
+        loops.push(new Label[]{increment, exit});
+        statement(loop.body());
+        loops.pop();
+
+        code.mark(increment);
+        switch (counterKind) {
+            case INT -> code.iinc(counter, 1);
+            case LONG -> {
+                code.local(LLOAD, counter);
+                code.pushLong(1);
+                code.op(LADD, -2);
+                code.local(LSTORE, counter);
+            }
+            case DOUBLE -> {
+                code.local(DLOAD, counter);
+                code.pushDouble(1);
+                code.op(DADD, -2);
+                code.local(DSTORE, counter);
+            }
+        }
+        checkInterrupted();
+        code.jump(GOTO, top);
+        code.mark(exit);
+    }
+
+    private void forDownto(ForDowntoASTNode loop) {
+        checkInterrupted();
+
+        DecLocalASTNode init = (DecLocalASTNode) loop.init();
+        int slot = init.slot();
+        store(slot, init.value());
+
+        int counter = code.newLocal(2);
+        int end = code.newLocal(2);
+
+        loadSlotAsLong(slot);
+        code.local(LSTORE, counter);
+        longValue(loop.end());
+        code.local(LSTORE, end);
+
+        Label top = code.newLabel();
+        Label decrement = code.newLabel();
+        Label exit = code.newLabel();
+
+        code.mark(top);
+        code.local(LLOAD, counter);
+        code.local(LLOAD, end);
+        code.op(LCMP, -3);
+        code.jump(IFLT, exit);
+
+        // The variable always holds longs, whatever its declared type is
+        code.local(LLOAD, counter);
+        box(Kind.LONG);
+        storeLocal(slot);
+
+        loops.push(new Label[]{decrement, exit});
+        statement(loop.body());
+        loops.pop();
+
+        code.mark(decrement);
+        code.local(LLOAD, counter);
+        code.pushLong(1);
+        code.op(LSUB, -2);
+        code.local(LSTORE, counter);
+        checkInterrupted();
+        code.jump(GOTO, top);
+        code.mark(exit);
+    }
+
+    /**
+     * Pushes the value of a slot as a long, the way loops read their start value
+     */
+    private void loadSlotAsLong(int slot) {
+        Kind kind = kinds[slot];
+        loadLocal(slot);
+        if (kind == Kind.OBJECT) {
+            code.invoke(INVOKESTATIC, RUNTIME, "longValue", "(Ljava/lang/Object;)J");
+        } else {
+            convert(kind, Kind.LONG);
+        }
+    }
+
+    private void longValue(ASTNode node) {
+        Kind kind = expression(node);
+        if (kind.isNumber()) {
+            convert(kind, Kind.LONG);
+        } else {
+            box(kind);
+            code.invoke(INVOKESTATIC, RUNTIME, "longValue", "(Ljava/lang/Object;)J");
+        }
+    }
+
+    // Slots
+
+    /**
+     * Evaluates a value, casts it to the type of a slot and stores it
+     */
+    private void store(int slot, ASTNode value) {
+        Kind kind = kinds[slot];
+
+        if (kind == Kind.OBJECT) {
+            boxed(value);
+            castTo(slotTypes[slot]);
+        } else {
+            Kind valueKind = expression(value);
+            convert(valueKind, kind);
+        }
+        storeLocal(slot);
+    }
+
+    private void loadLocal(int slot) {
+        switch (kinds[slot]) {
+            case INT, BOOL -> code.local(ILOAD, locals[slot]);
+            case LONG -> code.local(LLOAD, locals[slot]);
+            case DOUBLE -> code.local(DLOAD, locals[slot]);
+            case OBJECT -> code.local(ALOAD, locals[slot]);
+        }
+    }
+
+    private void storeLocal(int slot) {
+        switch (kinds[slot]) {
+            case INT, BOOL -> code.local(ISTORE, locals[slot]);
+            case LONG -> code.local(LSTORE, locals[slot]);
+            case DOUBLE -> code.local(DSTORE, locals[slot]);
+            case OBJECT -> code.local(ASTORE, locals[slot]);
+        }
+    }
+
+    /**
+     * Casts the object on the stack to a variable type, like declaring a variable of that type does
+     */
+    private void castTo(Variable.Type type) {
+        if (type == Variable.Type.ANY) {
+            return;
+        }
+        code.field(GETSTATIC, TYPE, type.name(), "L" + TYPE + ";");
+        code.invoke(INVOKESTATIC, RUNTIME, "cast", "(Ljava/lang/Object;L" + TYPE + ";)Ljava/lang/Object;");
+    }
+
+    // Expressions
+
+    /**
+     * Emits an expression and boxes its value
+     */
+    private void boxed(ASTNode node) {
+        if (node == null) {
+            code.op(ACONST_NULL, 1);
+            return;
+        }
+        box(expression(node));
+    }
+
+    /**
+     * Emits an expression, leaving its value on the stack
+     * @return The kind of the value, always the same as {@link #kindOf(ASTNode)}
+     */
+    private Kind expression(ASTNode node) {
+        switch (node) {
+            case ValueASTNode value -> {
+                switch (value.value()) {
+                    case null -> code.op(ACONST_NULL, 1);
+                    case Integer i -> code.pushInt(i);
+                    case Long l -> code.pushLong(l);
+                    case Double d -> code.pushDouble(d);
+                    case Boolean b -> code.pushInt(b ? 1 : 0);
+                    case String s -> code.pushString(s);
+                    default -> constant(value.value());
+                }
+            }
+            case LocalVariableASTNode local -> {
+                loadLocal(local.slot());
+                if (kinds[local.slot()] == Kind.OBJECT) {
+                    code.invoke(INVOKESTATIC, RUNTIME, "unwrap", "(Ljava/lang/Object;)Ljava/lang/Object;");
+                }
+            }
+            case VariableASTNode variable when variable.field() != null -> {
+                constant(variable);
+                code.type(CHECKCAST, VARIABLE_NODE);
+                code.local(ALOAD, CTX);
+                code.invoke(INVOKESTATIC, RUNTIME, "loadField", "(L" + VARIABLE_NODE + ";L" + CONTEXT + ";)Ljava/lang/Object;");
+            }
+            case VariableASTNode variable -> {
+                code.local(ALOAD, CTX);
+                code.pushInt(variable.hash());
+                code.invoke(INVOKESTATIC, RUNTIME, variable.outer() ? "loadOuter" : "load",
+                        "(L" + CONTEXT + ";I)Ljava/lang/Object;");
+            }
+            case OperationASTNode operation -> operation(operation);
+            case TernaryASTNode ternary -> {
+                Label otherwise = code.newLabel();
+                Label end = code.newLabel();
+
+                condition(ternary.condition());
+                code.jump(IFEQ, otherwise);
+                boxed(ternary.trueBranch());
+                code.jump(GOTO, end);
+                code.mark(otherwise);
+                boxed(ternary.falseBranch());
+                code.mark(end);
+            }
+            case FunctionCallASTNode call -> call(call);
+            case StringTemplateASTNode template -> {
+                ASTNode[] expressions = template.expressions();
+
+                constant(template.segments());
+                code.type(CHECKCAST, "[Ljava/lang/String;");
+                code.pushInt(expressions.length);
+                code.type(ANEWARRAY, OBJECT);
+                for (int i = 0; i < expressions.length; i++) {
+                    code.op(DUP, 1);
+                    code.pushInt(i);
+                    boxed(expressions[i]);
+                    code.op(AASTORE, -3);
+                }
+                code.invoke(INVOKESTATIC, "com/softlocked/orbit/interpreter/ast/value/StringTemplateASTNode",
+                        "format", "([Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/String;");
+            }
+            case CollectionAccessASTNode access -> {
+                boxed(access.collection);
+                indices(access.indices);
+                code.invoke(INVOKESTATIC, "com/softlocked/orbit/interpreter/ast/variable/collection/CollectionAccessASTNode",
+                        "get", "(Ljava/lang/Object;Ljava/util/List;)Ljava/lang/Object;");
+            }
+            default -> throw new Unsupported();
+        }
+        return kindOf(node);
+    }
+
+    private void constant(Object value) {
+        code.local(ALOAD, THIS);
+        code.field(GETFIELD, classEmitter.getName(), "constant" + constants.size(), "Ljava/lang/Object;");
+        constants.add(value);
+    }
+
+    private void indices(List<ASTNode> indices) {
+        code.type(NEW, "java/util/ArrayList");
+        code.op(DUP, 1);
+        code.pushInt(indices.size());
+        code.invoke(INVOKESPECIAL, "java/util/ArrayList", "<init>", "(I)V");
+        for (ASTNode index : indices) {
+            code.op(DUP, 1);
+            boxed(index);
+            code.invoke(INVOKEVIRTUAL, "java/util/ArrayList", "add", "(Ljava/lang/Object;)Z");
+            code.op(POP, -1);
+        }
+    }
+
+    private void call(FunctionCallASTNode call) {
+        List<ASTNode> args = call.args();
+
+        // Arguments which read compiled locals can't be handed to a function as consumers
+        boolean readsSlots = false;
+        for (ASTNode arg : args) {
+            readsSlots |= readsSlots(arg);
+        }
+
+        int site = sites.size();
+        sites.add(new CompiledCallSite(call.name(), readsSlots ? null : args));
+
+        code.pushInt(args.size());
+        code.type(ANEWARRAY, OBJECT);
+        for (int i = 0; i < args.size(); i++) {
+            code.op(DUP, 1);
+            code.pushInt(i);
+            boxed(args.get(i));
+            code.op(AASTORE, -3);
+        }
+
+        int arguments = acquireTemp();
+        int target = acquireTemp();
+        code.local(ASTORE, arguments);
+
+        Label slow = code.newLabel();
+        Label end = code.newLabel();
+
+        loadSite(site);
+        code.local(ALOAD, ROOT);
+        code.invoke(INVOKEVIRTUAL, CALL_SITE, "target", "(L" + GLOBAL + ";)L" + FUNCTION + ";");
+        code.op(DUP, 1);
+        code.local(ASTORE, target);
+        code.jump(IFNULL, slow);
+
+        // The callee is compiled as well, call it directly
+        code.local(ALOAD, target);
+        code.local(ALOAD, ROOT);
+        code.local(ALOAD, arguments);
+        code.invoke(INVOKEINTERFACE, FUNCTION, "invoke", INVOKE);
+        code.jump(GOTO, end);
+
+        code.mark(slow);
+        loadSite(site);
+        code.local(ALOAD, CTX);
+        code.local(ALOAD, arguments);
+        code.invoke(INVOKEVIRTUAL, CALL_SITE, "call", INVOKE);
+        code.mark(end);
+
+        releaseTemps(2);
+    }
+
+    private void loadSite(int site) {
+        code.local(ALOAD, THIS);
+        code.field(GETFIELD, classEmitter.getName(), "site" + site, "L" + CALL_SITE + ";");
+    }
+
+    private boolean readsSlots(ASTNode node) {
+        return switch (node) {
+            case null -> false;
+            case LocalVariableASTNode ignored -> true;
+            case OperationASTNode operation -> readsSlots(operation.left()) || readsSlots(operation.right());
+            case TernaryASTNode ternary -> readsSlots(ternary.condition())
+                    || readsSlots(ternary.trueBranch()) || readsSlots(ternary.falseBranch());
+            case FunctionCallASTNode call -> call.args().stream().anyMatch(this::readsSlots);
+            case StringTemplateASTNode template -> Arrays.stream(template.expressions()).anyMatch(this::readsSlots);
+            case CollectionAccessASTNode access -> readsSlots(access.collection)
+                    || access.indices.stream().anyMatch(this::readsSlots);
+            default -> false;
+        };
+    }
+
+    private int acquireTemp() {
+        if (tempsUsed == temps.size()) {
+            temps.add(code.newLocal(1));
+        }
+        return temps.get(tempsUsed++);
+    }
+
+    private void releaseTemps(int count) {
+        tempsUsed -= count;
+    }
+
+    // Operations
+
+    private void operation(OperationASTNode operation) {
+        OperationType type = operation.type();
+        Kind left = kindOf(operation.left());
+
+        switch (type) {
+            case NOT -> {
+                if (left != Kind.OBJECT) {
+                    condition(operation.left());
+                    code.pushInt(1);
+                    code.op(IXOR, -1);
+                } else {
+                    expression(operation.left());
+                    code.invoke(INVOKESTATIC, EVALUATOR, "not", "(Ljava/lang/Object;)Ljava/lang/Object;");
+                }
+                return;
+            }
+            case BITWISE_NOT, CLONE -> {
+                boxed(operation.left());
+                String method = type == OperationType.CLONE ? "cloneObject" : "bitwiseNot";
+                code.invoke(INVOKESTATIC, EVALUATOR, method, "(Ljava/lang/Object;)Ljava/lang/Object;");
+                return;
+            }
+        }
+
+        Kind right = kindOf(operation.right());
+
+        if (left.isNumber() && right.isNumber()) {
+            Kind wider = Kind.wider(left, right);
+
+            switch (type) {
+                case ADD, SUBTRACT, MULTIPLY, DIVIDE, MODULO -> {
+                    operands(operation, wider);
+                    code.op(arithmetic(type, wider), -wider.size());
+                    return;
+                }
+                case POWER -> {
+                    // Computed in doubles, then narrowed like the evaluator does
+                    operands(operation, Kind.DOUBLE);
+                    code.invoke(INVOKESTATIC, "java/lang/Math", "pow", "(DD)D");
+                    convert(Kind.DOUBLE, wider);
+                    return;
+                }
+                case EQUALS, NOT_EQUALS, GREATER_THAN, LESS_THAN, GREATER_THAN_OR_EQUALS, LESS_THAN_OR_EQUALS -> {
+                    operands(operation, wider);
+                    compare(type, wider);
+                    return;
+                }
+            }
+        }
+
+        if ((type == OperationType.AND || type == OperationType.OR) && left != Kind.OBJECT && right != Kind.OBJECT) {
+            // Both sides are always evaluated
+            condition(operation.left());
+            condition(operation.right());
+            code.op(type == OperationType.AND ? IAND : IOR, -1);
+            return;
+        }
+
+        boxed(operation.left());
+        boxed(operation.right());
+
+        switch (type) {
+            case ADD -> code.invoke(INVOKESTATIC, RUNTIME, "add", BINARY);
+            case SUBTRACT -> code.invoke(INVOKESTATIC, RUNTIME, "subtract", BINARY);
+            case MULTIPLY -> code.invoke(INVOKESTATIC, RUNTIME, "multiply", BINARY);
+            case DIVIDE -> code.invoke(INVOKESTATIC, RUNTIME, "divide", BINARY);
+            case MODULO -> code.invoke(INVOKESTATIC, RUNTIME, "modulo", BINARY);
+            case POWER -> code.invoke(INVOKESTATIC, EVALUATOR, "power", BINARY);
+            case EQUALS -> code.invoke(INVOKESTATIC, EVALUATOR, "equal", BINARY);
+            case NOT_EQUALS -> code.invoke(INVOKESTATIC, EVALUATOR, "notEquals", BINARY);
+            case GREATER_THAN -> code.invoke(INVOKESTATIC, EVALUATOR, "greaterThan", BINARY);
+            case LESS_THAN -> code.invoke(INVOKESTATIC, EVALUATOR, "lessThan", BINARY);
+            case GREATER_THAN_OR_EQUALS -> code.invoke(INVOKESTATIC, EVALUATOR, "greaterThanOrEquals", BINARY);
+            case LESS_THAN_OR_EQUALS -> code.invoke(INVOKESTATIC, EVALUATOR, "lessThanOrEquals", BINARY);
+            case AND -> code.invoke(INVOKESTATIC, EVALUATOR, "and", BINARY);
+            case OR -> code.invoke(INVOKESTATIC, EVALUATOR, "or", BINARY);
+            case BITWISE_AND -> code.invoke(INVOKESTATIC, EVALUATOR, "bitwiseAnd", BINARY);
+            case BITWISE_OR -> code.invoke(INVOKESTATIC, EVALUATOR, "bitwiseOr", BINARY);
+            case BITWISE_XOR -> code.invoke(INVOKESTATIC, EVALUATOR, "bitwiseXor", BINARY);
+            case BITWISE_LEFT_SHIFT -> code.invoke(INVOKESTATIC, EVALUATOR, "bitwiseLeftShift", BINARY);
+            case BITWISE_RIGHT_SHIFT -> code.invoke(INVOKESTATIC, EVALUATOR, "bitwiseRightShift", BINARY);
+            case EQUALS_TYPE -> code.invoke(INVOKESTATIC, EVALUATOR, "equalsType", BINARY);
+            default -> {
+                code.pushString(type.getSymbol());
+                code.invoke(INVOKESTATIC, EVALUATOR, "customOverload",
+                        "(Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;");
+            }
+        }
+    }
+
+    private void operands(OperationASTNode operation, Kind kind) {
+        convert(expression(operation.left()), kind);
+        convert(expression(operation.right()), kind);
+    }
+
+    private static int arithmetic(OperationType type, Kind kind) {
+        int offset = switch (kind) {
+            case INT -> 0;
+            case LONG -> 1;
+            default -> 3;
+        };
+
+        return offset + switch (type) {
+            case ADD -> IADD;
+            case SUBTRACT -> ISUB;
+            case MULTIPLY -> IMUL;
+            case DIVIDE -> IDIV;
+            default -> IREM;
+        };
+    }
+
+    /**
+     * Compares two numbers of the same kind and pushes the result as a boolean
+     */
+    private void compare(OperationType type, Kind kind) {
+        // Jumps when the comparison is true
+        int jump = switch (type) {
+            case EQUALS -> IFEQ;
+            case NOT_EQUALS -> IFNE;
+            case GREATER_THAN -> IFGT;
+            case LESS_THAN -> IFLT;
+            case GREATER_THAN_OR_EQUALS -> IFGE;
+            default -> IFLE;
+        };
+
+        switch (kind) {
+            case INT -> jump += IF_ICMPEQ - IFEQ;
+            case LONG -> code.op(LCMP, -3);
+            // NaN makes every comparison false
+            default -> code.op(jump == IFLT || jump == IFLE ? DCMPG : DCMPL, -3);
+        }
+
+        Label isTrue = code.newLabel();
+        Label end = code.newLabel();
+        code.jump(jump, isTrue);
+        code.pushInt(0);
+        code.jump(GOTO, end);
+        code.mark(isTrue);
+        code.pushInt(1);
+        code.mark(end);
+    }
+
+    /**
+     * Emits an expression and converts it to a boolean (0 or 1) the way the evaluator does
+     */
+    private void condition(ASTNode node) {
+        Kind kind = expression(node);
+
+        switch (kind) {
+            case BOOL -> {
+            }
+            case OBJECT -> code.invoke(INVOKESTATIC, RUNTIME, "truthy", "(Ljava/lang/Object;)Z");
+            default -> {
+                // Numbers are true when their long value isn't zero
+                convert(kind, Kind.LONG);
+                code.pushLong(0);
+                code.op(LCMP, -3);
+
+                Label isTrue = code.newLabel();
+                Label end = code.newLabel();
+                code.jump(IFNE, isTrue);
+                code.pushInt(0);
+                code.jump(GOTO, end);
+                code.mark(isTrue);
+                code.pushInt(1);
+                code.mark(end);
+            }
+        }
+    }
+
+    /**
+     * Converts between numeric kinds, matching {@link Number}'s conversions
+     */
+    private void convert(Kind from, Kind to) {
+        if (from == to) {
+            return;
+        }
+
+        switch (from) {
+            case INT -> {
+                switch (to) {
+                    case LONG -> code.op(I2L, 1);
+                    case DOUBLE -> code.op(I2D, 1);
+                    default -> throw new Unsupported();
+                }
+            }
+            case LONG -> {
+                switch (to) {
+                    case INT -> code.op(L2I, -1);
+                    case DOUBLE -> code.op(L2D, 0);
+                    default -> throw new Unsupported();
+                }
+            }
+            case DOUBLE -> {
+                switch (to) {
+                    case INT -> code.op(D2I, -1);
+                    case LONG -> code.op(D2L, 0);
+                    default -> throw new Unsupported();
+                }
+            }
+            default -> throw new Unsupported();
+        }
+    }
+
+    private void box(Kind kind) {
+        switch (kind) {
+            case INT -> code.invoke(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;");
+            case LONG -> code.invoke(INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;");
+            case DOUBLE -> code.invoke(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+            case BOOL -> code.invoke(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+            case OBJECT -> {
+            }
+        }
+    }
+
+    private void checkInterrupted() {
+        code.local(ALOAD, ROOT);
+        code.invoke(INVOKESTATIC, RUNTIME, "checkInterrupted", "(L" + GLOBAL + ";)V");
+    }
+}
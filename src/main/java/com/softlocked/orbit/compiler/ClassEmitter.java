@@ -0,0 +1,231 @@
+package com.softlocked.orbit.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Minimal writer for JVM class files, used by the bytecode compiler.
+ * <p>
+ * Classes are written with version 49 (Java 5), which the JVM still verifies by type inference, so no stack map
+ * frames have to be computed.
+ */
+public class ClassEmitter {
+    private static final int VERSION = 49;
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_PRIVATE = 0x0002;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final HashMap<String, Integer> poolCache = new HashMap<>();
+    private int poolCount = 1;
+
+    private final String name;
+    private final String superName;
+    private final String[] interfaces;
+
+    private final List<int[]> fields = new ArrayList<>();
+    private final List<Method> methods = new ArrayList<>();
+
+    private record Method(int access, int name, int descriptor, CodeEmitter code) {
+    }
+
+    /**
+     * @param name The internal name of the class, e.g. <code>orbit/compiled/Unit1</code>
+     * @param superName The internal name of the super class
+     * @param interfaces The internal names of the implemented interfaces
+     */
+    public ClassEmitter(String name, String superName, String... interfaces) {
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void addField(int access, String name, String descriptor) {
+        fields.add(new int[]{access, utf8(name), utf8(descriptor)});
+    }
+
+    /**
+     * Adds a method and returns the emitter for its code
+     */
+    public CodeEmitter addMethod(int access, String name, String descriptor) {
+        boolean isStatic = (access & ACC_STATIC) != 0;
+
+        CodeEmitter code = new CodeEmitter(this, CodeEmitter.argumentSize(descriptor) + (isStatic ? 0 : 1));
+        methods.add(new Method(access, utf8(name), utf8(descriptor), code));
+        return code;
+    }
+
+    public byte[] toByteArray() {
+        int thisClass = classRef(name);
+        int superClass = classRef(superName);
+        int[] interfaceRefs = new int[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaceRefs[i] = classRef(interfaces[i]);
+        }
+        int codeName = utf8("Code");
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+
+            out.writeShort(poolCount);
+            pool.flush();
+            poolBytes.writeTo(out);
+
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaceRefs.length);
+            for (int ref : interfaceRefs) {
+                out.writeShort(ref);
+            }
+
+            out.writeShort(fields.size());
+            for (int[] field : fields) {
+                out.writeShort(field[0]);
+                out.writeShort(field[1]);
+                out.writeShort(field[2]);
+                out.writeShort(0);
+            }
+
+            out.writeShort(methods.size());
+            for (Method method : methods) {
+                byte[] code = method.code().toByteArray();
+
+                out.writeShort(method.access());
+                out.writeShort(method.name());
+                out.writeShort(method.descriptor());
+                out.writeShort(1);
+
+                out.writeShort(codeName);
+                out.writeInt(12 + code.length);
+                out.writeShort(method.code().getMaxStack());
+                out.writeShort(method.code().getMaxLocals());
+                out.writeInt(code.length);
+                out.write(code);
+                out.writeShort(0); // exception table
+                out.writeShort(0); // attributes
+            }
+
+            out.writeShort(0); // class attributes
+            out.flush();
+
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write class " + name, e);
+        }
+    }
+
+    // Constant pool
+
+    public int utf8(String value) {
+        return constant("U" + value, 1, () -> {
+            pool.writeByte(1);
+            pool.writeUTF(value);
+        });
+    }
+
+    public int classRef(String internalName) {
+        int nameIndex = utf8(internalName);
+        return constant("C" + internalName, 1, () -> {
+            pool.writeByte(7);
+            pool.writeShort(nameIndex);
+        });
+    }
+
+    public int string(String value) {
+        int valueIndex = utf8(value);
+        return constant("S" + value, 1, () -> {
+            pool.writeByte(8);
+            pool.writeShort(valueIndex);
+        });
+    }
+
+    public int integer(int value) {
+        return constant("I" + value, 1, () -> {
+            pool.writeByte(3);
+            pool.writeInt(value);
+        });
+    }
+
+    public int longConstant(long value) {
+        return constant("J" + value, 2, () -> {
+            pool.writeByte(5);
+            pool.writeLong(value);
+        });
+    }
+
+    public int doubleConstant(double value) {
+        return constant("D" + Double.doubleToRawLongBits(value), 2, () -> {
+            pool.writeByte(6);
+            pool.writeDouble(value);
+        });
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    public int methodRef(String owner, String name, String descriptor, boolean isInterface) {
+        return memberRef(isInterface ? 11 : 10, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = constant("N" + name + ":" + descriptor, 1, () -> {
+            pool.writeByte(12);
+            pool.writeShort(nameIndex);
+            pool.writeShort(descriptorIndex);
+        });
+
+        return constant("M" + tag + owner + "." + name + ":" + descriptor, 1, () -> {
+            pool.writeByte(tag);
+            pool.writeShort(ownerIndex);
+            pool.writeShort(nameAndType);
+        });
+    }
+
+    private interface Writer {
+        void write() throws IOException;
+    }
+
+    private int constant(String key, int size, Writer writer) {
+        Integer index = poolCache.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            writer.write();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        index = poolCount;
+        poolCount += size;
+        poolCache.put(key, index);
+
+        if (poolCount > 0xFFFF) {
+            throw new IllegalStateException("Constant pool too large");
+        }
+        return index;
+    }
+}
@@ -0,0 +1,367 @@
+package com.softlocked.orbit.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the bytecode of a single method, keeping track of the operand stack depth and the number of locals.
+ * @see ClassEmitter
+ */
+public class CodeEmitter {
+    // Opcodes used by the compiler
+    public static final int ACONST_NULL = 0x01;
+    public static final int ICONST_0 = 0x03;
+    public static final int LCONST_0 = 0x09;
+    public static final int DCONST_0 = 0x0e;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC = 0x12;
+    public static final int LDC_W = 0x13;
+    public static final int LDC2_W = 0x14;
+    public static final int ILOAD = 0x15;
+    public static final int LLOAD = 0x16;
+    public static final int DLOAD = 0x18;
+    public static final int ALOAD = 0x19;
+    public static final int AALOAD = 0x32;
+    public static final int ISTORE = 0x36;
+    public static final int LSTORE = 0x37;
+    public static final int DSTORE = 0x39;
+    public static final int ASTORE = 0x3a;
+    public static final int AASTORE = 0x53;
+    public static final int POP = 0x57;
+    public static final int POP2 = 0x58;
+    public static final int DUP = 0x59;
+    public static final int IADD = 0x60;
+    public static final int LADD = 0x61;
+    public static final int DADD = 0x63;
+    public static final int ISUB = 0x64;
+    public static final int LSUB = 0x65;
+    public static final int DSUB = 0x67;
+    public static final int IMUL = 0x68;
+    public static final int LMUL = 0x69;
+    public static final int DMUL = 0x6b;
+    public static final int IDIV = 0x6c;
+    public static final int LDIV = 0x6d;
+    public static final int DDIV = 0x6f;
+    public static final int IREM = 0x70;
+    public static final int LREM = 0x71;
+    public static final int DREM = 0x73;
+    public static final int IAND = 0x7e;
+    public static final int IOR = 0x80;
+    public static final int IXOR = 0x82;
+    public static final int IINC = 0x84;
+    public static final int I2L = 0x85;
+    public static final int I2D = 0x87;
+    public static final int L2I = 0x88;
+    public static final int L2D = 0x8a;
+    public static final int D2I = 0x8e;
+    public static final int D2L = 0x8f;
+    public static final int LCMP = 0x94;
+    public static final int DCMPL = 0x97;
+    public static final int DCMPG = 0x98;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9a;
+    public static final int IFLT = 0x9b;
+    public static final int IFGE = 0x9c;
+    public static final int IFGT = 0x9d;
+    public static final int IFLE = 0x9e;
+    public static final int IF_ICMPEQ = 0x9f;
+    public static final int IF_ICMPNE = 0xa0;
+    public static final int IF_ICMPLT = 0xa1;
+    public static final int IF_ICMPGE = 0xa2;
+    public static final int IF_ICMPGT = 0xa3;
+    public static final int IF_ICMPLE = 0xa4;
+    public static final int GOTO = 0xa7;
+    public static final int ARETURN = 0xb0;
+    public static final int RETURN = 0xb1;
+    public static final int GETSTATIC = 0xb2;
+    public static final int GETFIELD = 0xb4;
+    public static final int PUTFIELD = 0xb5;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int INVOKESTATIC = 0xb8;
+    public static final int INVOKEINTERFACE = 0xb9;
+    public static final int NEW = 0xbb;
+    public static final int ANEWARRAY = 0xbd;
+    public static final int ATHROW = 0xbf;
+    public static final int CHECKCAST = 0xc0;
+    public static final int IFNULL = 0xc6;
+    public static final int IFNONNULL = 0xc7;
+
+    /**
+     * A jump target. The stack depth is recorded by the first jump to it, and restored when it is placed.
+     */
+    public static class Label {
+        private int position = -1;
+        private int stack = -1;
+    }
+
+    private record Fixup(int opcodePosition, Label label) {
+    }
+
+    private final ClassEmitter owner;
+
+    private byte[] code = new byte[256];
+    private int length;
+
+    private int stack;
+    private int maxStack;
+    private int maxLocals;
+
+    private final List<Fixup> fixups = new ArrayList<>();
+
+    CodeEmitter(ClassEmitter owner, int argumentSlots) {
+        this.owner = owner;
+        this.maxLocals = argumentSlots;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    /**
+     * Reserves a new local variable
+     * @param size 2 for long and double, 1 otherwise
+     * @return The index of the local
+     */
+    public int newLocal(int size) {
+        int index = maxLocals;
+        maxLocals += size;
+        return index;
+    }
+
+    // Instructions
+
+    /**
+     * Emits an instruction without operands
+     * @param stackDelta The change of the operand stack depth, in slots
+     */
+    public void op(int opcode, int stackDelta) {
+        write(opcode);
+        adjust(stackDelta);
+
+        if (opcode == ARETURN || opcode == RETURN || opcode == ATHROW) {
+            stack = 0;
+        }
+    }
+
+    public void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            write(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            write(BIPUSH);
+            write(value & 0xFF);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            write(SIPUSH);
+            writeShort(value);
+        } else {
+            ldc(owner.integer(value));
+        }
+        adjust(1);
+    }
+
+    public void pushLong(long value) {
+        if (value == 0 || value == 1) {
+            write(LCONST_0 + (int) value);
+        } else {
+            write(LDC2_W);
+            writeShort(owner.longConstant(value));
+        }
+        adjust(2);
+    }
+
+    public void pushDouble(double value) {
+        if (Double.doubleToRawLongBits(value) == 0L || value == 1.0) {
+            write(DCONST_0 + (int) value);
+        } else {
+            write(LDC2_W);
+            writeShort(owner.doubleConstant(value));
+        }
+        adjust(2);
+    }
+
+    public void pushString(String value) {
+        ldc(owner.string(value));
+        adjust(1);
+    }
+
+    private void ldc(int index) {
+        if (index <= 0xFF) {
+            write(LDC);
+            write(index);
+        } else {
+            write(LDC_W);
+            writeShort(index);
+        }
+    }
+
+    /**
+     * Emits a load or store instruction (ILOAD, LLOAD, DLOAD, ALOAD and their store counterparts)
+     */
+    public void local(int opcode, int index) {
+        if (index > 0xFF) {
+            throw new IllegalStateException("Too many locals");
+        }
+        write(opcode);
+        write(index);
+
+        int size = (opcode == LLOAD || opcode == DLOAD || opcode == LSTORE || opcode == DSTORE) ? 2 : 1;
+        adjust(opcode < ISTORE ? size : -size);
+    }
+
+    public void iinc(int index, int delta) {
+        write(IINC);
+        write(index);
+        write(delta & 0xFF);
+    }
+
+    /**
+     * Emits NEW, ANEWARRAY, CHECKCAST or INSTANCEOF
+     */
+    public void type(int opcode, String internalName) {
+        write(opcode);
+        writeShort(owner.classRef(internalName));
+        if (opcode == NEW) {
+            adjust(1);
+        }
+    }
+
+    public void field(int opcode, String fieldOwner, String name, String descriptor) {
+        write(opcode);
+        writeShort(owner.fieldRef(fieldOwner, name, descriptor));
+
+        int size = typeSize(descriptor, 0);
+        switch (opcode) {
+            case GETSTATIC -> adjust(size);
+            case GETFIELD -> adjust(size - 1);
+            case PUTFIELD -> adjust(-size - 1);
+            default -> adjust(-size);
+        }
+    }
+
+    public void invoke(int opcode, String methodOwner, String name, String descriptor) {
+        boolean isInterface = opcode == INVOKEINTERFACE;
+
+        write(opcode);
+        writeShort(owner.methodRef(methodOwner, name, descriptor, isInterface));
+
+        int arguments = argumentSize(descriptor);
+        if (isInterface) {
+            write(arguments + 1);
+            write(0);
+        }
+
+        int returned = typeSize(descriptor, descriptor.indexOf(')') + 1);
+        adjust(returned - arguments - (opcode == INVOKESTATIC ? 0 : 1));
+    }
+
+    // Jumps
+
+    public Label newLabel() {
+        return new Label();
+    }
+
+    /**
+     * Places a label at the current position
+     */
+    public void mark(Label label) {
+        label.position = length;
+        if (label.stack != -1) {
+            stack = label.stack;
+        }
+    }
+
+    public void jump(int opcode, Label label) {
+        fixups.add(new Fixup(length, label));
+        write(opcode);
+        writeShort(0);
+
+        if (opcode == IF_ICMPEQ || opcode == IF_ICMPNE || opcode == IF_ICMPLT
+                || opcode == IF_ICMPGE || opcode == IF_ICMPGT || opcode == IF_ICMPLE) {
+            adjust(-2);
+        } else if (opcode != GOTO) {
+            adjust(-1);
+        }
+
+        if (label.stack == -1) {
+            label.stack = stack;
+        }
+        if (opcode == GOTO) {
+            stack = 0;
+        }
+    }
+
+    byte[] toByteArray() {
+        if (length > Short.MAX_VALUE) {
+            throw new IllegalStateException("Method too large");
+        }
+
+        for (Fixup fixup : fixups) {
+            if (fixup.label().position == -1) {
+                throw new IllegalStateException("Label was never placed");
+            }
+            int offset = fixup.label().position - fixup.opcodePosition();
+            code[fixup.opcodePosition() + 1] = (byte) (offset >> 8);
+            code[fixup.opcodePosition() + 2] = (byte) offset;
+        }
+
+        return Arrays.copyOf(code, length);
+    }
+
+    // Helpers
+
+    private void adjust(int delta) {
+        stack += delta;
+        if (stack > maxStack) {
+            maxStack = stack;
+        }
+    }
+
+    private void write(int value) {
+        if (length == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[length++] = (byte) value;
+    }
+
+    private void writeShort(int value) {
+        write(value >> 8);
+        write(value);
+    }
+
+    /**
+     * Returns the number of local slots taken by the arguments of a method descriptor
+     */
+    static int argumentSize(String descriptor) {
+        int size = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            size += typeSize(descriptor, i);
+            i = skipType(descriptor, i);
+        }
+        return size;
+    }
+
+    private static int typeSize(String descriptor, int index) {
+        return switch (descriptor.charAt(index)) {
+            case 'V' -> 0;
+            case 'J', 'D' -> 2;
+            default -> 1;
+        };
+    }
+
+    private static int skipType(String descriptor, int index) {
+        while (descriptor.charAt(index) == '[') {
+            index++;
+        }
+        if (descriptor.charAt(index) == 'L') {
+            return descriptor.indexOf(';', index) + 1;
+        }
+        return index + 1;
+    }
+}
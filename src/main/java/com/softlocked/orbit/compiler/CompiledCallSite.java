@@ -0,0 +1,106 @@
+package com.softlocked.orbit.compiler;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.core.datatypes.functions.IFunction;
+import com.softlocked.orbit.core.evaluator.Breakpoint;
+import com.softlocked.orbit.interpreter.function.Consumer;
+import com.softlocked.orbit.interpreter.function.NativeFunction;
+import com.softlocked.orbit.interpreter.function.OrbitFunction;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import com.softlocked.orbit.memory.FrameStack;
+import com.softlocked.orbit.memory.ILocalContext;
+import com.softlocked.orbit.memory.LocalContext;
+import com.softlocked.orbit.utils.Pair;
+import com.softlocked.orbit.utils.Utils;
+
+import java.util.List;
+
+/**
+ * A function call inside compiled code. The function is looked up on the first call in each context and cached
+ * by the context, like {@link com.softlocked.orbit.interpreter.ast.variable.FunctionCallASTNode} does.
+ * <p>
+ * When the function a context linked to is compiled as well, the generated code gets it from {@link #target} and
+ * invokes it directly, which lets the JIT inline it into the caller. Links are dropped by the context when a
+ * function is redefined, so the site never calls a function another context linked to, or a replaced one.
+ */
+public class CompiledCallSite {
+    private final String name;
+    // Null when the arguments read compiled locals, which a consumer evaluated later could not see
+    private final List<ASTNode> args;
+
+    public CompiledCallSite(String name, List<ASTNode> args) {
+        this.name = name;
+        this.args = args;
+    }
+
+    /**
+     * Returns the compiled function this site linked to in the given context, or null if it didn't link yet or
+     * the function isn't compiled
+     */
+    public CompiledFunction target(GlobalContext root) {
+        return root.getCallTarget(this) instanceof OrbitFunction function ? function.getCompiled() : null;
+    }
+
+    public Object call(ILocalContext context, Object[] args) throws InterruptedException {
+        GlobalContext root = context.getRoot();
+        IFunction function = root.getCallTarget(this);
+
+        if (function == null) {
+            function = context.getFunction(name, args.length);
+
+            if (function == null) {
+                throw new RuntimeException("Function " + name + " with " + args.length + " arguments not found");
+            }
+            root.setCallTarget(this, function);
+        }
+
+        if (function instanceof OrbitFunction orbitFunction && orbitFunction.getCompiled() != null) {
+            return orbitFunction.getCompiled().invoke(root, args);
+        }
+
+        if (function.getParameterCount() != -1) {
+            Pair<Integer, Variable.Type>[] parameters = function.getParameters();
+
+            for (int i = 0; i < args.length; i++) {
+                if (parameters[i].second == Variable.Type.CONSUMER) {
+                    if (this.args == null) {
+                        throw new RuntimeException("Cannot pass an expression using local variables as a consumer to " + name);
+                    }
+                    args[i] = new Consumer(this.args.get(i));
+                }
+            }
+        }
+
+        if (function instanceof NativeFunction) {
+            if (function.getParameterCount() != -1) {
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = Utils.cast(args[i], function.getParameters()[i].second.getJavaClass());
+                }
+            }
+
+            Object result = function.call(context, args);
+
+            if (result instanceof Breakpoint breakpoint) {
+                return breakpoint.getValue(context);
+            }
+            return result;
+        }
+
+        FrameStack frames = FrameStack.current();
+        LocalContext localContext = frames.push(context.getRoot());
+
+        Object result;
+        try {
+            result = function.call(localContext, args);
+        } finally {
+            localContext.onRemove();
+            frames.pop(localContext);
+        }
+
+        if (result instanceof Breakpoint breakpoint) {
+            return breakpoint.getValue(context);
+        }
+        return result;
+    }
+}
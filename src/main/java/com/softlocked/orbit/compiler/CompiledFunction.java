@@ -0,0 +1,17 @@
+package com.softlocked.orbit.compiler;
+
+import com.softlocked.orbit.memory.ILocalContext;
+
+/**
+ * Entry point of a body compiled to JVM bytecode.
+ * @see BytecodeCompiler
+ */
+public interface CompiledFunction {
+    /**
+     * Runs the compiled body
+     * @param context The context used for names which are not resolved to locals
+     * @param args The arguments of the function, or an empty array for statements
+     * @return The returned value
+     */
+    Object invoke(ILocalContext context, Object[] args) throws InterruptedException;
+}
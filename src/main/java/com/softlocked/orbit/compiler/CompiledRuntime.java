@@ -0,0 +1,219 @@
+package com.softlocked.orbit.compiler;
+
+import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.core.datatypes.classes.OrbitObject;
+import com.softlocked.orbit.core.evaluator.Breakpoint;
+import com.softlocked.orbit.core.evaluator.Evaluator;
+import com.softlocked.orbit.core.exception.InternalException;
+import com.softlocked.orbit.interpreter.ast.value.VariableASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.AssignVarASTNode;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import com.softlocked.orbit.memory.ILocalContext;
+import com.softlocked.orbit.utils.Utils;
+
+/**
+ * Static helpers called by compiled code. Each of them does the same thing as the AST node it stands in for.
+ */
+public class CompiledRuntime {
+    public static void checkInterrupted(GlobalContext root) throws InterruptedException {
+        if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
+    }
+
+    // Variables
+
+    public static Object load(ILocalContext context, int hash) {
+        return value(context.getVariable(hash));
+    }
+
+    public static Object loadOuter(ILocalContext context, int hash) {
+        return value(context.getOuterVariable(hash));
+    }
+
+    /**
+     * Reads a name of a method which isn't one of its locals, through the field site the resolver gave it
+     */
+    public static Object loadField(VariableASTNode node, ILocalContext context) {
+        return value(node.lookup(context));
+    }
+
+    public static void assignField(AssignVarASTNode node, ILocalContext context, Object value) throws InterruptedException {
+        assign(node.lookup(context), node.variableName(), value);
+    }
+
+    private static Object value(Variable variable) {
+        if (variable == null) {
+            return null;
+        }
+        return variable.getValue();
+    }
+
+    public static void assign(ILocalContext context, int hash, String name, Object value) throws InterruptedException {
+        assign(context.getVariable(hash), name, value);
+    }
+
+    public static void assignOuter(ILocalContext context, int hash, String name, Object value) throws InterruptedException {
+        assign(context.getOuterVariable(hash), name, value);
+    }
+
+    private static void assign(Variable variable, String name, Object value) throws InterruptedException {
+        if (variable == null) {
+            throw new RuntimeException("Variable " + name + " not found");
+        }
+
+        if (variable.getType().getJavaClass().equals(Variable.class)) {
+            variable.setValue(value);
+            return;
+        }
+        variable.setValue(Utils.cast(value, variable.getType().getJavaClass()));
+    }
+
+    public static Object unwrap(Object value) {
+        if (value instanceof Variable variable) {
+            return variable.getValue();
+        }
+        return value;
+    }
+
+    // Conversions
+
+    public static Object cast(Object value, Variable.Type type) throws InterruptedException {
+        return Utils.cast(value, type.getJavaClass());
+    }
+
+    public static int toInt(Object value) throws InterruptedException {
+        if (value instanceof Integer i) {
+            return i;
+        }
+        return (int) Utils.cast(value, int.class);
+    }
+
+    public static long toLong(Object value) throws InterruptedException {
+        if (value instanceof Long l) {
+            return l;
+        }
+        return (long) Utils.cast(value, long.class);
+    }
+
+    public static double toDouble(Object value) throws InterruptedException {
+        if (value instanceof Double d) {
+            return d;
+        }
+        return (double) Utils.cast(value, double.class);
+    }
+
+    public static boolean toBoolean(Object value) throws InterruptedException {
+        if (value instanceof Boolean b) {
+            return b;
+        }
+        return (boolean) Utils.cast(value, boolean.class);
+    }
+
+    /**
+     * Reads the start or end of a for loop
+     */
+    public static long longValue(Object value) {
+        return ((Number) value).longValue();
+    }
+
+    public static boolean truthy(Object value) throws InterruptedException {
+        return Evaluator.toBool(value);
+    }
+
+    // Arithmetic on boxed values. Numbers are computed in the wider of the two types, the same way Evaluator does.
+
+    private static int rank(Object value) {
+        if (value instanceof Integer) return 4;
+        if (value instanceof Double) return 1;
+        if (value instanceof Long) return 3;
+        if (value instanceof Float) return 2;
+        return 0;
+    }
+
+    public static Object add(Object a, Object b) throws InterruptedException {
+        int rank = Math.min(rank(a), rank(b));
+        if (rank != 0) {
+            Number x = (Number) a, y = (Number) b;
+            return switch (rank) {
+                case 1 -> x.doubleValue() + y.doubleValue();
+                case 2 -> x.floatValue() + y.floatValue();
+                case 3 -> x.longValue() + y.longValue();
+                default -> x.intValue() + y.intValue();
+            };
+        }
+        return Evaluator.add(a, b);
+    }
+
+    public static Object subtract(Object a, Object b) throws InterruptedException {
+        int rank = Math.min(rank(a), rank(b));
+        if (rank != 0) {
+            Number x = (Number) a, y = (Number) b;
+            return switch (rank) {
+                case 1 -> x.doubleValue() - y.doubleValue();
+                case 2 -> x.floatValue() - y.floatValue();
+                case 3 -> x.longValue() - y.longValue();
+                default -> x.intValue() - y.intValue();
+            };
+        }
+        return Evaluator.subtract(a, b);
+    }
+
+    public static Object multiply(Object a, Object b) throws InterruptedException {
+        int rank = Math.min(rank(a), rank(b));
+        if (rank != 0) {
+            Number x = (Number) a, y = (Number) b;
+            return switch (rank) {
+                case 1 -> x.doubleValue() * y.doubleValue();
+                case 2 -> x.floatValue() * y.floatValue();
+                case 3 -> x.longValue() * y.longValue();
+                default -> x.intValue() * y.intValue();
+            };
+        }
+        return Evaluator.multiply(a, b);
+    }
+
+    public static Object divide(Object a, Object b) throws InterruptedException {
+        int rank = Math.min(rank(a), rank(b));
+        if (rank != 0) {
+            Number x = (Number) a, y = (Number) b;
+            return switch (rank) {
+                case 1 -> x.doubleValue() / y.doubleValue();
+                case 2 -> x.floatValue() / y.floatValue();
+                case 3 -> x.longValue() / y.longValue();
+                default -> x.intValue() / y.intValue();
+            };
+        }
+        return Evaluator.divide(a, b);
+    }
+
+    public static Object modulo(Object a, Object b) throws InterruptedException {
+        int rank = Math.min(rank(a), rank(b));
+        if (rank != 0) {
+            Number x = (Number) a, y = (Number) b;
+            return switch (rank) {
+                case 1 -> x.doubleValue() % y.doubleValue();
+                case 2 -> x.floatValue() % y.floatValue();
+                case 3 -> x.longValue() % y.longValue();
+                default -> x.intValue() % y.intValue();
+            };
+        }
+        return Evaluator.modulo(a, b);
+    }
+
+    // Control flow
+
+    /**
+     * Completes a compiled statement with a return, so that it stops the enclosing body like a return statement
+     */
+    public static Object returnValue(ILocalContext context, Object value) {
+        return Breakpoint.returning(context, value);
+    }
+
+    public static RuntimeException raise(ILocalContext context, Object value) {
+        if (!(value instanceof OrbitObject exception)
+                || !exception.getClazz().extendsClass(context.getRoot().getClassType("exception"))) {
+            return new RuntimeException("Attempted to throw a non-exception object.");
+        }
+
+        return new InternalException(exception);
+    }
+}
@@ -0,0 +1,15 @@
+package com.softlocked.orbit.compiler;
+
+/**
+ * Class loader for the classes generated by the bytecode compiler. Each compiled body gets its own loader,
+ * so its class can be unloaded once the body is no longer referenced.
+ */
+public class CompilerClassLoader extends ClassLoader {
+    public CompilerClassLoader() {
+        super(CompilerClassLoader.class.getClassLoader());
+    }
+
+    public Class<?> define(String internalName, byte[] bytes) {
+        return defineClass(internalName.replace('/', '.'), bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,130 @@
+package com.softlocked.orbit.core.ast;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Remembers where the nodes parsed from a piece of code start in it.
+ * <p>
+ * A position is a single offset into the code, kept in this map instead of in the nodes so that evaluating them
+ * doesn't pay for it. Lines and columns are worked out from the offset only when they are asked for, e.g. for an
+ * error message.
+ */
+public final class SourceMap {
+    private final String name;
+    private final String code;
+
+    private final Reference2IntOpenHashMap<ASTNode> offsets = new Reference2IntOpenHashMap<>();
+
+    // Offset of the first character of every line, computed the first time a line is asked for
+    private int[] lineStarts;
+
+    /**
+     * @param name The name shown in positions, usually the path of the file
+     * @param code The code the nodes are parsed from
+     */
+    public SourceMap(String name, String code) {
+        this.name = name;
+        this.code = code;
+        this.offsets.defaultReturnValue(-1);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public synchronized void put(ASTNode node, int offset) {
+        if (node != null && offset >= 0) {
+            offsets.put(node, offset);
+        }
+    }
+
+    /**
+     * Gives a node the position of another one, e.g. when the other one is wrapped by it
+     */
+    public synchronized void copy(ASTNode from, ASTNode to) {
+        put(to, offsets.getInt(from));
+    }
+
+    /**
+     * Moves the position of a node to the node which replaces it
+     */
+    public synchronized void move(ASTNode from, ASTNode to) {
+        put(to, offsets.removeInt(from));
+    }
+
+    /**
+     * Returns the offset a node starts at, or -1 if it isn't from this code
+     */
+    public synchronized int getOffset(ASTNode node) {
+        return offsets.getInt(node);
+    }
+
+    /**
+     * Calls the action with every node of this code and its offset
+     */
+    public synchronized void forEach(ObjIntConsumer<ASTNode> action) {
+        for (Reference2IntMap.Entry<ASTNode> entry : offsets.reference2IntEntrySet()) {
+            action.accept(entry.getKey(), entry.getIntValue());
+        }
+    }
+
+    /**
+     * Returns the line of an offset, starting at 1
+     */
+    public int getLine(int offset) {
+        int line = Arrays.binarySearch(lineStarts(), offset);
+        return line >= 0 ? line + 1 : -line - 1;
+    }
+
+    /**
+     * Returns the column of an offset, starting at 1
+     */
+    public int getColumn(int offset) {
+        return offset - lineStarts()[getLine(offset) - 1] + 1;
+    }
+
+    /**
+     * Describes an offset as <code>name:line:column</code>
+     */
+    public String describe(int offset) {
+        return name + ":" + getLine(offset) + ":" + getColumn(offset);
+    }
+
+    /**
+     * Describes the position of a node as <code>name:line:column</code>
+     * @return The position, or null if the node isn't from this code
+     */
+    public String describe(ASTNode node) {
+        int offset = getOffset(node);
+        return offset == -1 ? null : describe(offset);
+    }
+
+    private synchronized int[] lineStarts() {
+        if (lineStarts == null) {
+            int count = 1;
+            for (int i = 0; i < code.length(); i++) {
+                if (code.charAt(i) == '\n') {
+                    count++;
+                }
+            }
+
+            int[] starts = new int[count];
+            int line = 1;
+            for (int i = 0; i < code.length(); i++) {
+                if (code.charAt(i) == '\n') {
+                    starts[line++] = i + 1;
+                }
+            }
+            lineStarts = starts;
+        }
+        return lineStarts;
+    }
+}
@@ -5,6 +5,12 @@ public class ConstVar extends Variable {
         super(type, value);
     }
 
+    // A constant can't change, so it's shared instead of copied
+    @Override
+    public Variable copy() {
+        return this;
+    }
+
     @Override
     public void setValue(Object value) {
         throw new UnsupportedOperationException("Cannot change the value of a constant variable.");
@@ -0,0 +1,36 @@
+package com.softlocked.orbit.core.datatypes;
+
+/**
+ * A variable of type double which holds its value unboxed, see {@link PrimitiveVariable}
+ */
+public class DoubleVariable extends PrimitiveVariable {
+    private double primitive;
+
+    public DoubleVariable(Object value) {
+        super(Type.DOUBLE);
+        setValue(value);
+    }
+
+    public double getDouble() {
+        return primitive;
+    }
+
+    public void setDouble(double value) {
+        primitive = value;
+        stored();
+    }
+
+    @Override
+    protected boolean store(Object value) {
+        if (value instanceof Double v) {
+            primitive = v;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected Object box() {
+        return primitive;
+    }
+}
@@ -0,0 +1,36 @@
+package com.softlocked.orbit.core.datatypes;
+
+/**
+ * A variable of type int which holds its value unboxed, see {@link PrimitiveVariable}
+ */
+public class IntVariable extends PrimitiveVariable {
+    private int primitive;
+
+    public IntVariable(Object value) {
+        super(Type.INT);
+        setValue(value);
+    }
+
+    public int getInt() {
+        return primitive;
+    }
+
+    public void setInt(int value) {
+        primitive = value;
+        stored();
+    }
+
+    @Override
+    protected boolean store(Object value) {
+        if (value instanceof Integer v) {
+            primitive = v;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected Object box() {
+        return primitive;
+    }
+}
@@ -0,0 +1,36 @@
+package com.softlocked.orbit.core.datatypes;
+
+/**
+ * A variable of type long which holds its value unboxed, see {@link PrimitiveVariable}
+ */
+public class LongVariable extends PrimitiveVariable {
+    private long primitive;
+
+    public LongVariable(Object value) {
+        super(Type.LONG);
+        setValue(value);
+    }
+
+    public long getLong() {
+        return primitive;
+    }
+
+    public void setLong(long value) {
+        primitive = value;
+        stored();
+    }
+
+    @Override
+    protected boolean store(Object value) {
+        if (value instanceof Long v) {
+            primitive = v;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected Object box() {
+        return primitive;
+    }
+}
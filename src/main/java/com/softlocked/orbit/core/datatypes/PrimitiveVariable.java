@@ -0,0 +1,70 @@
+package com.softlocked.orbit.core.datatypes;
+
+/**
+ * A variable of a numeric type which holds its value unboxed, so that writing to it doesn't allocate.
+ * Values which are not of that type (null, or whatever a cast returned) are kept as objects, like in a plain variable.
+ * <p>
+ * Subclasses hold the primitive, and read and write it through typed methods.
+ * @see IntVariable
+ * @see LongVariable
+ * @see DoubleVariable
+ */
+public abstract class PrimitiveVariable extends Variable {
+    private boolean unboxed;
+
+    protected PrimitiveVariable(Type type) {
+        super(type, null);
+    }
+
+    /**
+     * Returns whether the value is held unboxed, so that it can be read with the typed getter of the subclass
+     */
+    public boolean isUnboxed() {
+        return unboxed;
+    }
+
+    /**
+     * Stores the primitive if the value has the type of the variable
+     * @return Whether it was stored
+     */
+    protected abstract boolean store(Object value);
+
+    /**
+     * Returns the primitive, boxed
+     */
+    protected abstract Object box();
+
+    /**
+     * Called by the typed setter once it stored the primitive
+     */
+    protected final void stored() {
+        unboxed = true;
+        super.setValue(null);
+    }
+
+    @Override
+    public Object getValue() {
+        return unboxed ? boxed() : super.getValue();
+    }
+
+    @Override
+    public Object getRawValue() {
+        return unboxed ? boxed() : super.getRawValue();
+    }
+
+    @Override
+    public void setValue(Object value) {
+        unboxed = store(value);
+        super.setValue(value);
+    }
+
+    // The boxed value is kept until the next write, so reading it repeatedly doesn't allocate either
+    private Object boxed() {
+        Object box = super.getRawValue();
+        if (box == null) {
+            box = box();
+            super.setValue(box);
+        }
+        return box;
+    }
+}
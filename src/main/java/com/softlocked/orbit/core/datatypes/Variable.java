@@ -21,6 +21,27 @@ public class Variable {
         this.value = value;
     }
 
+    /**
+     * Creates a variable for a value which was already cast to the type. Numeric types get a cell which holds
+     * the value unboxed.
+     * @see PrimitiveVariable
+     */
+    public static Variable of(Variable.Type type, Object value) {
+        return switch (type) {
+            case INT -> new IntVariable(value);
+            case LONG -> new LongVariable(value);
+            case DOUBLE -> new DoubleVariable(value);
+            default -> new Variable(type, value);
+        };
+    }
+
+    /**
+     * Returns a new variable holding the same value, which can be changed without changing this one
+     */
+    public Variable copy() {
+        return Variable.of(type, getRawValue());
+    }
+
     public Variable.Type getType() {
         return type;
     }
@@ -46,7 +67,7 @@ public class Variable {
 
     @Override
     public String toString() {
-        return "reference(" + value + ")";
+        return "reference(" + getRawValue() + ")";
     }
 
     public enum Type {
@@ -168,7 +189,7 @@ public class Variable {
     }
 
     public long getSize() {
-        return getSize(value);
+        return getSize(getRawValue());
     }
 
     public static long getSize(Object obj) {
@@ -14,19 +14,37 @@ import java.util.function.BiConsumer;
 
 /**
  * Used for representing a class in the Orbit language
+ * <p>
+ * Methods are flattened into a table when the class is created, so that looking one up never has to walk
+ * the super classes. Fields, including inherited ones, get a fixed slot in the field layout, and instances store
+ * them in an array in that order.
  *
  * @see Variable
  */
-public record OrbitClass(String name, List<OrbitClass> superClasses,
-                         HashMap<String, Pair<Variable.Type, ASTNode>> fields,
-                         HashMap<Pair<String, Integer>, IFunction> functions,
-                         HashMap<Integer, ClassConstructor> constructors) {
+public final class OrbitClass {
+    private final String name;
+    private final List<OrbitClass> superClasses;
+    private final HashMap<String, Pair<Variable.Type, ASTNode>> fields;
+    private final HashMap<Pair<String, Integer>, IFunction> functions;
+    private final HashMap<Integer, ClassConstructor> constructors;
+
+    // Methods of the class and of its super classes, by name and then by parameter count
+    private final HashMap<String, IFunction[]> methods = new HashMap<>();
+
+    // Field layout. The last slot holds "this"
+    private final String[] fieldNames;
+    private final int[] fieldHashes;
+    private final Pair<Variable.Type, ASTNode>[] fieldData;
+    private final HashMap<String, Integer> fieldSlots = new HashMap<>();
+
     public OrbitClass(String name, List<OrbitClass> superClasses, HashMap<String, Pair<Variable.Type, ASTNode>> fields, HashMap<Pair<String, Integer>, IFunction> functions, HashMap<Integer, ClassConstructor> constructors) {
         this.name = name;
         this.superClasses = superClasses;
-        this.fields = fields;
         this.functions = functions;
-        this.constructors = constructors;
+
+        // Copied, since inherited members are added to them and the maps can belong to a shared class definition
+        this.fields = fields == null ? new HashMap<>() : new HashMap<>(fields);
+        this.constructors = constructors == null ? new HashMap<>() : new HashMap<>(constructors);
 
         // Add fields from super classes if they are not overridden
         if (superClasses != null) {
@@ -53,6 +71,166 @@ public record OrbitClass(String name, List<OrbitClass> superClasses,
                 }
             }
         }
+
+        // Lay out the fields
+        int fieldCount = this.fields.size();
+        this.fieldNames = new String[fieldCount + 1];
+        this.fieldHashes = new int[fieldCount + 1];
+        this.fieldData = new Pair[fieldCount];
+
+        int slot = 0;
+        for (Map.Entry<String, Pair<Variable.Type, ASTNode>> field : this.fields.entrySet()) {
+            fieldNames[slot] = field.getKey();
+            fieldData[slot++] = field.getValue();
+        }
+        fieldNames[slot] = "this";
+
+        for (int i = 0; i < fieldNames.length; i++) {
+            fieldHashes[i] = fieldNames[i].hashCode();
+            fieldSlots.put(fieldNames[i], i);
+        }
+
+        // Build the method table. Own methods come first, then the ones of the super classes in order, whose
+        // tables already contain their inherited methods
+        if (functions != null) {
+            for (Map.Entry<Pair<String, Integer>, IFunction> entry : functions.entrySet()) {
+                addMethod(entry.getKey().first, entry.getKey().second, entry.getValue());
+            }
+        }
+        if (superClasses != null) {
+            for (OrbitClass superClass : superClasses) {
+                for (Map.Entry<String, IFunction[]> entry : superClass.methods.entrySet()) {
+                    IFunction[] inherited = entry.getValue();
+                    for (int i = 0; i < inherited.length; i++) {
+                        if (inherited[i] != null) {
+                            addMethod(entry.getKey(), i, inherited[i]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void addMethod(String name, int parameterCount, IFunction function) {
+        if (parameterCount < 0) {
+            return;
+        }
+
+        IFunction[] overloads = methods.get(name);
+        if (overloads == null || overloads.length <= parameterCount) {
+            overloads = overloads == null ? new IFunction[parameterCount + 1] : Arrays.copyOf(overloads, parameterCount + 1);
+            methods.put(name, overloads);
+        }
+
+        if (overloads[parameterCount] == null) {
+            overloads[parameterCount] = function;
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public List<OrbitClass> superClasses() {
+        return superClasses;
+    }
+
+    public HashMap<String, Pair<Variable.Type, ASTNode>> fields() {
+        return fields;
+    }
+
+    public HashMap<Pair<String, Integer>, IFunction> functions() {
+        return functions;
+    }
+
+    public HashMap<Integer, ClassConstructor> constructors() {
+        return constructors;
+    }
+
+    /**
+     * Returns the number of slots of an instance, including the one for "this"
+     */
+    public int getFieldCount() {
+        return fieldNames.length;
+    }
+
+    /**
+     * Returns the slot of a field in the field layout, or -1 if the class has no such field
+     */
+    public int getFieldSlot(String name) {
+        Integer slot = fieldSlots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Returns the slot of the field whose name has the given hash, or -1 if the class has no such field
+     */
+    public int getFieldSlot(int hash) {
+        int[] hashes = fieldHashes;
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] == hash) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String getFieldName(int slot) {
+        return fieldNames[slot];
+    }
+
+    public int getFieldHash(int slot) {
+        return fieldHashes[slot];
+    }
+
+    /**
+     * Returns the type and the initial value of the field in a slot. The slot of "this" has none.
+     */
+    public Pair<Variable.Type, ASTNode> getFieldData(int slot) {
+        return fieldData[slot];
+    }
+
+    /**
+     * Finds a method declared in this class or inherited from one of its super classes
+     * @return The method, or null if there is none
+     */
+    public IFunction getMethod(String name, int parameterCount) {
+        IFunction[] overloads = methods.get(name);
+
+        if (overloads == null || parameterCount < 0 || parameterCount >= overloads.length) {
+            return null;
+        }
+        return overloads[parameterCount];
+    }
+
+    /**
+     * Finds a method for a call through <code>super</code>, skipping the methods declared in this class
+     */
+    public IFunction getSuperMethod(String name, int parameterCount) {
+        if (superClasses != null) {
+            for (OrbitClass superClass : superClasses) {
+                IFunction function = superClass.getMethod(name, parameterCount);
+
+                if (function != null) {
+                    return function;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the function is a method of this class, declared or inherited
+     */
+    public boolean hasMethod(IFunction function) {
+        for (IFunction[] overloads : methods.values()) {
+            for (IFunction overload : overloads) {
+                if (overload == function) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     public boolean extendsClass(OrbitClass clazz) {
@@ -80,6 +258,16 @@ public record OrbitClass(String name, List<OrbitClass> superClasses,
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "OrbitClass[name=" + name + "]";
+    }
+
     public OrbitObject createInstance(List<Object> args, GlobalContext rootContext) throws InterruptedException {
         return new OrbitObject(this, args, rootContext);
     }
@@ -5,6 +5,7 @@ import com.softlocked.orbit.core.datatypes.Variable;
 import com.softlocked.orbit.core.datatypes.functions.IFunction;
 import com.softlocked.orbit.interpreter.function.ClassConstructor;
 import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import com.softlocked.orbit.memory.FrameStack;
 import com.softlocked.orbit.memory.LocalContext;
 import com.softlocked.orbit.utils.Pair;
 
@@ -16,23 +17,26 @@ public class OrbitObject {
 
     private final OrbitClass clazz;
 
-    private final HashMap<String, Variable> fields = new HashMap<>();
+    // Laid out by the class, see OrbitClass#getFieldSlot
+    private final Variable[] fields;
 
     public OrbitObject(OrbitClass clazz, List<Object> args, GlobalContext rootContext) throws InterruptedException {
         this.rootContext = rootContext;
         this.clazz = clazz;
+        this.fields = new Variable[clazz.getFieldCount()];
 
         LocalContext context = new LocalContext(rootContext);
-        for (String field : clazz.fields().keySet()) {
-            Pair<Variable.Type, ASTNode> fieldData = clazz.fields().get(field);
+        int self = fields.length - 1;
+        for (int i = 0; i < self; i++) {
+            Pair<Variable.Type, ASTNode> fieldData = clazz.getFieldData(i);
             if (fieldData.second != null) {
-                fields.put(field, new Variable(fieldData.first, fieldData.second.evaluate(context)));
+                fields[i] = Variable.of(fieldData.first, fieldData.second.evaluate(context));
             } else {
-                fields.put(field, new Variable(fieldData.first, null));
+                fields[i] = Variable.of(fieldData.first, null);
             }
         }
 
-        fields.put("this", new Variable(Variable.Type.CLASS, this));
+        fields[self] = new Variable(Variable.Type.CLASS, this);
 
         if (args != null) {
             HashMap<Integer, ClassConstructor> constructors = clazz.constructors();
@@ -42,12 +46,7 @@ public class OrbitObject {
             }
 
             if (constructors.containsKey(args.size())) {
-                // Add the fields to the context
-                for (String field : fields.keySet()) {
-                    context.addVariable(field.hashCode(), fields.get(field));
-                }
-
-                constructors.get(args.size()).call(new LocalContext(context), new List[]{args});
+                invoke(constructors.get(args.size()), args.toArray());
             } else {
                 throw new RuntimeException("No constructor found for " + clazz.name() + " with " + args.size() + " arguments");
             }
@@ -57,8 +56,8 @@ public class OrbitObject {
     public long getSize() {
         long size = 0;
 
-        for (String field : fields.keySet()) {
-            size += Variable.getSize(fields.get(field));
+        for (Variable field : fields) {
+            size += Variable.getSize(field);
         }
 
         return size;
@@ -69,7 +68,16 @@ public class OrbitObject {
     }
 
     public Variable getField(String name) {
-        return fields.get(name);
+        int slot = clazz.getFieldSlot(name);
+        return slot == -1 ? null : fields[slot];
+    }
+
+    /**
+     * Returns the field in a slot of the layout of the class
+     * @see OrbitClass#getFieldSlot
+     */
+    public Variable getField(int slot) {
+        return fields[slot];
     }
 
     public Object callFunction(String name, List<Object> args) throws InterruptedException  {
@@ -77,99 +85,25 @@ public class OrbitObject {
     }
 
     public Object callFunction(String name, List<Object> args, boolean superCall) throws InterruptedException {
-        HashMap<Pair<String, Integer>, IFunction> functions = clazz.functions();
-
-        IFunction func = null;
-
-        if(!superCall) {
-            func = functions.get(new Pair<>(name, args.size()));
-        }
-
-        if (func != null) {
-            LocalContext context = new LocalContext(rootContext);
-
-            // Add the fields to the context
-            for (String field : fields.keySet()) {
-                context.addVariable(field.hashCode(), fields.get(field));
-            }
-
-            return func.call(context, new List[]{args});
-        }
-
-        if (clazz.superClasses() != null) {
-            for (OrbitClass superClass : clazz.superClasses()) {
-                func = superClass.functions().get(new Pair<>(name, args.size()));
-
-                if (func != null) {
-                    LocalContext context = new LocalContext(rootContext);
+        IFunction func = superCall ? clazz.getSuperMethod(name, args.size()) : clazz.getMethod(name, args.size());
 
-                    // Add the fields to the context
-                    for (String field : fields.keySet()) {
-                        context.addVariable(field.hashCode(), fields.get(field));
-                    }
-
-                    return func.call(context, new List[]{args});
-                }
-            }
+        if (func == null) {
+            throw new RuntimeException("No function " + clazz.name() + ":" + name + " with " + args.size() + " arguments found");
         }
 
-        throw new RuntimeException("No function " + clazz.name() + ":" + name + " with " + args.size() + " arguments found");
+        return invoke(func, args.toArray());
     }
 
     public IFunction hasFunction(String name, int argsCount) {
-        HashMap<Pair<String, Integer>, IFunction> functions = clazz.functions();
-
-        IFunction func = functions.get(new Pair<>(name, argsCount));
-
-        if (func != null) {
-            return func;
-        }
-
-        if (clazz.superClasses() != null) {
-            for (OrbitClass superClass : clazz.superClasses()) {
-                func = superClass.functions().get(new Pair<>(name, argsCount));
-
-                if (func != null) {
-                    return func;
-                }
-            }
-        }
-
-        return null;
+        return clazz.getMethod(name, argsCount);
     }
 
     public boolean hasFunction(IFunction function) {
-        if (clazz.functions().containsValue(function)) {
-            return true;
-        }
-
-        if (clazz.superClasses() != null) {
-            for (OrbitClass superClass : clazz.superClasses()) {
-                if (superClass.functions().containsValue(function)) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        return clazz.hasMethod(function);
     }
 
     public IFunction getFunction(String name, int argsCount) {
-        HashMap<Pair<String, Integer>, IFunction> functions = clazz.functions();
-
-        if (functions.containsKey(new Pair<>(name, argsCount))) {
-            return functions.get(new Pair<>(name, argsCount));
-        }
-
-        if (clazz.superClasses() != null) {
-            for (OrbitClass superClass : clazz.superClasses()) {
-                if (superClass.functions().containsKey(new Pair<>(name, argsCount))) {
-                    return superClass.functions().get(new Pair<>(name, argsCount));
-                }
-            }
-        }
-
-        return null;
+        return clazz.getMethod(name, argsCount);
     }
 
     public Object callFunction(IFunction function, List<Object> args) throws InterruptedException {
@@ -177,14 +111,26 @@ public class OrbitObject {
     }
 
     public Object callFunction(IFunction function, List<Object> args, boolean superCall) throws InterruptedException {
-        LocalContext context = new LocalContext(rootContext);
+        return invoke(function, args.toArray());
+    }
 
-        // Add the fields to the context
-        for (String field : fields.keySet()) {
-            context.addVariable(field.hashCode(), fields.get(field));
-        }
+    /**
+     * Calls a method of this object. The method runs in a pooled frame which has this object as its receiver,
+     * so the fields are visible without being copied.
+     * @param function The method, as found by {@link OrbitClass#getMethod}
+     * @param args The arguments, already cast to the parameter types
+     */
+    public Object invoke(IFunction function, Object[] args) throws InterruptedException {
+        FrameStack frames = FrameStack.current();
+        LocalContext context = frames.push(rootContext);
+        context.setReceiver(this);
 
-        return function.call(context, new List[]{args});
+        try {
+            return function.call(context, args);
+        } finally {
+            context.onRemove();
+            frames.pop(context);
+        }
     }
 
     @Override
@@ -204,9 +150,7 @@ public class OrbitObject {
             throw new RuntimeException(e);
         }
 
-        for (String field : fields.keySet()) {
-            obj.fields.put(field, fields.get(field));
-        }
+        System.arraycopy(fields, 0, obj.fields, 0, fields.length);
 
         return obj;
     }
@@ -1,12 +1,20 @@
 package com.softlocked.orbit.core.evaluator;
 
 import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.memory.FrameStack;
 import com.softlocked.orbit.memory.ILocalContext;
 
 /**
- * Used by break, continue, and return statements to control the flow of the program.
+ * Used by break, continue, and return statements to control the flow of the program. A statement which stops the
+ * body it is in completes with a breakpoint instead of a value, and every body and loop hands it to the node above
+ * it until the one it is meant for.
+ * <p>
+ * Breaks, continues and returns complete with the shared {@link #BREAK}, {@link #CONTINUE} and {@link #RETURN}
+ * signals, so that they allocate nothing and can be compared by reference. The value of a return is kept by the
+ * frame stack of the thread until the function takes it, see {@link #getValue(ILocalContext)}. Yields still carry
+ * their value and the place they stopped at, which the coroutine resumes from.
  */
-public class Breakpoint {
+public final class Breakpoint {
     public enum Type {
         BREAK,
         CONTINUE,
@@ -15,13 +23,17 @@ public class Breakpoint {
         THROW
     }
 
-    private Type type;
+    public static final Breakpoint BREAK = new Breakpoint(Type.BREAK, null, null, null);
+    public static final Breakpoint CONTINUE = new Breakpoint(Type.CONTINUE, null, null, null);
+    public static final Breakpoint RETURN = new Breakpoint(Type.RETURN, null, null, null);
 
-    private Object value;
+    private final Type type;
 
-    private ASTNode node;
+    private final Object value;
 
-    private ILocalContext context;
+    private final ASTNode node;
+
+    private final ILocalContext context;
 
     public Breakpoint(Type type, Object value, ASTNode node, ILocalContext context) {
         this.type = type;
@@ -31,17 +43,32 @@ public class Breakpoint {
     }
 
     public Breakpoint(Type type, ASTNode node, ILocalContext context) {
-        this.type = type;
-        this.value = null;
-        this.node = node;
-        this.context = context;
+        this(type, null, node, context);
+    }
+
+    /**
+     * Completes a return statement
+     * @return The {@link #RETURN} signal
+     */
+    public static Breakpoint returning(ILocalContext context, Object value) {
+        FrameStack.current().setReturnValue(value);
+        return RETURN;
     }
 
     public Type getType() {
         return type;
     }
 
-    public Object getValue() {
+    /**
+     * Returns the value a body completed with, taking the returned value from the frame stack of the thread. The
+     * value of a return can only be taken once, by the function (or program) the return completes.
+     * @param context The context the body ran in
+     * @see FrameStack#takeReturnValue()
+     */
+    public Object getValue(ILocalContext context) {
+        if (this == RETURN) {
+            return FrameStack.current().takeReturnValue();
+        }
         return value;
     }
 
@@ -52,16 +79,4 @@ public class Breakpoint {
     public ILocalContext getContext() {
         return context;
     }
-
-    public void setValue(Object value) {
-        this.value = value;
-    }
-
-    public void setType(Type type) {
-        this.type = type;
-    }
-
-    public void setContext(ILocalContext context) {
-        this.context = context;
-    }
 }
@@ -0,0 +1,27 @@
+package com.softlocked.orbit.core.exception;
+
+/**
+ * An error which happened while parsing or evaluating a known position in the code. The message is the one of the
+ * original error, and the position is kept apart from it.
+ * @see com.softlocked.orbit.core.ast.SourceMap
+ */
+public class SourceException extends RuntimeException {
+    private final String location;
+
+    public SourceException(RuntimeException cause, String location) {
+        super(cause.getMessage(), cause);
+        this.location = location;
+    }
+
+    /**
+     * Returns the position of the error, as <code>name:line:column</code>
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    @Override
+    public String toString() {
+        return getMessage() + " (at " + location + ")";
+    }
+}
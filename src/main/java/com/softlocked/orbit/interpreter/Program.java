@@ -0,0 +1,107 @@
+package com.softlocked.orbit.interpreter;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.ast.SourceMap;
+import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.core.evaluator.Breakpoint;
+import com.softlocked.orbit.core.exception.ParsingException;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import com.softlocked.orbit.parser.Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A parsed program which can run in several contexts at once, e.g. to evaluate one script against many inputs
+ * on all cores.
+ * <p>
+ * The tree is frozen once it is parsed: nodes keep nothing which belongs to one context or one evaluation, and
+ * everything a run creates (globals, classes, linked functions, frames) lives in the {@link GlobalContext} it runs in.
+ * Every run needs a context of its own.
+ */
+public final class Program {
+    private static final int INPUT = "input".hashCode();
+
+    private final ASTNode root;
+    private final SourceMap source;
+
+    private Program(ASTNode root, SourceMap source) {
+        this.root = root;
+        this.source = source;
+    }
+
+    public static Program parse(String code) throws ParsingException {
+        return parse(code, false);
+    }
+
+    /**
+     * @param compile Whether to compile the program to JVM bytecode
+     */
+    public static Program parse(String code, boolean compile) throws ParsingException {
+        GlobalContext context = new GlobalContext();
+        context.setCompilationEnabled(compile);
+
+        SourceMap source = new SourceMap("<program>", code);
+        return new Program(Parser.parse(source, context), source);
+    }
+
+    public ASTNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Runs the program in a context which no other run uses
+     * @return The value of a top level return statement, or null
+     */
+    public Object run(GlobalContext context) throws InterruptedException {
+        context.addSource(source);
+
+        Object result = root.evaluate(context);
+
+        if (result instanceof Breakpoint breakpoint) {
+            return breakpoint.getValue(context);
+        }
+        return null;
+    }
+
+    /**
+     * Runs the program once for every input, each time in a new context where the input is the global variable
+     * <code>input</code>.
+     * @param threads The number of worker threads
+     * @return The results of the runs, in the order of the inputs
+     */
+    public List<Object> runAll(List<?> inputs, int threads) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<Object>> runs = new ArrayList<>(inputs.size());
+            for (Object input : inputs) {
+                runs.add(executor.submit(() -> {
+                    GlobalContext context = new GlobalContext();
+                    context.addVariable(INPUT, new Variable(Variable.Type.ANY, input));
+
+                    return run(context);
+                }));
+            }
+
+            List<Object> results = new ArrayList<>(inputs.size());
+            for (Future<Object> run : runs) {
+                try {
+                    results.add(run.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException exception) {
+                        throw exception;
+                    }
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.softlocked.orbit.interpreter.ast.generic;
 import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.datatypes.Variable;
 import com.softlocked.orbit.core.evaluator.Breakpoint;
+import com.softlocked.orbit.core.exception.InternalException;
+import com.softlocked.orbit.core.exception.SourceException;
 import com.softlocked.orbit.memory.ILocalContext;
 
 import java.util.Arrays;
@@ -21,14 +23,22 @@ public class BodyASTNode implements ASTNode {
 
     @Override
     public Object evaluate(ILocalContext context) throws InterruptedException {
-        for (ASTNode node : statements) {
-            Object result = node.evaluate(context);
-
-            if (result instanceof Breakpoint) {
-                return result;
+        ASTNode node = null;
+        try {
+            for (ASTNode statement : statements) {
+                node = statement;
+                Object result = statement.evaluate(context);
+
+                if (result instanceof Breakpoint) {
+                    return result;
+                }
             }
+            return null;
+        } catch (InternalException | SourceException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw locate(e, node, context);
         }
-        return null;
     }
 
     public Object evaluateFrom(ILocalContext context, ASTNode from) throws InterruptedException {
@@ -40,16 +50,32 @@ public class BodyASTNode implements ASTNode {
             index++;
         }
 
-        for (int i = index+1; i < statements.length; i++) {
-            ASTNode node = statements[i];
+        ASTNode node = null;
+        try {
+            for (int i = index+1; i < statements.length; i++) {
+                node = statements[i];
 
-            Object result = node.evaluate(context);
+                Object result = node.evaluate(context);
 
-            if (result instanceof Breakpoint) {
-                return result;
+                if (result instanceof Breakpoint) {
+                    return result;
+                }
             }
+            return null;
+        } catch (InternalException | SourceException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw locate(e, node, context);
         }
-        return null;
+    }
+
+    /**
+     * Adds the position of the statement which failed to an error, if it is known. Orbit exceptions are left as
+     * they are, since scripts catch them by their class.
+     */
+    private static RuntimeException locate(RuntimeException e, ASTNode statement, ILocalContext context) {
+        String location = context.getRoot().getLocation(statement);
+        return location == null ? e : new SourceException(e, location);
     }
 
     public ASTNode[] statements() {
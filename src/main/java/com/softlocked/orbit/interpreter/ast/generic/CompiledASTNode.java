@@ -0,0 +1,23 @@
+package com.softlocked.orbit.interpreter.ast.generic;
+
+import com.softlocked.orbit.compiler.CompiledFunction;
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.memory.ILocalContext;
+
+/**
+ * A statement which was compiled to JVM bytecode by the {@link com.softlocked.orbit.compiler.BytecodeCompiler}.
+ * The original statement is kept for its size.
+ */
+public record CompiledASTNode(CompiledFunction code, ASTNode source) implements ASTNode {
+    private static final Object[] NO_ARGS = new Object[0];
+
+    @Override
+    public Object evaluate(ILocalContext context) throws InterruptedException {
+        return code.invoke(context, NO_ARGS);
+    }
+
+    @Override
+    public long getSize() {
+        return source.getSize();
+    }
+}
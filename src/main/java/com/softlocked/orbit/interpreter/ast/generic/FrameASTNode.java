@@ -0,0 +1,25 @@
+package com.softlocked.orbit.interpreter.ast.generic;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.memory.FrameLayout;
+import com.softlocked.orbit.memory.ILocalContext;
+import com.softlocked.orbit.memory.LocalContext;
+
+/**
+ * Evaluates a statement inside a new flat frame. The resolver wraps top-level statements which declare block locals
+ * (loop counters, variables inside if/while bodies) with this node, since there is no function frame to hold them.
+ */
+public record FrameASTNode(FrameLayout layout, ASTNode body) implements ASTNode {
+    @Override
+    public Object evaluate(ILocalContext context) throws InterruptedException {
+        LocalContext frame = new LocalContext(context);
+        frame.enterFrame(layout);
+
+        return body.evaluate(frame);
+    }
+
+    @Override
+    public long getSize() {
+        return body.getSize();
+    }
+}
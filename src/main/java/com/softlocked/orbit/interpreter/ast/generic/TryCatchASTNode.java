@@ -16,7 +16,7 @@ public record TryCatchASTNode(ASTNode tryBlock, ASTNode catchBlock, String excep
         try {
             Object result = tryBlock.evaluate(context);
             if (result instanceof Breakpoint breakpoint && breakpoint.getType() != Breakpoint.Type.YIELD) {
-                return breakpoint.getValue();
+                return breakpoint.getValue(context);
             }
 
             return result;
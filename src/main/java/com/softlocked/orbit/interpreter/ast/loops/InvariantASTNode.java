@@ -0,0 +1,32 @@
+package com.softlocked.orbit.interpreter.ast.loops;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.memory.ILocalContext;
+
+/**
+ * An expression inside a loop whose value doesn't change while the loop runs. It is evaluated the first time it is
+ * reached, and its value is kept in a frame slot until the loop is entered again.
+ * @see OptimizedLoopASTNode
+ */
+public record InvariantASTNode(ASTNode expression, int slot) implements ASTNode {
+    // Held by the slot until the expression is evaluated, since the expression can evaluate to null
+    static final Object UNSET = new Object();
+
+    @Override
+    public Object evaluate(ILocalContext context) throws InterruptedException {
+        Variable cell = context.getSlot(slot);
+
+        Object value = cell.getValue();
+        if (value == UNSET) {
+            value = expression.evaluate(context);
+            cell.setValue(value);
+        }
+        return value;
+    }
+
+    @Override
+    public long getSize() {
+        return expression.getSize();
+    }
+}
@@ -0,0 +1,97 @@
+package com.softlocked.orbit.interpreter.ast.loops;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.core.datatypes.functions.IFunction;
+import com.softlocked.orbit.interpreter.ast.variable.FunctionCallASTNode;
+import com.softlocked.orbit.interpreter.function.NativeFunction;
+import com.softlocked.orbit.interpreter.function.OrbitFunction;
+import com.softlocked.orbit.interpreter.function.coroutine.CoroutineFunction;
+import com.softlocked.orbit.memory.ILocalContext;
+import com.softlocked.orbit.utils.Pair;
+
+/**
+ * A loop whose invariant expressions are kept in frame slots (see {@link InvariantASTNode}), next to the loop as it
+ * was written.
+ * <p>
+ * What makes an expression invariant is only known for sure when the loop is entered, so every time it is, the
+ * optimized loop checks that:
+ * <ul>
+ *     <li>the locals the invariants read hold numbers, strings, booleans, chars or null, so that operations on
+ *     them can't run operator overloads</li>
+ *     <li>the functions the invariants call are {@link NativeFunction#isPure() pure}</li>
+ *     <li>the other functions the loop calls can't reach the locals of the frame: pure natives, or named functions,
+ *     which run in frames of their own</li>
+ * </ul>
+ * If any of these doesn't hold, the loop as it was written runs instead.
+ */
+public record OptimizedLoopASTNode(ASTNode loop, ASTNode original, int[] slots, int[] leaves,
+                                   FunctionCallASTNode[] pureCalls, FunctionCallASTNode[] calls) implements ASTNode {
+    @Override
+    public Object evaluate(ILocalContext context) throws InterruptedException {
+        if (!canOptimize(context)) {
+            return original.evaluate(context);
+        }
+
+        for (int slot : slots) {
+            Variable cell = context.getSlot(slot);
+
+            if (cell == null) {
+                context.setSlot(slot, new Variable(Variable.Type.ANY, InvariantASTNode.UNSET));
+            } else {
+                cell.setValue(InvariantASTNode.UNSET);
+            }
+        }
+
+        return loop.evaluate(context);
+    }
+
+    private boolean canOptimize(ILocalContext context) {
+        for (int leaf : leaves) {
+            Variable variable = context.getSlot(leaf);
+            if (variable == null) {
+                return false;
+            }
+
+            Object value = variable.getValue();
+            if (value != null && !(value instanceof Number || value instanceof String || value instanceof Boolean || value instanceof Character)) {
+                return false;
+            }
+        }
+
+        for (FunctionCallASTNode call : pureCalls) {
+            if (!(context.getFunction(call.name(), call.args().size()) instanceof NativeFunction function && function.isPure())) {
+                return false;
+            }
+        }
+
+        for (FunctionCallASTNode call : calls) {
+            IFunction function = context.getFunction(call.name(), call.args().size());
+
+            boolean safe = switch (function) {
+                case NativeFunction nativeFunction -> nativeFunction.isPure();
+                case CoroutineFunction ignored -> false;
+                case OrbitFunction orbitFunction -> orbitFunction.getName() != null && !takesConsumers(orbitFunction);
+                case null, default -> false;
+            };
+            if (!safe) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean takesConsumers(OrbitFunction function) {
+        for (Pair<Integer, Variable.Type> parameter : function.getParameters()) {
+            if (parameter.second == Variable.Type.CONSUMER) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long getSize() {
+        return original.getSize();
+    }
+}
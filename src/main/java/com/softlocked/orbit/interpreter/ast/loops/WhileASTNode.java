@@ -4,6 +4,7 @@ import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.evaluator.Breakpoint;
 import com.softlocked.orbit.core.evaluator.Evaluator;
 import com.softlocked.orbit.interpreter.ast.value.ValueASTNode;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
 import com.softlocked.orbit.memory.ILocalContext;
 import com.softlocked.orbit.memory.LocalContext;
 
@@ -11,22 +12,25 @@ public record WhileASTNode(ASTNode condition, ASTNode body) implements ASTNode {
 
     @Override
     public Object evaluate(ILocalContext context) throws InterruptedException {
+        GlobalContext root = context.getRoot();
         LocalContext newContext = context.getOrCreateChild();
 
         if(condition instanceof ValueASTNode valueASTNode) {
             boolean condition = Evaluator.toBool(valueASTNode.evaluate(newContext));
 
             while (condition) {
+                // Lets the context stop the loop, or give the thread to other coroutines
+                if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
                 Object result = this.body().evaluate(newContext);
 
-                if (result instanceof Breakpoint breakpoint) {
-                    if(breakpoint.getType() == Breakpoint.Type.BREAK) {
+                if (result instanceof Breakpoint) {
+                    if (result == Breakpoint.BREAK) {
                         newContext.onRemove();
                         return null;
                     }
-                    if(breakpoint.getType() == Breakpoint.Type.RETURN || breakpoint.getType() == Breakpoint.Type.YIELD) {
+                    if (result != Breakpoint.CONTINUE) {
                         newContext.onRemove();
-                        return breakpoint;
+                        return result;
                     }
                 }
             }
@@ -36,16 +40,18 @@ public record WhileASTNode(ASTNode condition, ASTNode body) implements ASTNode {
         }
 
         while (Evaluator.toBool(this.condition().evaluate(newContext))) {
+            // Lets the context stop the loop, or give the thread to other coroutines
+            if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
             Object result = this.body().evaluate(newContext);
 
-            if (result instanceof Breakpoint breakpoint) {
-                if(breakpoint.getType() == Breakpoint.Type.BREAK) {
+            if (result instanceof Breakpoint) {
+                if (result == Breakpoint.BREAK) {
                     newContext.onRemove();
                     return null;
                 }
-                if(breakpoint.getType() == Breakpoint.Type.RETURN || breakpoint.getType() == Breakpoint.Type.YIELD) {
+                if (result != Breakpoint.CONTINUE) {
                     newContext.onRemove();
-                    return breakpoint;
+                    return result;
                 }
             }
         }
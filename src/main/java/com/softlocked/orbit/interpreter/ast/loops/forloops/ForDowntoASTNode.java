@@ -3,13 +3,15 @@ package com.softlocked.orbit.interpreter.ast.loops.forloops;
 import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.datatypes.Variable;
 import com.softlocked.orbit.core.evaluator.Breakpoint;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
 import com.softlocked.orbit.memory.ILocalContext;
 import com.softlocked.orbit.memory.LocalContext;
 
 public record ForDowntoASTNode(ASTNode init, ASTNode end, ASTNode body) implements ASTNode {
     @Override
     public Object evaluate(ILocalContext context) throws InterruptedException {
-        if (context.getRoot().isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
+        GlobalContext root = context.getRoot();
+        if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
 
         LocalContext forContext = context.getOrCreateChild();
 
@@ -19,17 +21,19 @@ public record ForDowntoASTNode(ASTNode init, ASTNode end, ASTNode body) implemen
         long end = ((Number) this.end().evaluate(forContext)).longValue();
 
         for (long i = start; i >= end; i--) {
+            // Lets the context stop the loop, or give the thread to other coroutines
+            if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
             variable.setValue(i);
 
             Object result = this.body().evaluate(forContext);
-            if (result instanceof Breakpoint breakpoint) {
-                if(breakpoint.getType() == Breakpoint.Type.BREAK) {
+            if (result instanceof Breakpoint) {
+                if (result == Breakpoint.BREAK) {
                     forContext.onRemove();
                     return null;
                 }
-                if(breakpoint.getType() == Breakpoint.Type.RETURN || breakpoint.getType() == Breakpoint.Type.THROW) {
+                if (result == Breakpoint.RETURN) {
                     forContext.onRemove();
-                    return breakpoint;
+                    return result;
                 }
             }
         }
@@ -4,6 +4,7 @@ import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.datatypes.Variable;
 import com.softlocked.orbit.core.evaluator.Breakpoint;
 import com.softlocked.orbit.interpreter.ast.variable.DecVarASTNode;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
 import com.softlocked.orbit.memory.ILocalContext;
 import com.softlocked.orbit.memory.LocalContext;
 
@@ -15,7 +16,8 @@ import java.util.concurrent.atomic.AtomicReference;
 public record ForInASTNode(ASTNode init, ASTNode iterable, ASTNode body) implements ASTNode {
     @Override
     public Object evaluate(ILocalContext context) throws InterruptedException {
-        if (context.getRoot().isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
+        GlobalContext root = context.getRoot();
+        if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
 
         LocalContext forContext = context.getOrCreateChild();
 
@@ -25,68 +27,76 @@ public record ForInASTNode(ASTNode init, ASTNode iterable, ASTNode body) impleme
         if (iterable instanceof List<?> list) {
             variable.setType(Variable.Type.ANY);
             for (Object item : list) {
+                // Lets the context stop the loop, or give the thread to other coroutines
+                if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
                 variable.setValue(item);
 
                 Object result = this.body().evaluate(forContext);
-                if (result instanceof Breakpoint breakpoint) {
-                    if(breakpoint.getType() == Breakpoint.Type.BREAK) {
+                if (result instanceof Breakpoint) {
+                    if (result == Breakpoint.BREAK) {
                         forContext.onRemove();
                         return null;
                     }
-                    if(breakpoint.getType() == Breakpoint.Type.RETURN || breakpoint.getType() == Breakpoint.Type.YIELD) {
+                    if (result != Breakpoint.CONTINUE) {
                         forContext.onRemove();
-                        return breakpoint;
+                        return result;
                     }
                 }
             }
         } else if (iterable instanceof String s) {
             variable.setType(Variable.Type.STRING);
             for (int i = 0; i < s.length(); i++) {
+                // Lets the context stop the loop, or give the thread to other coroutines
+                if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
                 variable.setValue(s.charAt(i));
 
                 Object result = this.body().evaluate(forContext);
-                if (result instanceof Breakpoint breakpoint) {
-                    if(breakpoint.getType() == Breakpoint.Type.BREAK) {
+                if (result instanceof Breakpoint) {
+                    if (result == Breakpoint.BREAK) {
                         forContext.onRemove();
                         return null;
                     }
-                    if(breakpoint.getType() == Breakpoint.Type.RETURN || breakpoint.getType() == Breakpoint.Type.YIELD) {
+                    if (result != Breakpoint.CONTINUE) {
                         forContext.onRemove();
-                        return breakpoint;
+                        return result;
                     }
                 }
             }
         } else if (iterable instanceof Map<?, ?> m) {
             variable.setType(Variable.Type.ANY);
             for (Object key : m.keySet()) {
+                // Lets the context stop the loop, or give the thread to other coroutines
+                if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
                 variable.setValue(key);
 
                 Object result = this.body().evaluate(forContext);
-                if (result instanceof Breakpoint breakpoint) {
-                    if(breakpoint.getType() == Breakpoint.Type.BREAK) {
+                if (result instanceof Breakpoint) {
+                    if (result == Breakpoint.BREAK) {
                         forContext.onRemove();
                         return null;
                     }
-                    if(breakpoint.getType() == Breakpoint.Type.RETURN || breakpoint.getType() == Breakpoint.Type.YIELD) {
+                    if (result != Breakpoint.CONTINUE) {
                         forContext.onRemove();
-                        return breakpoint;
+                        return result;
                     }
                 }
             }
         } else if (iterable instanceof Object[]) {
             variable.setType(Variable.Type.ANY);
             for (Object item : (Object[]) iterable) {
+                // Lets the context stop the loop, or give the thread to other coroutines
+                if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
                 variable.setValue(item);
 
                 Object result = this.body().evaluate(forContext);
-                if (result instanceof Breakpoint breakpoint) {
-                    if(breakpoint.getType() == Breakpoint.Type.BREAK) {
+                if (result instanceof Breakpoint) {
+                    if (result == Breakpoint.BREAK) {
                         forContext.onRemove();
                         return null;
                     }
-                    if(breakpoint.getType() == Breakpoint.Type.RETURN || breakpoint.getType() == Breakpoint.Type.YIELD) {
+                    if (result != Breakpoint.CONTINUE) {
                         forContext.onRemove();
-                        return breakpoint;
+                        return result;
                     }
                 }
             }
@@ -1,15 +1,20 @@
 package com.softlocked.orbit.interpreter.ast.loops.forloops;
 
 import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.datatypes.DoubleVariable;
+import com.softlocked.orbit.core.datatypes.IntVariable;
+import com.softlocked.orbit.core.datatypes.LongVariable;
 import com.softlocked.orbit.core.datatypes.Variable;
 import com.softlocked.orbit.core.evaluator.Breakpoint;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
 import com.softlocked.orbit.memory.ILocalContext;
 import com.softlocked.orbit.memory.LocalContext;
 
 public record ForToASTNode(ASTNode init, ASTNode end, ASTNode body) implements ASTNode {
 @Override
     public Object evaluate(ILocalContext context) throws InterruptedException {
-        if (context.getRoot().isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
+        GlobalContext root = context.getRoot();
+        if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
 
         LocalContext forContext = context.getOrCreateChild();
 
@@ -18,69 +23,85 @@ public record ForToASTNode(ASTNode init, ASTNode end, ASTNode body) implements A
         long start = ((Number) variable.getValue()).longValue();
         long end = ((Number) this.end().evaluate(forContext)).longValue();
 
+        // Counters are written to numeric variables without boxing
+        IntVariable intCell = variable instanceof IntVariable cell && cell.getType() == Variable.Type.INT ? cell : null;
+        LongVariable longCell = variable instanceof LongVariable cell && cell.getType() == Variable.Type.LONG ? cell : null;
+        DoubleVariable doubleCell = variable instanceof DoubleVariable cell && cell.getType() == Variable.Type.DOUBLE ? cell : null;
+
         switch (variable.getType()) {
             case ANY, INT -> {
                 for (int i = Math.toIntExact(start); i <= end; i++) {
-                    variable.setValue(i);
+                    // Lets the context stop the loop, or give the thread to other coroutines
+                    if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
+                    if (intCell != null) intCell.setInt(i);
+                    else variable.setValue(i);
 
                     Object result = this.body().evaluate(forContext);
-                    if (result instanceof Breakpoint breakpoint) {
-                        if (breakpoint.getType() == Breakpoint.Type.BREAK) {
+                    if (result instanceof Breakpoint) {
+                        if (result == Breakpoint.BREAK) {
                             forContext.onRemove();
                             return null;
                         }
-                        if (breakpoint.getType() == Breakpoint.Type.RETURN || breakpoint.getType() == Breakpoint.Type.YIELD) {
+                        if (result != Breakpoint.CONTINUE) {
                             forContext.onRemove();
-                            return breakpoint;
+                            return result;
                         }
                     }
                 }
             }
             case LONG -> {
                 for (long i = start; i <= end; i++) {
-                    variable.setValue(i);
+                    // Lets the context stop the loop, or give the thread to other coroutines
+                    if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
+                    if (longCell != null) longCell.setLong(i);
+                    else variable.setValue(i);
 
                     Object result = this.body().evaluate(forContext);
-                    if (result instanceof Breakpoint breakpoint) {
-                        if (breakpoint.getType() == Breakpoint.Type.BREAK) {
+                    if (result instanceof Breakpoint) {
+                        if (result == Breakpoint.BREAK) {
                             forContext.onRemove();
                             return null;
                         }
-                        if (breakpoint.getType() == Breakpoint.Type.RETURN || breakpoint.getType() == Breakpoint.Type.YIELD) {
+                        if (result != Breakpoint.CONTINUE) {
                             forContext.onRemove();
-                            return breakpoint;
+                            return result;
                         }
                     }
                 }
             }
             case FLOAT -> {
                 for (float i = start; i <= end; i++) {
+                    // Lets the context stop the loop, or give the thread to other coroutines
+                    if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
                     variable.setValue(i);
                     Object result = this.body().evaluate(forContext);
-                    if (result instanceof Breakpoint breakpoint) {
-                        if (breakpoint.getType() == Breakpoint.Type.BREAK) {
+                    if (result instanceof Breakpoint) {
+                        if (result == Breakpoint.BREAK) {
                             forContext.onRemove();
                             return null;
                         }
-                        if (breakpoint.getType() == Breakpoint.Type.RETURN || breakpoint.getType() == Breakpoint.Type.YIELD) {
+                        if (result != Breakpoint.CONTINUE) {
                             forContext.onRemove();
-                            return breakpoint;
+                            return result;
                         }
                     }
                 }
             }
             case DOUBLE -> {
                 for (double i = start; i <= end; i++) {
-                    variable.setValue(i);
+                    // Lets the context stop the loop, or give the thread to other coroutines
+                    if (root.isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
+                    if (doubleCell != null) doubleCell.setDouble(i);
+                    else variable.setValue(i);
                     Object result = this.body().evaluate(forContext);
-                    if (result instanceof Breakpoint breakpoint) {
-                        if (breakpoint.getType() == Breakpoint.Type.BREAK) {
+                    if (result instanceof Breakpoint) {
+                        if (result == Breakpoint.BREAK) {
                             forContext.onRemove();
                             return null;
                         }
-                        if (breakpoint.getType() == Breakpoint.Type.RETURN || breakpoint.getType() == Breakpoint.Type.YIELD) {
+                        if (result != Breakpoint.CONTINUE) {
                             forContext.onRemove();
-                            return breakpoint;
+                            return result;
                         }
                     }
                 }
@@ -2,16 +2,97 @@ package com.softlocked.orbit.interpreter.ast.operation;
 
 import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.ast.operation.OperationType;
+import com.softlocked.orbit.core.datatypes.DoubleVariable;
+import com.softlocked.orbit.core.datatypes.IntVariable;
+import com.softlocked.orbit.core.datatypes.LongVariable;
+import com.softlocked.orbit.core.datatypes.Variable;
 import com.softlocked.orbit.core.evaluator.Evaluator;
+import com.softlocked.orbit.interpreter.ast.value.LocalVariableASTNode;
+import com.softlocked.orbit.interpreter.ast.value.VariableASTNode;
 import com.softlocked.orbit.memory.ILocalContext;
+import com.softlocked.orbit.utils.Utils;
 
-public record OperationASTNode(ASTNode left, ASTNode right, OperationType type) implements ASTNode {
+/**
+ * An operation between one or two values.
+ * <p>
+ * Arithmetic and comparisons specialize themselves on the types of the operands they see first. Once an operation
+ * has seen ints, longs or doubles, it checks that its operands still have those types and computes the result
+ * directly instead of going through the {@link Evaluator}. Nested specialized operations pass unboxed values to each
+ * other, so only the outermost result is boxed. When an operand has any other type, the operation finishes through
+ * the evaluator and stays generic from then on.
+ * <p>
+ * Numeric variables keep their values unboxed (see {@link Variable#of}), so they are read and written by
+ * specialized operations without allocating.
+ */
+public final class OperationASTNode implements ASTNode {
+    private static final int UNINITIALIZED = -1;
+    private static final int GENERIC = -2;
+
+    // Operand kinds. A specialized state holds the kind of the left operand in its upper bits and the right one below
+    private static final int INT = 0;
+    private static final int LONG = 1;
+    private static final int DOUBLE = 2;
+
+    private final ASTNode left;
+    private final ASTNode right;
+    private final OperationType type;
+
+    private final boolean isComparison;
+    private int state;
+
+    public OperationASTNode(ASTNode left, ASTNode right, OperationType type) {
+        this.left = left;
+        this.right = right;
+        this.type = type;
+
+        this.isComparison = switch (type) {
+            case EQUALS, NOT_EQUALS, GREATER_THAN, LESS_THAN, GREATER_THAN_OR_EQUALS, LESS_THAN_OR_EQUALS -> true;
+            default -> false;
+        };
+        this.state = switch (type) {
+            case ADD, SUBTRACT, MULTIPLY, DIVIDE, MODULO, POWER -> UNINITIALIZED;
+            default -> isComparison ? UNINITIALIZED : GENERIC;
+        };
+    }
+
+    public ASTNode left() {
+        return left;
+    }
+
+    public ASTNode right() {
+        return right;
+    }
+
+    public OperationType type() {
+        return type;
+    }
 
     @Override
     public Object evaluate(ILocalContext context) throws InterruptedException {
-        Object left = this.left().evaluate(context);
+        int state = this.state;
 
-        switch (this.type()) {
+        if (state >= 0) {
+            try {
+                if (isComparison) {
+                    return executeComparison(context, state);
+                }
+
+                int kind = resultKind(state);
+                if (kind == INT) {
+                    return executeInt(context);
+                }
+                if (kind == LONG) {
+                    return executeLong(context);
+                }
+                return executeDouble(context);
+            } catch (UnexpectedResultException e) {
+                return e.getValue();
+            }
+        }
+
+        Object left = this.left.evaluate(context);
+
+        switch (this.type) {
             case NOT -> {
                 return Evaluator.not(left);
             }
@@ -23,10 +104,360 @@ public record OperationASTNode(ASTNode left, ASTNode right, OperationType type)
             }
         }
 
-        Object right = this.right().evaluate(context);
+        Object right = this.right.evaluate(context);
+
+        if (state == UNINITIALIZED) {
+            int leftKind = kindOf(left);
+            int rightKind = kindOf(right);
+
+            this.state = leftKind != -1 && rightKind != -1 ? leftKind << 2 | rightKind : GENERIC;
+        }
+
+        return generic(left, right);
+    }
+
+    // Specialized paths
+
+    private boolean produces(int kind) {
+        int state = this.state;
+        return state >= 0 && !isComparison && resultKind(state) == kind;
+    }
+
+    private int executeInt(ILocalContext context) throws InterruptedException, UnexpectedResultException {
+        if (!produces(INT)) {
+            throw new UnexpectedResultException(evaluate(context));
+        }
+
+        int a;
+        try {
+            a = intOperand(left, context);
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(deoptimize(e.getValue(), right.evaluate(context)));
+        }
+
+        int b;
+        try {
+            b = intOperand(right, context);
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(deoptimize(a, e.getValue()));
+        }
+
+        return switch (type) {
+            case ADD -> a + b;
+            case SUBTRACT -> a - b;
+            case MULTIPLY -> a * b;
+            case DIVIDE -> a / b;
+            case MODULO -> a % b;
+            default -> (int) Math.pow(a, b);
+        };
+    }
+
+    private long executeLong(ILocalContext context) throws InterruptedException, UnexpectedResultException {
+        int state = this.state;
+        if (!produces(LONG)) {
+            throw new UnexpectedResultException(evaluate(context));
+        }
+
+        int leftKind = state >> 2;
+        int rightKind = state & 3;
 
+        long a;
         try {
-            switch (this.type()) {
+            a = longOperand(left, leftKind, context);
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(deoptimize(e.getValue(), right.evaluate(context)));
+        }
+
+        long b;
+        try {
+            b = longOperand(right, rightKind, context);
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(deoptimize(box(a, 0, leftKind), e.getValue()));
+        }
+
+        return switch (type) {
+            case ADD -> a + b;
+            case SUBTRACT -> a - b;
+            case MULTIPLY -> a * b;
+            case DIVIDE -> a / b;
+            case MODULO -> a % b;
+            default -> (long) Math.pow(a, b);
+        };
+    }
+
+    private double executeDouble(ILocalContext context) throws InterruptedException, UnexpectedResultException {
+        int state = this.state;
+        if (!produces(DOUBLE)) {
+            throw new UnexpectedResultException(evaluate(context));
+        }
+
+        int leftKind = state >> 2;
+        int rightKind = state & 3;
+
+        // Integral operands are kept as longs as well, so that they can be boxed back exactly
+        long integral = 0;
+        double a;
+        try {
+            if (leftKind == DOUBLE) {
+                a = doubleOperand(left, context);
+            } else {
+                integral = longOperand(left, leftKind, context);
+                a = integral;
+            }
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(deoptimize(e.getValue(), right.evaluate(context)));
+        }
+
+        double b;
+        try {
+            b = rightKind == DOUBLE ? doubleOperand(right, context) : longOperand(right, rightKind, context);
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(deoptimize(box(integral, a, leftKind), e.getValue()));
+        }
+
+        return switch (type) {
+            case ADD -> a + b;
+            case SUBTRACT -> a - b;
+            case MULTIPLY -> a * b;
+            case DIVIDE -> a / b;
+            case MODULO -> a % b;
+            default -> Math.pow(a, b);
+        };
+    }
+
+    private Object executeComparison(ILocalContext context, int state) throws InterruptedException, UnexpectedResultException {
+        int leftKind = state >> 2;
+        int rightKind = state & 3;
+
+        if (leftKind != DOUBLE && rightKind != DOUBLE) {
+            long a;
+            try {
+                a = longOperand(left, leftKind, context);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(deoptimize(e.getValue(), right.evaluate(context)));
+            }
+
+            long b;
+            try {
+                b = longOperand(right, rightKind, context);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(deoptimize(box(a, 0, leftKind), e.getValue()));
+            }
+
+            return switch (type) {
+                case EQUALS -> a == b;
+                case NOT_EQUALS -> a != b;
+                case GREATER_THAN -> a > b;
+                case LESS_THAN -> a < b;
+                case GREATER_THAN_OR_EQUALS -> a >= b;
+                default -> a <= b;
+            };
+        }
+
+        long integral = 0;
+        double a;
+        try {
+            if (leftKind == DOUBLE) {
+                a = doubleOperand(left, context);
+            } else {
+                integral = longOperand(left, leftKind, context);
+                a = integral;
+            }
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(deoptimize(e.getValue(), right.evaluate(context)));
+        }
+
+        double b;
+        try {
+            b = rightKind == DOUBLE ? doubleOperand(right, context) : longOperand(right, rightKind, context);
+        } catch (UnexpectedResultException e) {
+            throw new UnexpectedResultException(deoptimize(box(integral, a, leftKind), e.getValue()));
+        }
+
+        return switch (type) {
+            case EQUALS -> a == b;
+            case NOT_EQUALS -> a != b;
+            case GREATER_THAN -> a > b;
+            case LESS_THAN -> a < b;
+            case GREATER_THAN_OR_EQUALS -> a >= b;
+            default -> a <= b;
+        };
+    }
+
+    // Operands are taken unboxed from nested operations which produce the right kind
+
+    private static int intOperand(ASTNode node, ILocalContext context) throws InterruptedException, UnexpectedResultException {
+        Object value;
+        if (node instanceof OperationASTNode operation && operation.produces(INT)) {
+            try {
+                return operation.executeInt(context);
+            } catch (UnexpectedResultException e) {
+                value = e.getValue();
+            }
+        } else if (node instanceof LocalVariableASTNode || node instanceof VariableASTNode) {
+            Variable variable = variable(node, context);
+
+            if (variable instanceof IntVariable cell && cell.isUnboxed()) {
+                return cell.getInt();
+            }
+            value = variable == null ? null : variable.getValue();
+        } else {
+            value = node.evaluate(context);
+        }
+
+        if (value instanceof Integer i) {
+            return i;
+        }
+        throw new UnexpectedResultException(value);
+    }
+
+    private static long longOperand(ASTNode node, int kind, ILocalContext context) throws InterruptedException, UnexpectedResultException {
+        if (kind == INT) {
+            return intOperand(node, context);
+        }
+
+        Object value;
+        if (node instanceof OperationASTNode operation && operation.produces(LONG)) {
+            try {
+                return operation.executeLong(context);
+            } catch (UnexpectedResultException e) {
+                value = e.getValue();
+            }
+        } else if (node instanceof LocalVariableASTNode || node instanceof VariableASTNode) {
+            Variable variable = variable(node, context);
+
+            if (variable instanceof LongVariable cell && cell.isUnboxed()) {
+                return cell.getLong();
+            }
+            value = variable == null ? null : variable.getValue();
+        } else {
+            value = node.evaluate(context);
+        }
+
+        if (value instanceof Long l) {
+            return l;
+        }
+        throw new UnexpectedResultException(value);
+    }
+
+    private static double doubleOperand(ASTNode node, ILocalContext context) throws InterruptedException, UnexpectedResultException {
+        Object value;
+        if (node instanceof OperationASTNode operation && operation.produces(DOUBLE)) {
+            try {
+                return operation.executeDouble(context);
+            } catch (UnexpectedResultException e) {
+                value = e.getValue();
+            }
+        } else if (node instanceof LocalVariableASTNode || node instanceof VariableASTNode) {
+            Variable variable = variable(node, context);
+
+            if (variable instanceof DoubleVariable cell && cell.isUnboxed()) {
+                return cell.getDouble();
+            }
+            value = variable == null ? null : variable.getValue();
+        } else {
+            value = node.evaluate(context);
+        }
+
+        if (value instanceof Double d) {
+            return d;
+        }
+        throw new UnexpectedResultException(value);
+    }
+
+    private static Variable variable(ASTNode node, ILocalContext context) {
+        if (node instanceof LocalVariableASTNode local) {
+            return context.getSlot(local.slot());
+        }
+        return ((VariableASTNode) node).lookup(context);
+    }
+
+    private static int kindOf(Object value) {
+        return switch (value) {
+            case Integer ignored -> INT;
+            case Long ignored -> LONG;
+            case Double ignored -> DOUBLE;
+            case null, default -> -1;
+        };
+    }
+
+    private static int resultKind(int state) {
+        return Math.max(state >> 2, state & 3);
+    }
+
+    private static Object box(long integral, double value, int kind) {
+        return switch (kind) {
+            case INT -> (int) integral;
+            case LONG -> integral;
+            default -> value;
+        };
+    }
+
+    /**
+     * Finishes the operation through the evaluator, after an operand didn't have the expected type
+     */
+    private Object deoptimize(Object left, Object right) throws InterruptedException {
+        this.state = GENERIC;
+        return generic(left, right);
+    }
+
+    // Assignment
+
+    /**
+     * Evaluates the operation and stores the result in a variable, casting it to the type of the variable.
+     * When the operation is specialized and the variable holds a number unboxed, the result is never boxed.
+     */
+    public void assignTo(Variable variable, ILocalContext context) throws InterruptedException {
+        Object value;
+
+        if (this.state >= 0 && !isComparison) {
+            try {
+                int kind = resultKind(this.state);
+
+                if (variable instanceof IntVariable cell && cell.getType() == Variable.Type.INT) {
+                    cell.setInt(switch (kind) {
+                        case INT -> executeInt(context);
+                        case LONG -> (int) executeLong(context);
+                        default -> (int) executeDouble(context);
+                    });
+                    return;
+                }
+                if (variable instanceof LongVariable cell && cell.getType() == Variable.Type.LONG) {
+                    cell.setLong(switch (kind) {
+                        case INT -> executeInt(context);
+                        case LONG -> executeLong(context);
+                        default -> (long) executeDouble(context);
+                    });
+                    return;
+                }
+                if (variable instanceof DoubleVariable cell && cell.getType() == Variable.Type.DOUBLE) {
+                    cell.setDouble(switch (kind) {
+                        case INT -> executeInt(context);
+                        case LONG -> executeLong(context);
+                        default -> executeDouble(context);
+                    });
+                    return;
+                }
+                value = evaluate(context);
+            } catch (UnexpectedResultException e) {
+                value = e.getValue();
+            }
+        } else {
+            value = evaluate(context);
+        }
+
+        if (variable.getType().getJavaClass().equals(Variable.class)) {
+            variable.setValue(value);
+            return;
+        }
+        variable.setValue(Utils.cast(value, variable.getType().getJavaClass()));
+    }
+
+    // Generic path
+
+    private Object generic(Object left, Object right) throws InterruptedException {
+        try {
+            switch (this.type) {
                 // Arithmetic operations
                 case ADD -> {
                     return Evaluator.add(left, right);
@@ -112,6 +543,11 @@ public record OperationASTNode(ASTNode left, ASTNode right, OperationType type)
         };
     }
 
+    @Override
+    public String toString() {
+        return "OperationASTNode[left=" + left + ", right=" + right + ", type=" + type + "]";
+    }
+
     @Override
     public long getSize() {
         long size = 0;
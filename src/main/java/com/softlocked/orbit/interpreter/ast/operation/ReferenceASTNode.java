@@ -2,20 +2,59 @@ package com.softlocked.orbit.interpreter.ast.operation;
 
 import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.core.datatypes.classes.OrbitClass;
 import com.softlocked.orbit.core.datatypes.classes.OrbitObject;
 import com.softlocked.orbit.core.datatypes.functions.IFunction;
-import com.softlocked.orbit.interpreter.ast.value.ValueASTNode;
 import com.softlocked.orbit.interpreter.ast.value.VariableASTNode;
 import com.softlocked.orbit.interpreter.ast.variable.FunctionCallASTNode;
 import com.softlocked.orbit.interpreter.function.Consumer;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
 import com.softlocked.orbit.memory.ILocalContext;
+import com.softlocked.orbit.utils.Pair;
 import com.softlocked.orbit.utils.Utils;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Map;
 
-public record ReferenceASTNode(ASTNode param, ASTNode function) implements ASTNode {
+/**
+ * Accesses a member of a value, e.g. <code>object:method()</code> or <code>object:field</code>.
+ * <p>
+ * Method calls on objects remember which method they called for each class they have seen, and field reads
+ * remember the slot of the field. Method calls on other values, which run the function <code>type.method</code>,
+ * remember the type names they have seen, and link the function in each context under that entry. Once a node has
+ * seen more than {@link #CACHE_SIZE} classes or types it stops remembering, and looks members up every time instead.
+ */
+public final class ReferenceASTNode implements ASTNode {
+    private static final int CACHE_SIZE = 4;
+
+    // Holds either a method or the slot of a field of a class, depending on what the node accesses, or the name of
+    // a type whose function is linked by the context under the entry
+    private record CacheEntry(Object key, IFunction method, int slot) {
+    }
+
+    private static final CacheEntry[] EMPTY_CACHE = new CacheEntry[0];
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final ASTNode param;
+    private final ASTNode function;
+
+    // Replaced instead of modified, so that threads evaluating the same node never see an incomplete entry.
+    // Null once the call site became megamorphic
+    private volatile CacheEntry[] cache = EMPTY_CACHE;
+
+    public ReferenceASTNode(ASTNode param, ASTNode function) {
+        this.param = param;
+        this.function = function;
+    }
+
+    public ASTNode param() {
+        return param;
+    }
+
+    public ASTNode function() {
+        return function;
+    }
+
     @Override
     public Object evaluate(ILocalContext context) throws InterruptedException {
         if (context.getRoot().isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
@@ -38,36 +77,39 @@ public record ReferenceASTNode(ASTNode param, ASTNode function) implements ASTNo
         // If the second is a function, composite the type string and the function name with a dot
         if(function instanceof FunctionCallASTNode functionCall) {
             if(left instanceof OrbitObject orbitObject) {
-                IFunction fun = orbitObject.hasFunction(functionCall.name(), functionCall.args().size());
+                int count = functionCall.args().size();
+                IFunction fun = findMethod(orbitObject.getClazz(), functionCall.name(), count, superCall);
 
-                List<Object> args = new ArrayList<>();
-                for (int i = 0; i < functionCall.args().size(); i++) {
+                Pair<Integer, Variable.Type>[] parameters = fun.getParameters();
+
+                Object[] args = count == 0 ? NO_ARGS : new Object[count];
+                for (int i = 0; i < count; i++) {
                     ASTNode arg = functionCall.args().get(i);
-                    Variable.Type type1 = fun.getParameters()[i].second;
+
+                    if (parameters == null) {
+                        args[i] = arg.evaluate(context);
+                        continue;
+                    }
+                    Variable.Type type1 = parameters[i].second;
 
                     if(type1 == Variable.Type.CONSUMER) {
-                        args.add(new Consumer(arg));
+                        args[i] = new Consumer(arg);
                     }
                     else {
-                        args.add(Utils.cast(arg.evaluate(context), type1.getJavaClass()));
+                        args[i] = Utils.cast(arg.evaluate(context), type1.getJavaClass());
                     }
                 }
-                return orbitObject.callFunction(functionCall.name(), args, superCall);
+                return orbitObject.invoke(fun, args);
             }
 
-            String name = Variable.Type.getTypeName(left) + "." + functionCall.name();
-
-            List<ASTNode> args = new ArrayList<>();
-            args.add(new ValueASTNode(left));
-            args.addAll(functionCall.args());
+            // Calls the function of the type, with the left as the first argument
+            IFunction fun = findTypeFunction(context, Variable.Type.getTypeName(left), functionCall);
 
-            // Now create a new function call, with this name, and where the first argument is the left
-            FunctionCallASTNode newFunctionCall = new FunctionCallASTNode(name, args);
-
-            return newFunctionCall.evaluate(context);
+            return FunctionCallASTNode.call(context, fun, left, functionCall.args());
         } else if(function instanceof VariableASTNode variableASTNode) {
             if(left instanceof OrbitObject orbitObject) {
-                return orbitObject.getField(variableASTNode.name()).getValue();
+                int slot = findField(orbitObject.getClazz(), variableASTNode.name());
+                return orbitObject.getField(slot).getValue();
             }
 
             else if(left instanceof Map<?,?> map) {
@@ -80,8 +122,118 @@ public record ReferenceASTNode(ASTNode param, ASTNode function) implements ASTNo
         throw new RuntimeException("Invalid operation");
     }
 
+    private IFunction findMethod(OrbitClass clazz, String name, int count, boolean superCall) {
+        CacheEntry[] cache = this.cache;
+
+        if (cache != null) {
+            for (CacheEntry entry : cache) {
+                if (entry.key() == clazz) {
+                    return entry.method();
+                }
+            }
+        }
+
+        IFunction method = superCall ? clazz.getSuperMethod(name, count) : clazz.getMethod(name, count);
+
+        if (method == null) {
+            throw new RuntimeException("No function " + clazz.name() + ":" + name + " with " + count + " arguments found");
+        }
+
+        remember(new CacheEntry(clazz, method, -1));
+
+        return method;
+    }
+
+    private int findField(OrbitClass clazz, String name) {
+        CacheEntry[] cache = this.cache;
+
+        if (cache != null) {
+            for (CacheEntry entry : cache) {
+                if (entry.key() == clazz) {
+                    return entry.slot();
+                }
+            }
+        }
+
+        int slot = clazz.getFieldSlot(name);
+
+        if (slot == -1) {
+            throw new RuntimeException("No field " + clazz.name() + ":" + name + " found");
+        }
+
+        remember(new CacheEntry(clazz, null, slot));
+
+        return slot;
+    }
+
+    private IFunction findTypeFunction(ILocalContext context, String typeName, FunctionCallASTNode call) {
+        CacheEntry[] cache = this.cache;
+        CacheEntry site = null;
+
+        if (cache != null) {
+            for (CacheEntry entry : cache) {
+                if (typeName.equals(entry.key())) {
+                    site = entry;
+                    break;
+                }
+            }
+        }
+
+        GlobalContext root = context.getRoot();
+
+        // Functions are linked per context, since every context has functions of its own
+        if (site != null) {
+            IFunction function = root.getCallTarget(site);
+            if (function != null) {
+                return function;
+            }
+        }
+
+        int count = call.args().size() + 1;
+        IFunction function = context.getFunction(typeName + "." + call.name(), count);
+
+        if (function == null) {
+            throw new RuntimeException("Function " + typeName + "." + call.name() + " with " + count + " arguments not found");
+        }
+
+        // Only entries held by the node are linked, so a megamorphic node doesn't fill the context with links
+        if (site == null && cache != null) {
+            CacheEntry entry = new CacheEntry(typeName, null, -1);
+            remember(entry);
+
+            // A full cache is dropped rather than grown, see remember
+            site = cache.length < CACHE_SIZE ? entry : null;
+        }
+        if (site != null) {
+            root.setCallTarget(site, function);
+        }
+
+        return function;
+    }
+
+    private void remember(CacheEntry entry) {
+        CacheEntry[] cache = this.cache;
+
+        if (cache == null) {
+            return;
+        }
+
+        if (cache.length == CACHE_SIZE) {
+            this.cache = null;
+        } else {
+            CacheEntry[] grown = Arrays.copyOf(cache, cache.length + 1);
+            grown[cache.length] = entry;
+            this.cache = grown;
+        }
+    }
+
     @Override
     public long getSize() {
         return param.getSize() + function.getSize();
     }
+
+    @Override
+    public String toString() {
+        return "ReferenceASTNode[param=" + param + ", function=" + function + "]";
+    }
 }
@@ -0,0 +1,18 @@
+package com.softlocked.orbit.interpreter.ast.operation;
+
+/**
+ * Thrown by a specialized operation when a value doesn't have the type it was specialized for.
+ * Carries the value, so that the caller can finish the operation without evaluating anything twice.
+ */
+final class UnexpectedResultException extends Exception {
+    private final Object value;
+
+    UnexpectedResultException(Object value) {
+        super(null, null, false, false);
+        this.value = value;
+    }
+
+    Object getValue() {
+        return value;
+    }
+}
@@ -2,7 +2,6 @@ package com.softlocked.orbit.interpreter.ast.statement.controlflow;
 
 import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.datatypes.classes.OrbitObject;
-import com.softlocked.orbit.core.datatypes.functions.IFunction;
 import com.softlocked.orbit.core.evaluator.Breakpoint;
 import com.softlocked.orbit.core.exception.InternalException;
 import com.softlocked.orbit.interpreter.ast.operation.OperationASTNode;
@@ -14,14 +13,19 @@ public class BreakASTNode implements ASTNode {
     private Breakpoint.Type type;
     private ASTNode value;
 
-    // Optional cached breakpoint
-    private Breakpoint cachedBreakpoint;
-
     public BreakASTNode(Breakpoint.Type type, ASTNode value) {
         this.type = type;
         this.value = value;
     }
 
+    public Breakpoint.Type getType() {
+        return type;
+    }
+
+    public ASTNode getValue() {
+        return value;
+    }
+
     @Override
     public Object evaluate(ILocalContext context) throws InterruptedException {
         // Handle THROW type separately
@@ -36,27 +40,21 @@ public class BreakASTNode implements ASTNode {
             throw new InternalException(exception);
         }
 
-        // partial TCO
-        if (type == Breakpoint.Type.RETURN) {
-            if(value instanceof FunctionCallASTNode funcCall) {
-                IFunction func = funcCall.getCachedFunction(context);
-
-                context.getRoot().freeFunctionContext(func);
+        switch (type) {
+            case BREAK -> {
+                return Breakpoint.BREAK;
+            }
+            case CONTINUE -> {
+                return Breakpoint.CONTINUE;
+            }
+            case RETURN -> {
+                return Breakpoint.returning(context, value != null ? value.evaluate(context) : null);
             }
         }
 
-        // Evaluate value if not null
+        // Yields keep where they stopped, so that the coroutine can resume from there
         Object evaluatedValue = value != null ? value.evaluate(context) : null;
-
-        // Cache the breakpoint
-        if (cachedBreakpoint == null) {
-            cachedBreakpoint = new Breakpoint(type, evaluatedValue, this, context);
-        } else {
-            cachedBreakpoint.setType(type);
-            cachedBreakpoint.setValue(evaluatedValue);
-        }
-
-        return cachedBreakpoint;
+        return new Breakpoint(type, evaluatedValue, this, context);
     }
 
     public static FunctionCallASTNode findTailCall(ASTNode node) {
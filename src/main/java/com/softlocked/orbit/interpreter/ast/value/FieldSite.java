@@ -0,0 +1,88 @@
+package com.softlocked.orbit.interpreter.ast.value;
+
+import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.core.datatypes.classes.OrbitClass;
+import com.softlocked.orbit.core.datatypes.classes.OrbitObject;
+import com.softlocked.orbit.memory.ILocalContext;
+import com.softlocked.orbit.memory.LocalContext;
+
+import java.util.Arrays;
+
+/**
+ * A name read or assigned in the body of a method or constructor, which isn't one of its locals. The resolver gives
+ * such names a site, since they most likely are fields of the object the method runs for.
+ * <p>
+ * The site remembers the slot of the field for each class it has seen, the same way
+ * {@link com.softlocked.orbit.interpreter.ast.operation.ReferenceASTNode} does for <code>object:field</code>, so
+ * reading a field takes no search through the layout of the class. Once a site has seen more than
+ * {@link #CACHE_SIZE} classes it stops remembering, and looks the field up by name instead.
+ */
+public final class FieldSite {
+    private static final int CACHE_SIZE = 4;
+
+    // A slot of -1 means the class has no such field
+    private record CacheEntry(OrbitClass clazz, int slot) {
+    }
+
+    private static final CacheEntry[] EMPTY_CACHE = new CacheEntry[0];
+
+    private final String name;
+
+    // Replaced instead of modified, so that threads reading the same site never see an incomplete entry.
+    // Null once the site became megamorphic
+    private volatile CacheEntry[] cache = EMPTY_CACHE;
+
+    public FieldSite(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Finds the variable a name stands for, in the same order as {@link LocalContext#getOuterVariable(int)}: the
+     * variables declared by name in the frame first, then the fields of the object, then the globals
+     */
+    public Variable lookup(ILocalContext context, int hash) {
+        Variable variable = context.getVariables().get(hash);
+        if (variable != null) {
+            return variable;
+        }
+
+        if (context instanceof LocalContext local && local.getReceiver() != null) {
+            OrbitObject receiver = local.getReceiver();
+            int slot = slot(receiver.getClazz());
+
+            if (slot != -1) {
+                return receiver.getField(slot);
+            }
+        }
+
+        ILocalContext parent = context.getParent();
+        return parent == null ? null : parent.getVariable(hash);
+    }
+
+    private int slot(OrbitClass clazz) {
+        CacheEntry[] cache = this.cache;
+
+        if (cache != null) {
+            for (CacheEntry entry : cache) {
+                if (entry.clazz() == clazz) {
+                    return entry.slot();
+                }
+            }
+        }
+
+        // Found by name, so that fields whose names have the same hash are told apart
+        int slot = clazz.getFieldSlot(name);
+
+        if (cache != null) {
+            if (cache.length == CACHE_SIZE) {
+                this.cache = null;
+            } else {
+                CacheEntry[] grown = Arrays.copyOf(cache, cache.length + 1);
+                grown[cache.length] = new CacheEntry(clazz, slot);
+                this.cache = grown;
+            }
+        }
+
+        return slot;
+    }
+}
@@ -0,0 +1,25 @@
+package com.softlocked.orbit.interpreter.ast.value;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.memory.ILocalContext;
+
+/**
+ * Reads a local variable from a slot of the current frame. Created by the resolver in place of a VariableASTNode.
+ */
+public record LocalVariableASTNode(String name, int slot) implements ASTNode {
+    @Override
+    public Object evaluate(ILocalContext context) throws InterruptedException {
+        Variable variable = context.getSlot(slot);
+
+        if (variable == null) {
+            return null;
+        }
+        return variable.getValue();
+    }
+
+    @Override
+    public long getSize() {
+        return Variable.getSize(name);
+    }
+}
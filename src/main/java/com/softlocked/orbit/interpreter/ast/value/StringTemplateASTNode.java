@@ -0,0 +1,55 @@
+package com.softlocked.orbit.interpreter.ast.value;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.memory.ILocalContext;
+import com.softlocked.orbit.utils.Utils;
+
+/**
+ * A string literal with <code>${...}</code> expressions in it. The literal is split into its text segments and its
+ * expressions when it is parsed, so evaluating it only has to concatenate.
+ * <p>
+ * There is one more segment than there are expressions: the text before the first expression, the text between
+ * every two expressions, and the text after the last one.
+ */
+public record StringTemplateASTNode(String[] segments, ASTNode[] expressions) implements ASTNode {
+    @Override
+    public Object evaluate(ILocalContext context) throws InterruptedException {
+        StringBuilder builder = new StringBuilder(segments[0]);
+
+        for (int i = 0; i < expressions.length; i++) {
+            builder.append(Utils.cast(expressions[i].evaluate(context), String.class));
+            builder.append(segments[i + 1]);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Concatenates the segments of a template with the values of its expressions. Used by compiled code.
+     */
+    public static String format(String[] segments, Object[] values) throws InterruptedException {
+        StringBuilder builder = new StringBuilder(segments[0]);
+
+        for (int i = 0; i < values.length; i++) {
+            builder.append(Utils.cast(values[i], String.class));
+            builder.append(segments[i + 1]);
+        }
+
+        return builder.toString();
+    }
+
+    @Override
+    public long getSize() {
+        long size = 0;
+
+        for (String segment : segments) {
+            size += Variable.getSize(segment);
+        }
+        for (ASTNode expression : expressions) {
+            size += expression.getSize();
+        }
+
+        return size;
+    }
+}
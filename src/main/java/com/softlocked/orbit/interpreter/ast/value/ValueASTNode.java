@@ -3,19 +3,15 @@ package com.softlocked.orbit.interpreter.ast.value;
 import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.datatypes.Variable;
 import com.softlocked.orbit.memory.ILocalContext;
-import com.softlocked.orbit.utils.Utils;
 
+/**
+ * A constant value. String literals are unescaped when they are parsed, and the ones with expressions in them
+ * become {@link StringTemplateASTNode}s instead.
+ */
 public record ValueASTNode(Object value) implements ASTNode {
     @Override
-    public Object evaluate(ILocalContext context) throws InterruptedException {
-        try {
-            if (this.value() instanceof String) {
-                return Utils.formatString((String) this.value(), context);
-            }
-            return this.value();
-        } catch (Exception e) {
-            throw new RuntimeException("Error evaluating value: " + e.getMessage());
-        }
+    public Object evaluate(ILocalContext context) {
+        return this.value();
     }
 
     @Override
@@ -4,10 +4,31 @@ import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.datatypes.Variable;
 import com.softlocked.orbit.memory.ILocalContext;
 
-public record VariableASTNode(String name, int hash) implements ASTNode {
+/**
+ * Reads a variable by name. When <code>outer</code> is set, the resolver found no local with that name where the
+ * variable is read, so the slots of the frame are left out of the lookup. In methods, such names also get a
+ * <code>field</code> site, which finds the fields of the object by slot.
+ * @see ILocalContext#getOuterVariable(int)
+ */
+public record VariableASTNode(String name, int hash, boolean outer, FieldSite field) implements ASTNode {
+    public VariableASTNode(String name, int hash) {
+        this(name, hash, false, null);
+    }
+
+    public VariableASTNode(String name, int hash, boolean outer) {
+        this(name, hash, outer, null);
+    }
+
+    public Variable lookup(ILocalContext context) {
+        if (field != null) {
+            return field.lookup(context, hash);
+        }
+        return outer ? context.getOuterVariable(hash) : context.getVariable(hash);
+    }
+
     @Override
     public Object evaluate(ILocalContext context) throws InterruptedException {
-        Variable variable = context.getVariable(hash);
+        Variable variable = lookup(context);
 
         if (variable == null) {
             return null;
@@ -2,15 +2,36 @@ package com.softlocked.orbit.interpreter.ast.variable;
 
 import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.interpreter.ast.value.FieldSite;
 import com.softlocked.orbit.memory.ILocalContext;
 import com.softlocked.orbit.utils.Utils;
 
-public record AssignVarASTNode(String variableName, int hash, ASTNode value) implements ASTNode {
+/**
+ * Assigns a variable by name. When <code>outer</code> is set, the slots of the frame are left out of the lookup, and
+ * a <code>field</code> site finds the fields of the object in methods, see
+ * {@link com.softlocked.orbit.interpreter.ast.value.VariableASTNode}.
+ */
+public record AssignVarASTNode(String variableName, int hash, ASTNode value, boolean outer, FieldSite field) implements ASTNode {
+    public AssignVarASTNode(String variableName, int hash, ASTNode value) {
+        this(variableName, hash, value, false, null);
+    }
+
+    public AssignVarASTNode(String variableName, int hash, ASTNode value, boolean outer) {
+        this(variableName, hash, value, outer, null);
+    }
+
+    public Variable lookup(ILocalContext context) {
+        if (field != null) {
+            return field.lookup(context, hash);
+        }
+        return outer ? context.getOuterVariable(hash) : context.getVariable(hash);
+    }
+
     @Override
     public Object evaluate(ILocalContext context) throws InterruptedException {
         Object value = this.value().evaluate(context);
 
-        Variable variable = context.getVariable(hash);
+        Variable variable = lookup(context);
 
         if (variable == null) {
             throw new RuntimeException("Variable " + this.variableName() + " not found");
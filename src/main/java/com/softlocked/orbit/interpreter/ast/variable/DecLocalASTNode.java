@@ -0,0 +1,38 @@
+package com.softlocked.orbit.interpreter.ast.variable;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.interpreter.ast.operation.OperationASTNode;
+import com.softlocked.orbit.memory.ILocalContext;
+import com.softlocked.orbit.utils.Utils;
+
+public record DecLocalASTNode(String variableName, int slot, ASTNode value, Variable.Type type) implements ASTNode {
+    @Override
+    public Object evaluate(ILocalContext context) throws InterruptedException {
+        if (context.getRoot().isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
+
+        if (this.value() instanceof OperationASTNode operation) {
+            Variable variable = Variable.of(this.type(), null);
+            operation.assignTo(variable, context);
+
+            context.setSlot(slot, variable);
+
+            return variable;
+        }
+
+        Object value = this.value().evaluate(context);
+
+        Object casted = Utils.cast(value, this.type().getJavaClass());
+
+        Variable variable = Variable.of(this.type(), casted);
+
+        context.setSlot(slot, variable);
+
+        return variable;
+    }
+
+    @Override
+    public long getSize() {
+        return Variable.getSize(variableName) + value.getSize();
+    }
+}
@@ -14,7 +14,7 @@ public record DecVarASTNode(String variableName, int hash, ASTNode value, Variab
 
         Object casted = Utils.cast(value, this.type().getJavaClass());
 
-        Variable variable = new Variable(this.type(), casted);
+        Variable variable = Variable.of(this.type(), casted);
 
         context.addVariable(hash, variable);
 
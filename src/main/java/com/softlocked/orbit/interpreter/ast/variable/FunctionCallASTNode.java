@@ -6,7 +6,11 @@ import com.softlocked.orbit.core.datatypes.functions.IFunction;
 import com.softlocked.orbit.core.evaluator.Breakpoint;
 import com.softlocked.orbit.interpreter.ast.value.ValueASTNode;
 import com.softlocked.orbit.interpreter.function.Consumer;
+import com.softlocked.orbit.interpreter.function.InlinedFunction;
 import com.softlocked.orbit.interpreter.function.NativeFunction;
+import com.softlocked.orbit.interpreter.function.OrbitFunction;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import com.softlocked.orbit.memory.FrameStack;
 import com.softlocked.orbit.memory.ILocalContext;
 import com.softlocked.orbit.memory.LocalContext;
 import com.softlocked.orbit.utils.Pair;
@@ -16,30 +20,41 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
+/**
+ * Calls a function by name. The function is looked up on the first call in each context and remembered by the
+ * context under this call site, so the node itself holds no state and can be shared by programs
+ * running in different contexts at once. Small functions are remembered with their body substituted for the call,
+ * see {@link InlinedFunction}.
+ * @see GlobalContext#getCallTarget(Object)
+ */
 public class FunctionCallASTNode implements ASTNode {
+    private static final Object[] NO_ARGS = new Object[0];
+
     private final String name;
     private final List<ASTNode> args;
 
-    private IFunction cachedFunction;
-//    private List<Object> cachedEvaluatedArgs;
-    private Object[] cachedEvaluatedArgs;
-
-    private boolean hasParams = false;
-
+    /**
+     * Returns the function this node calls in the given context, looking it up on the first call
+     */
     public IFunction getCachedFunction(ILocalContext context) {
-        if (cachedFunction == null) {
-            cachedFunction = context.getFunction(name, args.size());
+        GlobalContext root = context.getRoot();
+        IFunction function = root.getCallTarget(this);
+
+        if (function == null) {
+            function = context.getFunction(name, args.size());
 
-            if (cachedFunction == null) {
+            if (function == null) {
                 throw new RuntimeException("Function " + name + " with " + args.size() + " arguments not found");
             }
-            cachedEvaluatedArgs = new Object[args.size()];
-            for (int i = 0; i < args.size(); i++) {
-                cachedEvaluatedArgs[i] = null;
+
+            InlinedFunction inlined = InlinedFunction.inline(function, args, context);
+            if (inlined != null) {
+                function = inlined;
             }
+            root.setCallTarget(this, function);
         }
 
-        return cachedFunction;
+        return function;
     }
 
     public FunctionCallASTNode(String name, List<ASTNode> args) {
@@ -47,77 +62,94 @@ public class FunctionCallASTNode implements ASTNode {
         this.args = args;
     }
 
-    public FunctionCallASTNode(IFunction function, List<ASTNode> args) {
-        this.name = function.getName();
-        this.args = args;
-        this.cachedFunction = function;
-    }
-
     @Override
     public Object evaluate(ILocalContext context) throws InterruptedException {
-        // Caching
-        if (cachedFunction == null) {
-            cachedFunction = context.getFunction(name, args.size());
+        IFunction function = getCachedFunction(context);
 
-            if (cachedFunction == null) {
-                throw new RuntimeException("Function " + name + " with " + args.size() + " arguments not found");
-            }
-            cachedEvaluatedArgs = new Object[args.size()];
-            for (int i = 0; i < args.size(); i++) {
-                cachedEvaluatedArgs[i] = null;
-            }
+        if (function instanceof InlinedFunction inlined) {
+            return inlined.getExpression().evaluate(context);
         }
 
-        if (cachedFunction.getParameterCount() != -1) {
-            Pair<Integer, Variable.Type>[] parameters = cachedFunction.getParameters();
+        // Arguments are evaluated into a new array, since the same call can run on several threads or recursively
+        Object[] evaluatedArgs = args.isEmpty() ? NO_ARGS : new Object[args.size()];
+        evaluateArgs(context, function, args, evaluatedArgs, 0);
+
+        return invoke(context, function, evaluatedArgs);
+    }
+
+    /**
+     * Calls a function with a value as its first argument, followed by the given arguments. This is how
+     * <code>value:name(args)</code> runs <code>type.name(value, args)</code> without building a call node.
+     */
+    public static Object call(ILocalContext context, IFunction function, Object first, List<ASTNode> args) throws InterruptedException {
+        Object[] evaluatedArgs = new Object[args.size() + 1];
+        evaluatedArgs[0] = first;
+        evaluateArgs(context, function, args, evaluatedArgs, 1);
+
+        return invoke(context, function, evaluatedArgs);
+    }
+
+    // Evaluates the arguments into the array, starting at the given index
+    private static void evaluateArgs(ILocalContext context, IFunction function, List<ASTNode> args, Object[] evaluatedArgs, int offset) throws InterruptedException {
+        if (function.getParameterCount() != -1) {
+            Pair<Integer, Variable.Type>[] parameters = function.getParameters();
 
             for (int i = 0; i < args.size(); i++) {
                 ASTNode arg = args.get(i);
 
-                Variable.Type type = parameters[i].second;
+                Variable.Type type = parameters[i + offset].second;
 
                 if(type == Variable.Type.CONSUMER) {
-                    cachedEvaluatedArgs[i] = new Consumer(arg);
+                    evaluatedArgs[i + offset] = new Consumer(arg);
                 } else {
-                    cachedEvaluatedArgs[i] = arg.evaluate(context);
+                    evaluatedArgs[i + offset] = arg.evaluate(context);
                 }
             }
         } else {
             for (int i = 0; i < args.size(); i++) {
                 ASTNode arg = args.get(i);
-                cachedEvaluatedArgs[i] = arg.evaluate(context);
+                evaluatedArgs[i + offset] = arg.evaluate(context);
             }
         }
+    }
 
-        if (cachedFunction instanceof NativeFunction) {
+    private static Object invoke(ILocalContext context, IFunction function, Object[] evaluatedArgs) throws InterruptedException {
+        if (function instanceof NativeFunction) {
             // Cast argument types
-            if (cachedFunction.getParameterCount() != -1) {
-                for (int i = 0; i < cachedEvaluatedArgs.length; i++) {
-                    cachedEvaluatedArgs[i] = Utils.cast(cachedEvaluatedArgs[i], cachedFunction.getParameters()[i].second.getJavaClass());
+            if (function.getParameterCount() != -1) {
+                for (int i = 0; i < evaluatedArgs.length; i++) {
+                    evaluatedArgs[i] = Utils.cast(evaluatedArgs[i], function.getParameters()[i].second.getJavaClass());
                 }
             }
 
-            Object result = cachedFunction.call(context, cachedEvaluatedArgs);
+            Object result = function.call(context, evaluatedArgs);
 
             if (result instanceof Breakpoint breakpoint) {
-                return breakpoint.getValue();
+                return breakpoint.getValue(context);
             }
 
             return result;
         }
 
-        LocalContext localContext = context.getRoot().getOrCreateFunctionContext(cachedFunction);
-
-        Object result = cachedFunction.call(localContext, cachedEvaluatedArgs);
+        if (function instanceof OrbitFunction orbitFunction && orbitFunction.getCompiled() != null) {
+            // Compiled functions keep their locals on the JVM stack and don't need a pooled context
+            return orbitFunction.getCompiled().invoke(context.getRoot(), evaluatedArgs);
+        }
 
-        context.getRoot().freeFunctionContext(cachedFunction);
+        FrameStack frames = FrameStack.current();
+        LocalContext localContext = frames.push(context.getRoot());
 
-        if (result instanceof Breakpoint breakpoint) {
+        Object result;
+        try {
+            result = function.call(localContext, evaluatedArgs);
+        } finally {
             localContext.onRemove();
-            return breakpoint.getValue();
+            frames.pop(localContext);
         }
 
-        localContext.onRemove();
+        if (result instanceof Breakpoint breakpoint) {
+            return breakpoint.getValue(context);
+        }
         return result;
     }
 
@@ -30,6 +30,13 @@ public class CollectionAccessASTNode implements ASTNode {
             indices.add(index.evaluate(context));
         }
 
+        return get(collection, indices);
+    }
+
+    /**
+     * Reads an element of a collection, also used by compiled code
+     */
+    public static Object get(Object collection, List<Object> indices) throws InterruptedException {
         if (collection instanceof List) {
             List<Object> list = (List<Object>) collection;
             int depth = indices.size();
@@ -37,6 +37,15 @@ public class CollectionSetASTNode implements ASTNode {
 
         Object value = this.value.evaluate(context);
 
+        set(collection, indices, value);
+
+        return value;
+    }
+
+    /**
+     * Sets an element of a collection, also used by compiled code
+     */
+    public static void set(Object collection, List<Object> indices, Object value) throws InterruptedException {
         if (collection instanceof List) {
             List<Object> list = (List<Object>) collection;
             int depth = indices.size();
@@ -87,8 +96,6 @@ public class CollectionSetASTNode implements ASTNode {
         } else {
             throw new RuntimeException("Invalid collection type for access");
         }
-
-        return value;
     }
 
     @Override
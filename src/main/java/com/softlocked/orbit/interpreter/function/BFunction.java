@@ -15,6 +15,17 @@ public class BFunction implements ASTNode {
         this.values = values;
     }
 
+    public List<ASTNode> getValues() {
+        return values;
+    }
+
+    /**
+     * Returns whether the result only depends on the values, like {@link NativeFunction#isPure()}
+     */
+    public boolean isPure() {
+        return false;
+    }
+
     @Override
     public Object evaluate(ILocalContext context) throws InterruptedException {
         throw new RuntimeException("Not implemented");
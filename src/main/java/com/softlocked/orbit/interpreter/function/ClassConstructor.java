@@ -4,6 +4,7 @@ import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.datatypes.Variable;
 import com.softlocked.orbit.core.datatypes.functions.IFunction;
 import com.softlocked.orbit.core.evaluator.Breakpoint;
+import com.softlocked.orbit.memory.FrameLayout;
 import com.softlocked.orbit.memory.ILocalContext;
 import com.softlocked.orbit.utils.Pair;
 import com.softlocked.orbit.utils.Utils;
@@ -14,8 +15,10 @@ import java.util.List;
 public class ClassConstructor implements IFunction {
     private final int argsCount;
     private final Pair<Integer, Variable.Type>[] args;
+    private final String[] argNames;
 
-    private final ASTNode body;
+    private ASTNode body;
+    private FrameLayout layout;
 
 
     @Override
@@ -51,25 +54,52 @@ public class ClassConstructor implements IFunction {
     public ClassConstructor(int argsCount, List<Pair<String, Variable.Type>> args, ASTNode body) {
         this.argsCount = argsCount;
         this.args = new Pair[argsCount];
+        this.argNames = new String[argsCount];
         for (int i = 0; i < argsCount; i++) {
             this.args[i] = new Pair<>(args.get(i).first.hashCode(), args.get(i).second);
+            this.argNames[i] = args.get(i).first;
         }
         this.body = body;
     }
 
+    public String[] getParameterNames() {
+        return argNames;
+    }
+
+    public FrameLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Replaces the body with its resolved form. Parameters occupy the first slots of the layout.
+     */
+    public void setResolvedBody(ASTNode body, FrameLayout layout) {
+        this.body = body;
+        this.layout = layout;
+    }
+
     @Override
     public Object call(ILocalContext context, Object[] args) throws InterruptedException {
         if (context.getRoot().isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
 
-        for (int i = 0; i < args.length; i++) {
-            Object value = Utils.cast(args[i], this.args[i].second.getJavaClass());
-            context.addVariable(this.args[i].first, new Variable(this.args[i].second, value));
+        if (layout != null) {
+            context.enterFrame(layout);
+
+            for (int i = 0; i < args.length; i++) {
+                Object value = Utils.cast(args[i], this.args[i].second.getJavaClass());
+                context.setSlot(i, Variable.of(this.args[i].second, value));
+            }
+        } else {
+            for (int i = 0; i < args.length; i++) {
+                Object value = Utils.cast(args[i], this.args[i].second.getJavaClass());
+                context.addVariable(this.args[i].first, Variable.of(this.args[i].second, value));
+            }
         }
 
         Object result = body.evaluate(context);
 
         if(result instanceof Breakpoint) {
-            return ((Breakpoint) result).getValue();
+            return ((Breakpoint) result).getValue(context);
         } else {
             return result;
         }
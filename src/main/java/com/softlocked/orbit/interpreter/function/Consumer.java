@@ -2,8 +2,10 @@ package com.softlocked.orbit.interpreter.function;
 
 import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.datatypes.functions.IFunction;
+import com.softlocked.orbit.interpreter.ast.value.LocalVariableASTNode;
 import com.softlocked.orbit.interpreter.ast.value.VariableASTNode;
 import com.softlocked.orbit.memory.ILocalContext;
+import com.softlocked.orbit.memory.LocalContext;
 
 import java.util.List;
 
@@ -21,11 +23,19 @@ public class Consumer {
             return ((IFunction) body).call(context, args);
         }
 
-        if (body instanceof VariableASTNode) {
-            IFunction function = context.getFunction(((VariableASTNode) body).name(), args.length);
+        String name = null;
+        if (body instanceof VariableASTNode variable) {
+            name = variable.name();
+        } else if (body instanceof LocalVariableASTNode variable) {
+            name = variable.name();
+        }
+
+        if (name != null) {
+            IFunction function = context.getFunction(name, args.length);
 
             if (function != null) {
-                return function.call(context, args);
+                // Named functions get a frame of their own, so their slots don't overwrite the caller's
+                return function.call(new LocalContext(context), args);
             }
         }
 
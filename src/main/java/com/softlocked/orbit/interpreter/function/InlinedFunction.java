@@ -0,0 +1,293 @@
+package com.softlocked.orbit.interpreter.function;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.core.datatypes.functions.IFunction;
+import com.softlocked.orbit.core.evaluator.Breakpoint;
+import com.softlocked.orbit.interpreter.ast.generic.BodyASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.OperationASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.TernaryASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.controlflow.BreakASTNode;
+import com.softlocked.orbit.interpreter.ast.value.LocalVariableASTNode;
+import com.softlocked.orbit.interpreter.ast.value.ValueASTNode;
+import com.softlocked.orbit.interpreter.ast.value.VariableASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.FunctionCallASTNode;
+import com.softlocked.orbit.interpreter.function.coroutine.CoroutineFunction;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import com.softlocked.orbit.memory.ILocalContext;
+import com.softlocked.orbit.utils.Pair;
+import com.softlocked.orbit.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A function linked to a call site with its body substituted for the call, so that calling it takes no frame, no
+ * argument array and no breakpoint. The call site keeps it as its call target, so it is dropped like any other
+ * target when a function is redefined (see {@link GlobalContext#addFunction(IFunction)}), and the site links
+ * again on its next call.
+ * <p>
+ * A function is inlined when its body is a single <code>return</code> of a small expression made of literals, its
+ * parameters, operations, ternaries, pure baked functions and calls to functions which can be inlined themselves,
+ * e.g. <code>fun add(x, y) { return x + y }</code>. The arguments of the call have to be literals or variables, so
+ * that reading them where the parameters are read gives the same values as passing them. Recursive functions are
+ * never inlined, since their body can't be expanded to a finite expression.
+ */
+public final class InlinedFunction implements IFunction {
+    // Largest number of nodes an inlined expression can have
+    private static final int MAX_NODES = 32;
+
+    private final OrbitFunction function;
+    private final ASTNode expression;
+
+    private InlinedFunction(OrbitFunction function, ASTNode expression) {
+        this.function = function;
+        this.expression = expression;
+    }
+
+    /**
+     * Inlines a call
+     * @param function The function the call site links to
+     * @param args The arguments of the call site
+     * @param context The context the call site runs in
+     * @return The inlined function, or null if the call can't be inlined
+     */
+    public static InlinedFunction inline(IFunction function, List<ASTNode> args, ILocalContext context) {
+        if (!(function instanceof OrbitFunction orbitFunction)) {
+            return null;
+        }
+
+        ASTNode expression = new Expander(context.getRoot()).expand(orbitFunction, args);
+        return expression == null ? null : new InlinedFunction(orbitFunction, expression);
+    }
+
+    /**
+     * Returns the expression which is evaluated in place of the call
+     */
+    public ASTNode getExpression() {
+        return expression;
+    }
+
+    public OrbitFunction getFunction() {
+        return function;
+    }
+
+    private static final class Expander {
+        private final GlobalContext root;
+        private final List<OrbitFunction> expanding = new ArrayList<>();
+        private int nodes;
+
+        Expander(GlobalContext root) {
+            this.root = root;
+        }
+
+        /**
+         * Returns the body of a function with its parameters replaced with the arguments of a call, or null
+         */
+        ASTNode expand(OrbitFunction function, List<ASTNode> args) {
+            if (function instanceof CoroutineFunction || function.getName() == null || function.getLayout() == null
+                    || expanding.contains(function) || args.size() != function.getParameterCount()) {
+                return null;
+            }
+
+            ASTNode returned = returnedExpression(function.getBody());
+            if (returned == null) {
+                return null;
+            }
+
+            Pair<Integer, Variable.Type>[] parameters = function.getParameters();
+            ASTNode[] arguments = new ASTNode[args.size()];
+
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = argument(args.get(i), parameters[i].second);
+                if (arguments[i] == null) {
+                    return null;
+                }
+            }
+
+            expanding.add(function);
+            ASTNode expanded = substitute(returned, arguments);
+            expanding.remove(function);
+
+            return expanded;
+        }
+
+        private static ASTNode returnedExpression(ASTNode body) {
+            if (body instanceof BodyASTNode block && block.statements().length == 1) {
+                body = block.statements()[0];
+            }
+
+            if (body instanceof BreakASTNode returnNode && returnNode.getType() == Breakpoint.Type.RETURN) {
+                return returnNode.getValue();
+            }
+            return null;
+        }
+
+        /**
+         * Returns the node which replaces a parameter, or null if the argument can't be passed without a frame
+         */
+        private static ASTNode argument(ASTNode arg, Variable.Type type) {
+            switch (type) {
+                case CONSUMER, REFERENCE -> {
+                    return null;
+                }
+                case ANY -> {
+                    if (arg instanceof ValueASTNode value) {
+                        return isImmutable(value.value()) ? arg : null;
+                    }
+                    return arg instanceof LocalVariableASTNode || arg instanceof VariableASTNode ? arg : null;
+                }
+            }
+
+            // Typed parameters cast their argument, which is only done ahead of time for literals
+            if (!(arg instanceof ValueASTNode value) || !isImmutable(value.value())) {
+                return null;
+            }
+
+            try {
+                Object cast = Utils.cast(value.value(), type.getJavaClass());
+                return new ValueASTNode(Variable.of(type, cast).getValue());
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        private ASTNode substitute(ASTNode node, ASTNode[] arguments) {
+            if (node == null) {
+                return null;
+            }
+            if (++nodes > MAX_NODES) {
+                return null;
+            }
+
+            switch (node) {
+                case ValueASTNode value -> {
+                    return isImmutable(value.value()) ? value : null;
+                }
+                // Parameters take the first slots, anything else is a local of the function
+                case LocalVariableASTNode local -> {
+                    return local.slot() < arguments.length ? arguments[local.slot()] : null;
+                }
+                case OperationASTNode operation -> {
+                    ASTNode left = substitute(operation.left(), arguments);
+                    if (left == null) {
+                        return null;
+                    }
+
+                    ASTNode right = null;
+                    if (operation.right() != null) {
+                        right = substitute(operation.right(), arguments);
+                        if (right == null) {
+                            return null;
+                        }
+                    }
+                    return new OperationASTNode(left, right, operation.type());
+                }
+                case TernaryASTNode ternary -> {
+                    ASTNode condition = substitute(ternary.condition(), arguments);
+                    ASTNode trueBranch = substitute(ternary.trueBranch(), arguments);
+                    ASTNode falseBranch = substitute(ternary.falseBranch(), arguments);
+
+                    if (condition == null || trueBranch == null || falseBranch == null) {
+                        return null;
+                    }
+                    return new TernaryASTNode(condition, trueBranch, falseBranch);
+                }
+                case BFunction baked -> {
+                    if (!baked.isPure()) {
+                        return null;
+                    }
+
+                    List<ASTNode> values = new ArrayList<>();
+                    for (ASTNode value : baked.getValues()) {
+                        ASTNode substituted = substitute(value, arguments);
+                        if (substituted == null) {
+                            return null;
+                        }
+                        values.add(substituted);
+                    }
+
+                    BFunction copy;
+                    try {
+                        copy = baked.getClass().getConstructor().newInstance();
+                    } catch (ReflectiveOperationException e) {
+                        return null;
+                    }
+                    copy.setValues(values);
+                    return copy;
+                }
+                // Functions are looked up from the root, the same as from the frame of the function
+                case FunctionCallASTNode call -> {
+                    List<ASTNode> args = new ArrayList<>();
+                    for (ASTNode arg : call.args()) {
+                        ASTNode substituted = substitute(arg, arguments);
+                        if (substituted == null) {
+                            return null;
+                        }
+                        args.add(substituted);
+                    }
+
+                    if (!(root.getFunction(call.name(), args.size()) instanceof OrbitFunction callee)) {
+                        return null;
+                    }
+                    return expand(callee, args);
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+
+        private static boolean isImmutable(Object value) {
+            return value == null || value instanceof Number || value instanceof String || value instanceof Boolean
+                    || value instanceof Character;
+        }
+    }
+
+    // The call site evaluates the expression itself, the rest is the function's
+
+    @Override
+    public String getName() {
+        return function.getName();
+    }
+
+    @Override
+    public int getParameterCount() {
+        return function.getParameterCount();
+    }
+
+    @Override
+    public Pair<Integer, Variable.Type>[] getParameters() {
+        return function.getParameters();
+    }
+
+    @Override
+    public Variable.Type getReturnType() {
+        return function.getReturnType();
+    }
+
+    @Override
+    public boolean isNative() {
+        return false;
+    }
+
+    @Override
+    public Object call(ILocalContext context, Object[] args) throws InterruptedException {
+        return function.call(context, args);
+    }
+
+    @Override
+    public ASTNode getBody() {
+        return function.getBody();
+    }
+
+    @Override
+    public void setID(int id) {
+        function.setID(id);
+    }
+
+    @Override
+    public int getID() {
+        return function.getID();
+    }
+}
@@ -22,12 +22,15 @@ public class NativeFunction implements IFunction {
 
     private final List<Variable.Type> args = new ArrayList<>();
 
+    private final boolean pure;
+
     Pair<Integer, Variable.Type>[] cachedParams;
 
     public NativeFunction(String name, int argsCount, Variable.Type returnType) {
         this.name = name;
         this.argsCount = argsCount;
         this.returnType = returnType;
+        this.pure = false;
 
         for (int i = 0; i < argsCount; i++) {
             args.add(Variable.Type.ANY);
@@ -45,9 +48,17 @@ public class NativeFunction implements IFunction {
     }
 
     public NativeFunction(String name, List<Variable.Type> args, Variable.Type returnType) {
+        this(name, args, returnType, false);
+    }
+
+    /**
+     * @param pure Whether the function is pure, see {@link #isPure()}
+     */
+    public NativeFunction(String name, List<Variable.Type> args, Variable.Type returnType, boolean pure) {
         this.name = name;
         this.argsCount = args.size();
         this.returnType = returnType;
+        this.pure = pure;
         this.args.addAll(args);
 
         cachedParams = new Pair[argsCount];
@@ -92,6 +103,15 @@ public class NativeFunction implements IFunction {
         throw new UnsupportedOperationException("Native functions must be overridden to be called");
     }
 
+    /**
+     * Returns whether the result of the function only depends on its arguments, and calling it does nothing else,
+     * e.g. <code>math.sqrt</code>. Calls to pure functions with the same arguments can be evaluated once instead of
+     * every time, e.g. when they are inside a loop.
+     */
+    public boolean isPure() {
+        return pure;
+    }
+
     public <T extends BFunction> Class<T> getBakedFunction() {
         return null;
     }
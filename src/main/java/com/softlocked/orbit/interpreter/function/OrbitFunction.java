@@ -1,9 +1,11 @@
 package com.softlocked.orbit.interpreter.function;
 
+import com.softlocked.orbit.compiler.CompiledFunction;
 import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.datatypes.Variable;
 import com.softlocked.orbit.core.datatypes.functions.IFunction;
 import com.softlocked.orbit.core.evaluator.Breakpoint;
+import com.softlocked.orbit.memory.FrameLayout;
 import com.softlocked.orbit.memory.ILocalContext;
 import com.softlocked.orbit.utils.Pair;
 import com.softlocked.orbit.utils.Utils;
@@ -21,8 +23,15 @@ public class OrbitFunction implements IFunction {
     protected final Variable.Type returnType;
 
     protected final Pair<Integer, Variable.Type>[] args;
+    protected final String[] argNames;
 
-    protected final ASTNode body;
+    protected ASTNode body;
+
+    // Set by the resolver; null for functions whose locals are looked up by name (lambdas, coroutines)
+    protected FrameLayout layout;
+
+    // Set by the bytecode compiler
+    protected CompiledFunction compiled;
 
     public OrbitFunction(String name, ASTNode body, Variable.Type returnType) {
         this.name = name;
@@ -31,14 +40,17 @@ public class OrbitFunction implements IFunction {
         this.returnType = returnType;
 
         this.args = new Pair[0];
+        this.argNames = new String[0];
     }
 
     public OrbitFunction(String name, int argsCount, List<Pair<String, Variable.Type>> args, ASTNode body, Variable.Type returnType) {
         this.name = name;
         this.argsCount = argsCount;
         this.args = new Pair[argsCount];
+        this.argNames = new String[argsCount];
         for (int i = 0; i < argsCount; i++) {
             this.args[i] = new Pair<>(args.get(i).first.hashCode(), args.get(i).second);
+            this.argNames[i] = args.get(i).first;
         }
         this.body = body;
         this.returnType = returnType;
@@ -74,18 +86,56 @@ public class OrbitFunction implements IFunction {
         return body;
     }
 
+    public String[] getParameterNames() {
+        return argNames;
+    }
+
+    public FrameLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Replaces the body with its resolved form. Parameters occupy the first slots of the layout.
+     */
+    public void setResolvedBody(ASTNode body, FrameLayout layout) {
+        this.body = body;
+        this.layout = layout;
+    }
+
+    public CompiledFunction getCompiled() {
+        return compiled;
+    }
+
+    public void setCompiled(CompiledFunction compiled) {
+        this.compiled = compiled;
+    }
+
     @Override
     public Object call(ILocalContext context, Object[] args) throws InterruptedException {
-        for (int i = 0; i < args.length; i++) {
-            Variable.Type type = this.args[i].second;
-            Object value = Utils.cast(args[i], type.getJavaClass());
-            context.addVariable(this.args[i].first, new Variable(type, value));
+        if (compiled != null) {
+            return compiled.invoke(context, args);
+        }
+
+        if (layout != null) {
+            context.enterFrame(layout);
+
+            for (int i = 0; i < args.length; i++) {
+                Variable.Type type = this.args[i].second;
+                Object value = Utils.cast(args[i], type.getJavaClass());
+                context.setSlot(i, Variable.of(type, value));
+            }
+        } else {
+            for (int i = 0; i < args.length; i++) {
+                Variable.Type type = this.args[i].second;
+                Object value = Utils.cast(args[i], type.getJavaClass());
+                context.addVariable(this.args[i].first, Variable.of(type, value));
+            }
         }
 
         Object result = body.evaluate(context);
 
         if(result instanceof Breakpoint breakpoint) {
-            return breakpoint.getValue();
+            return breakpoint.getValue(context);
         } else {
             return result;
         }
@@ -0,0 +1,240 @@
+package com.softlocked.orbit.interpreter.function.coroutine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A queue of values between coroutines. A buffered channel holds up to its capacity of values, and sending to a
+ * full one waits for a receiver to make room. An unbuffered channel (capacity 0) holds nothing: sending waits until
+ * a receiver took the value.
+ * <p>
+ * Waiting parks the thread, so producers and consumers are meant to be async coroutines (see
+ * {@link Coroutine#startAsync()}), which park their own virtual thread and not the one of the script.
+ * <p>
+ * Once a channel is closed, nothing can be sent to it anymore, and receiving from it gives the values left in it,
+ * then null.
+ */
+public class Channel {
+    private final int capacity;
+
+    private final Deque<Object> items = new ArrayDeque<>();
+
+    // Stands for null in the queue, which can't hold null
+    private static final Object NULL = new Object();
+    private boolean closed;
+
+    // Number of values sent and received so far, which is how an unbuffered sender knows its value was taken
+    private long sent;
+    private long received;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition taken = lock.newCondition();
+
+    // Selects waiting for this channel, woken up when a value is sent or the channel is closed
+    private final List<Semaphore> selectors = new ArrayList<>();
+
+    public Channel(int capacity) {
+        if (capacity < 0) {
+            throw new RuntimeException("Channel capacity cannot be negative: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sends a value, waiting for room in the channel, or for a receiver if it's unbuffered
+     */
+    public void send(Object value) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            // An unbuffered channel still holds the value being handed over
+            while (!closed && items.size() >= Math.max(capacity, 1)) {
+                taken.await();
+            }
+            if (closed) {
+                throw new RuntimeException("Cannot send to a closed channel");
+            }
+
+            items.addLast(value == null ? NULL : value);
+            long ticket = ++sent;
+
+            notEmpty.signal();
+            wakeSelectors();
+
+            if (capacity == 0) {
+                while (received < ticket) {
+                    taken.await();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Receives a value, waiting for one to be sent
+     * @return The value, or null once the channel is closed and empty
+     */
+    public Object receive() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (items.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            return items.isEmpty() ? null : take();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Receives up to a number of values at once, waiting for the first one only
+     * @return The values, empty once the channel is closed and empty
+     */
+    public List<Object> receive(int max) throws InterruptedException {
+        List<Object> values = new ArrayList<>();
+
+        lock.lockInterruptibly();
+        try {
+            while (items.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            while (!items.isEmpty() && values.size() < max) {
+                values.add(take());
+            }
+        } finally {
+            lock.unlock();
+        }
+        return values;
+    }
+
+    // Called with the lock held
+    private Object take() {
+        Object value = items.pollFirst();
+        received++;
+
+        taken.signalAll();
+        if (!items.isEmpty()) {
+            notEmpty.signal();
+        }
+        return value == NULL ? null : value;
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+
+            notEmpty.signalAll();
+            taken.signalAll();
+            wakeSelectors();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether a value can still be received, waiting until one is sent or the channel is closed. Unlike a
+     * null from {@link #receive()}, this tells a null which was sent apart from the end of the channel.
+     */
+    public boolean hasNext() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (items.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            return !items.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held
+    private void wakeSelectors() {
+        for (Semaphore selector : selectors) {
+            selector.release();
+        }
+    }
+
+    /**
+     * Receives from whichever of the channels has a value first
+     * @return The index of the channel and the value received from it, or null once all of them are closed and
+     * empty
+     */
+    public static Selected select(List<Channel> channels) throws InterruptedException {
+        // Permits pile up, so a value sent between polling the channels and waiting isn't missed
+        Semaphore selector = new Semaphore(0);
+
+        for (Channel channel : channels) {
+            channel.register(selector, true);
+        }
+
+        try {
+            while (true) {
+                boolean open = false;
+
+                for (int i = 0; i < channels.size(); i++) {
+                    Channel channel = channels.get(i);
+
+                    channel.lock.lockInterruptibly();
+                    try {
+                        if (!channel.items.isEmpty()) {
+                            return new Selected(i, channel.take());
+                        }
+                        open |= !channel.closed;
+                    } finally {
+                        channel.lock.unlock();
+                    }
+                }
+
+                if (!open) {
+                    return null;
+                }
+                selector.acquire();
+            }
+        } finally {
+            for (Channel channel : channels) {
+                channel.register(selector, false);
+            }
+        }
+    }
+
+    private void register(Semaphore selector, boolean add) {
+        lock.lock();
+        try {
+            if (add) {
+                selectors.add(selector);
+            } else {
+                selectors.remove(selector);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public record Selected(int index, Object value) {
+    }
+
+    @Override
+    public String toString() {
+        return "channel(" + capacity + ")";
+    }
+}
@@ -2,67 +2,163 @@ package com.softlocked.orbit.interpreter.function.coroutine;
 
 import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.datatypes.Variable;
-import com.softlocked.orbit.core.datatypes.functions.IFunction;
+import com.softlocked.orbit.core.datatypes.classes.OrbitObject;
 import com.softlocked.orbit.core.evaluator.Breakpoint;
-import com.softlocked.orbit.interpreter.ast.generic.BodyASTNode;
-import com.softlocked.orbit.interpreter.ast.loops.WhileASTNode;
-import com.softlocked.orbit.interpreter.ast.loops.forloops.*;
-import com.softlocked.orbit.interpreter.ast.statement.ConditionalASTNode;
+import com.softlocked.orbit.core.evaluator.Evaluator;
+import com.softlocked.orbit.core.exception.InternalException;
+import com.softlocked.orbit.core.exception.SourceException;
 import com.softlocked.orbit.interpreter.function.Consumer;
-import com.softlocked.orbit.interpreter.function.OrbitFunction;
+import com.softlocked.orbit.interpreter.function.coroutine.StateMachine.*;
+import com.softlocked.orbit.interpreter.memory.IsolatedContext;
+import com.softlocked.orbit.memory.FrameLayout;
 import com.softlocked.orbit.memory.ILocalContext;
+import com.softlocked.orbit.memory.LocalContext;
 import com.softlocked.orbit.utils.Pair;
 import com.softlocked.orbit.utils.Utils;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
-
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A running coroutine. It runs the {@link StateMachine} of its function in a frame of its own, and remembers the
+ * step to continue at and the state of the loops it is in, so resuming it takes the same time wherever it yielded.
+ * <p>
+ * An async coroutine (see {@link #startAsync()}) runs on a virtual thread of its own, one value ahead of the code
+ * waiting for it. Its values are handed over through a queue, so waiting for one parks the thread which waits.
+ * <p>
+ * A spawned coroutine (see {@link Scheduler}) also runs on a thread of its own, and its values only go to its
+ * consumers.
+ * <p>
+ * Before moving to another thread, a coroutine gets a global context of its own (see {@link IsolatedContext}), so
+ * that it never writes a global variable the code around it reads.
+ */
 public class Coroutine {
     protected CoroutineFunction func;
 
-    protected ASTNode body;
-    protected ILocalContext context;
-    protected ASTNode head; // Used to store the head of the coroutine. This is the first node that will be executed when the coroutine is started.
-    protected ILocalContext headContext;
+    protected StateMachine machine;
+    protected LocalContext context;
 
     protected List<Object> args;
 
-    // Async functionality
-    protected AtomicBoolean isAsync = new AtomicBoolean(false);
-    protected volatile AtomicReference<Object> returnValue = null;
-    protected List<Consumer> consumers = new ArrayList<>();
+    // The step to run next, and the counters and iterators of the loops being run
+    private int step;
+    private Object[] state;
+
+    // Whether the last run stopped at a yield or a return, rather than at the end of the body
+    private boolean produced;
+
+    // Values of an async coroutine, put by its thread, and the one isFinished took ahead of await
+    private volatile BlockingQueue<Object> results;
+    private Object lookahead;
+
+    // Guards the lookahead. A lock rather than a monitor, since a virtual thread waiting inside a monitor keeps its
+    // carrier thread, which may be the one the coroutine needs to run on.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Stand for null and the end of the coroutine in the queue, which can't hold null
+    private static final Object NULL = new Object();
+    private static final Object END = new Object();
+
+    private record Failure(Throwable error) {
+    }
+
+    // Whether the coroutine was given to a scheduler, which is then the only one running it
+    private boolean scheduled;
+
+    protected List<Consumer> consumers = new CopyOnWriteArrayList<>();
 
     public Coroutine(ILocalContext context, CoroutineFunction function, List<Object> args) {
-        this.body = function.getBody();
-        this.head = body;
-        this.headContext = context;
+        this.machine = function.getStateMachine();
+        this.context = new LocalContext(context.getRoot());
 
-        this.context = context;
         this.func = function;
 
         this.args = args;
     }
 
     public boolean isAsync() {
-        return isAsync.get();
+        return results != null;
     }
 
-    public void setAsync(boolean async) {
-        isAsync.set(async);
+    /**
+     * Runs the rest of the coroutine on a virtual thread. Does nothing if it is already async or finished.
+     */
+    public synchronized void startAsync() {
+        if (results != null || finished) {
+            return;
+        }
+        if (scheduled) {
+            throw new RuntimeException("Cannot make a spawned coroutine async");
+        }
+
+        isolate();
+        results = new ArrayBlockingQueue<>(1);
+        Thread.ofVirtual().name(toString()).start(this::runAsync);
     }
 
-    public void addConsumer(Consumer consumer) {
-        consumers.add(consumer);
+    private void runAsync() {
+        BlockingQueue<Object> results = this.results;
+
+        try {
+            try {
+                while (!finished) {
+                    Object value = advance();
+
+                    if (produced) {
+                        results.put(value == null ? NULL : value);
+                    }
+                }
+            } catch (Throwable e) {
+                results.put(new Failure(e));
+            }
+            results.put(END);
+        } catch (InterruptedException e) {
+            // Nobody waits for the values anymore
+        }
     }
 
-    public AtomicReference<Object> getReturnValue() {
-        return returnValue;
+    /**
+     * Waits for the next value of an async coroutine, parking until its thread produces it, or resumes the
+     * coroutine if it isn't async
+     * @return The value, or null once the coroutine is finished
+     */
+    public Object await() throws InterruptedException {
+        if (results == null) {
+            return resume();
+        }
+
+        lock.lockInterruptibly();
+        try {
+            Object value = lookahead != null ? lookahead : results.take();
+            lookahead = value == END ? END : null;
+
+            if (value == END || value == NULL) {
+                return null;
+            }
+            if (value instanceof Failure failure) {
+                lookahead = END;
+                if (failure.error() instanceof RuntimeException e) {
+                    throw e;
+                }
+                if (failure.error() instanceof InterruptedException e) {
+                    throw e;
+                }
+                throw new RuntimeException(failure.error());
+            }
+            return value;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public void resetReturnValue() {
-        returnValue = null;
+    public void addConsumer(Consumer consumer) {
+        consumers.add(consumer);
     }
 
     public CoroutineFunction getFunction() {
@@ -73,8 +169,33 @@ public class Coroutine {
         return args;
     }
 
+    /**
+     * Returns whether the coroutine has no more values. For an async coroutine, this waits until its thread
+     * produced the next value or finished.
+     */
     public boolean isFinished() {
-        return finished;
+        if (results == null) {
+            return finished;
+        }
+
+        try {
+            lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        try {
+            if (lookahead == null) {
+                lookahead = results.take();
+            }
+            return lookahead == END;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public long getSize() {
@@ -87,247 +208,276 @@ public class Coroutine {
         return size;
     }
 
-    boolean finished = false;
+    volatile boolean finished = false;
     public Object resume() throws InterruptedException {
-        if(finished) {
-            return null;
+        if (results != null) {
+            return await();
         }
-
-        if(isAsync.get() && returnValue != null) {
-            Object value = returnValue.get();
-            returnValue = null;
-            return value;
+        if (scheduled) {
+            throw new RuntimeException("Cannot resume a spawned coroutine");
         }
+        return advance();
+    }
 
-        BodyASTNode body = (BodyASTNode) this.body;
-
-        if(head == body) {
-            Object value = body.evaluate(context);
-
-            if (value instanceof Breakpoint breakpoint) {
-                if (breakpoint.getType() == Breakpoint.Type.YIELD) {
-                    head = breakpoint.getNode();
-                    headContext = breakpoint.getContext();
+    /**
+     * Hands the coroutine over to a scheduler
+     */
+    synchronized void schedule() {
+        if (results != null || scheduled) {
+            throw new RuntimeException("Coroutine is already " + (scheduled ? "spawned" : "async"));
+        }
+        scheduled = true;
+        isolate();
+    }
 
-                    if (head == body.statements()[body.statements().length - 1]) {
-                        finished = true;
-                    }
-                }
-                if (breakpoint.getType() == Breakpoint.Type.RETURN) {
-                    finished = true;
-                }
-                if (isAsync.get()) {
-                    returnValue = new AtomicReference<>(breakpoint.getValue());
-                }
-                for (Consumer consumer : consumers) {
-                    consumer.accept(context, new Object[]{breakpoint.getValue()});
-                }
-                return breakpoint.getValue();
-            }
+    /**
+     * Runs a spawned coroutine until its next yield or its end
+     * @return Whether the coroutine finished
+     */
+    boolean step() throws InterruptedException {
+        advance();
+        return finished;
+    }
 
-            return value;
-        }
-        // Find the head of the coroutine
-        Pair<ASTNode, ASTNode> result = findNode(body, head);
+    /**
+     * Moves the frame of the coroutine under a global context of its own, before it runs on another thread
+     */
+    private void isolate() {
+        LocalContext isolated = new LocalContext(new IsolatedContext(context.getRoot()));
+        isolated.takeLocals(context);
+        context = isolated;
+    }
 
-        if (result == null) {
+    /**
+     * Runs the coroutine until its next yield or its end
+     */
+    private Object advance() throws InterruptedException {
+        produced = false;
+        if(finished) {
             return null;
         }
 
-        ASTNode parent = result.first;
-
-        while (parent instanceof ConditionalASTNode) {
-            result = findNode(body, parent);
-            parent = result.first;
+        if (context.getRoot().isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
 
-            headContext = headContext == context ? context : headContext.getParent();
+        if (state == null) {
+            start();
         }
 
-        // Resume the coroutine
-        while(parent != body) {
-            if (parent instanceof BodyASTNode bodyASTNode) {
-                Object value = bodyASTNode.evaluateFrom(headContext, result.second);
-
-                if (value instanceof Breakpoint breakpoint) {
-                    if (breakpoint.getType() == Breakpoint.Type.YIELD) {
-                        head = breakpoint.getNode();
-                        headContext = breakpoint.getContext();
-
-                        // Check if the head is the last node in the body, and if so, the coroutine is finished
-                        if (head == body.statements()[body.statements().length - 1]) {
+        Step[] steps = machine.steps;
+
+        while (step < steps.length) {
+            Step current = steps[step];
+
+            try {
+                switch (current) {
+                    case Run run -> {
+                        Object result = run.statement().evaluate(context);
+
+                        if (!(result instanceof Breakpoint breakpoint)) {
+                            step++;
+                        } else if (breakpoint == Breakpoint.BREAK && run.loop() != null) {
+                            step = run.loop().breakTo;
+                        } else if (breakpoint == Breakpoint.CONTINUE && run.loop() != null) {
+                            step = run.loop().continueTo;
+                        } else if (breakpoint.getType() == Breakpoint.Type.YIELD) {
+                            step++;
+                            return suspend(breakpoint.getValue(context));
+                        } else {
+                            // Returns, and breaks and continues outside of loops, end the coroutine like they end functions
                             finished = true;
+                            return complete(breakpoint.getValue(context));
                         }
                     }
-                    if (breakpoint.getType() == Breakpoint.Type.RETURN) {
-                        finished = true;
+                    case Yield yield -> {
+                        Object value = yield.value() == null ? null : yield.value().evaluate(context);
+                        step++;
+                        return suspend(value);
                     }
-                    if (breakpoint.getType() == Breakpoint.Type.BREAK) {
-                        // Find the parent loop and break from it
-                        ASTNode loop = parent;
-
-                        while (!(loop instanceof WhileASTNode) && !(loop instanceof ForInASTNode) && !(loop instanceof ForToASTNode) && !(loop instanceof ForDowntoASTNode)) {
-                            result = findNode(body, loop);
-                            loop = result.first;
-
-                            if (loop instanceof ConditionalASTNode) {
-                                headContext = headContext == context ? context : headContext.getParent();
-                            }
+                    case Jump jump -> step = jump.target();
+                    case JumpUnless jump -> {
+                        if (Evaluator.toBool(jump.condition().evaluate(context))) {
+                            step++;
+                        } else {
+                            step = jump.target();
                         }
                     }
-                    if (isAsync.get()) {
-                        returnValue = new AtomicReference<>(breakpoint.getValue());
-                    }
-                    for (Consumer consumer : consumers) {
-                        consumer.accept(context, new Object[]{breakpoint.getValue()});
-                    }
-                    return breakpoint.getValue();
-                }
-            } else {
-                Object value = parent.evaluate(headContext);
-
-                if (value instanceof Breakpoint breakpoint) {
-                    if (breakpoint.getType() == Breakpoint.Type.YIELD) {
-                        head = breakpoint.getNode();
-                        headContext = breakpoint.getContext();
-
-                        if (head == body.statements()[body.statements().length - 1]) {
-                            finished = true;
+                    case CountStart count -> {
+                        Variable variable = (Variable) count.init().evaluate(context);
+
+                        long start = ((Number) variable.getValue()).longValue();
+                        long end = ((Number) count.end().evaluate(context)).longValue();
+
+                        if (count.down() ? start < end : start > end) {
+                            step = count.exit();
+                        } else {
+                            state[count.state()] = new Counter(variable, start, end);
+                            setCounter(variable, start, count.down());
+                            step++;
                         }
                     }
-                    if (breakpoint.getType() == Breakpoint.Type.RETURN) {
-                        finished = true;
-                    }
-                    if (breakpoint.getType() == Breakpoint.Type.BREAK) {
-                        // Find the parent loop and break from it
-                        ASTNode loop = parent;
-
-                        while (!(loop instanceof WhileASTNode) && !(loop instanceof ForInASTNode) && !(loop instanceof ForToASTNode) && !(loop instanceof ForDowntoASTNode)) {
-                            result = findNode(body, loop);
-                            loop = result.first;
-
-                            if (loop instanceof ConditionalASTNode) {
-                                headContext = headContext == context ? context : headContext.getParent();
-                            }
+                    case CountNext count -> {
+                        Counter counter = (Counter) state[count.state()];
+                        long next = count.down() ? counter.current - 1 : counter.current + 1;
+
+                        if (count.down() ? next < counter.end : next > counter.end) {
+                            state[count.state()] = null;
+                            step++;
+                        } else {
+                            counter.current = next;
+                            setCounter(counter.variable, next, count.down());
+                            step = count.body();
                         }
                     }
-                    if (isAsync.get()) {
-                        returnValue = new AtomicReference<>(breakpoint.getValue());
+                    case IterateStart iterate -> {
+                        Variable variable = (Variable) iterate.init().evaluate(context);
+                        Object iterable = iterate.iterable().evaluate(context);
+
+                        state[iterate.state()] = new Items(variable, iterator(variable, iterable));
+                        step++;
                     }
-                    for (Consumer consumer : consumers) {
-                        consumer.accept(context, new Object[]{breakpoint.getValue()});
+                    case IterateNext iterate -> {
+                        Items items = (Items) state[iterate.state()];
+
+                        if (items.iterator.hasNext()) {
+                            items.variable.setValue(items.iterator.next());
+                            step++;
+                        } else {
+                            state[iterate.state()] = null;
+                            step = iterate.exit();
+                        }
                     }
-                    return breakpoint.getValue();
                 }
-            }
-
-            result = findNode(body, parent);
-
-            parent = result.first;
+            } catch (RuntimeException e) {
+                Handler handler = machine.handlers[step];
+                if (handler == null) {
+                    finished = true;
+                    throw locate(e, current);
+                }
 
-            if(!(parent instanceof BodyASTNode)) {
-                headContext = headContext == context ? context : headContext.getParent();
+                context.addVariable(handler.exceptionName.hashCode(), new Variable(Variable.Type.CLASS, exception(e)));
+                step = handler.target;
             }
         }
 
-        // Now evaluate the body
-        Object resultValue = body.evaluateFrom(headContext, result.second);
+        finished = true;
+        return null;
+    }
 
-        if (resultValue instanceof Breakpoint breakpoint) {
-            if (breakpoint.getType() == Breakpoint.Type.YIELD) {
-                head = breakpoint.getNode();
-                headContext = breakpoint.getContext();
+    /**
+     * Binds the arguments to the parameters of the function, the same way a call does
+     */
+    private void start() throws InterruptedException {
+        state = new Object[machine.stateSize];
 
-                if (head == body.statements()[body.statements().length - 1]) {
-                    finished = true;
-                }
-            }
-            if (breakpoint.getType() == Breakpoint.Type.RETURN) {
-                finished = true;
-            }
-            if (breakpoint.getType() == Breakpoint.Type.BREAK) {
-                // Find the parent loop and break from it
-                ASTNode loop = parent;
+        Pair<Integer, Variable.Type>[] parameters = func.getParameters();
+        FrameLayout layout = func.getLayout();
 
-                while (!(loop instanceof WhileASTNode) && !(loop instanceof ForInASTNode) && !(loop instanceof ForToASTNode) && !(loop instanceof ForDowntoASTNode)) {
-                    result = findNode(body, loop);
-                    loop = result.first;
+        if (layout != null) {
+            context.enterFrame(layout);
+        }
 
-                    if (loop instanceof ConditionalASTNode) {
-                        headContext = headContext == context ? context : headContext.getParent();
-                    }
-                }
-            }
-            if (isAsync.get()) {
-                returnValue = new AtomicReference<>(breakpoint.getValue());
-            }
-            for (Consumer consumer : consumers) {
-                consumer.accept(context, new Object[]{breakpoint.getValue()});
+        for (int i = 0; i < parameters.length && i < args.size(); i++) {
+            Variable.Type type = parameters[i].second;
+            Variable variable = Variable.of(type, Utils.cast(args.get(i), type.getJavaClass()));
+
+            if (layout != null) {
+                context.setSlot(i, variable);
+            } else {
+                context.addVariable(parameters[i].first, variable);
             }
-            return breakpoint.getValue();
         }
+    }
 
-        return resultValue;
+    private Object suspend(Object value) throws InterruptedException {
+        if (step == machine.steps.length) {
+            finished = true;
+        }
+        return complete(value);
     }
 
-    // Finds parent and required node to resume the coroutine
-    private Pair<ASTNode, ASTNode> findNode(ASTNode where, ASTNode node) {
-        if (where instanceof BodyASTNode bodyASTNode) {
-            for (ASTNode child : bodyASTNode.statements()) {
-                if (child == node) {
-                    return new Pair<>(where, node);
-                }
+    private Object complete(Object value) throws InterruptedException {
+        produced = true;
+        for (Consumer consumer : consumers) {
+            consumer.accept(context, new Object[]{value});
+        }
+        return value;
+    }
 
-                Pair<ASTNode, ASTNode> result = findNode(child, node);
+    private static void setCounter(Variable variable, long value, boolean down) {
+        if (down) {
+            variable.setValue(value);
+            return;
+        }
 
-                if (result != null) {
-                    return result;
-                }
-            }
-            return null;
+        switch (variable.getType()) {
+            case ANY, INT -> variable.setValue(Math.toIntExact(value));
+            case LONG -> variable.setValue(value);
+            case FLOAT -> variable.setValue((float) value);
+            case DOUBLE -> variable.setValue((double) value);
+            default -> throw new RuntimeException("Invalid variable type for for loop: " + variable.getType());
         }
-        else if (where instanceof ConditionalASTNode conditionalASTNode) {
-            if(conditionalASTNode.thenBranch() == node || conditionalASTNode.elseBranch() == node) {
-                return new Pair<>(where, node);
-            }
-            Pair<ASTNode, ASTNode> result = findNode(conditionalASTNode.thenBranch(), node);
+    }
 
-            if (result != null) {
-                return result;
+    private static Iterator<?> iterator(Variable variable, Object iterable) {
+        switch (iterable) {
+            case List<?> list -> {
+                variable.setType(Variable.Type.ANY);
+                return list.iterator();
             }
-
-            if (conditionalASTNode.elseBranch() != null) {
-                return findNode(conditionalASTNode.elseBranch(), node);
+            case String s -> {
+                variable.setType(Variable.Type.STRING);
+                return s.chars().mapToObj(c -> (char) c).iterator();
             }
-        }
-        else if (where instanceof WhileASTNode whileASTNode) {
-            if(whileASTNode.body() == node) {
-                return new Pair<>(where, node);
+            case Map<?, ?> map -> {
+                variable.setType(Variable.Type.ANY);
+                return map.keySet().iterator();
             }
-            return findNode(whileASTNode.body(), node);
-        }
-        else if (where instanceof ForInASTNode forInASTNode) {
-            if(forInASTNode.body() == node) {
-                return new Pair<>(where, node);
+            case Object[] array -> {
+                variable.setType(Variable.Type.ANY);
+                return Arrays.asList(array).iterator();
             }
-            return findNode(forInASTNode.body(), node);
+            default -> throw new RuntimeException("Cannot iterate over " + iterable.getClass().getSimpleName());
         }
-        else if (where instanceof ForToASTNode forToASTNode) {
-            if(forToASTNode.body() == node) {
-                return new Pair<>(where, node);
-            }
-            return findNode(forToASTNode.body(), node);
+    }
+
+    private OrbitObject exception(RuntimeException e) throws InterruptedException {
+        if (e instanceof InternalException internal) {
+            return internal.getObject();
         }
-        else if (where instanceof ForDowntoASTNode forDowntoASTNode) {
-            if(forDowntoASTNode.body() == node) {
-                return new Pair<>(where, node);
-            }
-            return findNode(forDowntoASTNode.body(), node);
+        return new OrbitObject(context.getRoot().getClassType("exception"), List.of(e.getMessage()), context.getRoot());
+    }
+
+    private RuntimeException locate(RuntimeException e, Step step) {
+        if (e instanceof InternalException || e instanceof SourceException) {
+            return e;
+        }
+
+        ASTNode node = switch (step) {
+            case Run run -> run.statement();
+            case Yield yield -> yield.value();
+            case JumpUnless jump -> jump.condition();
+            case CountStart count -> count.init();
+            case IterateStart iterate -> iterate.iterable();
+            default -> null;
+        };
+
+        String location = context.getRoot().getLocation(node);
+        return location == null ? e : new SourceException(e, location);
+    }
+
+    private static final class Counter {
+        final Variable variable;
+        long current;
+        final long end;
+
+        Counter(Variable variable, long current, long end) {
+            this.variable = variable;
+            this.current = current;
+            this.end = end;
         }
-        return null;
     }
 
-    private boolean isChildOf(ASTNode where, ASTNode what) {
-        return findNode(where, what) != null;
+    private record Items(Variable variable, Iterator<?> iterator) {
     }
 
     @Override
@@ -3,13 +3,17 @@ package com.softlocked.orbit.interpreter.function.coroutine;
 import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.datatypes.Variable;
 import com.softlocked.orbit.interpreter.function.OrbitFunction;
+import com.softlocked.orbit.memory.FrameLayout;
 import com.softlocked.orbit.memory.ILocalContext;
 import com.softlocked.orbit.utils.Pair;
-import com.softlocked.orbit.utils.Utils;
 
+import java.util.Arrays;
 import java.util.List;
 
 public class CoroutineFunction extends OrbitFunction {
+    // Built from the resolved body on the first call
+    private volatile StateMachine stateMachine;
+
     public CoroutineFunction(String name, ASTNode body) {
         super(name, body, Variable.Type.ANY);
     }
@@ -22,11 +26,22 @@ public class CoroutineFunction extends OrbitFunction {
     public Object call(ILocalContext context, Object[] args) throws InterruptedException {
         if (context.getRoot().isMarkedForDeletion()) throw new InterruptedException("Context marked for deletion");
 
-//        for (int i = 0; i < args.length; i++) {
-//            Object value = Utils.cast(args.get(i), this.args.get(i).second.getJavaClass());
-//            context.addVariable(this.args.get(i).first.hashCode(), new Variable(this.args.get(i).second, value));
-//        }
+        // Arguments are bound when the coroutine first runs
+        return new Coroutine(context, this, Arrays.asList(args));
+    }
 
-        return new Coroutine(context, this, List.of(args));
+    StateMachine getStateMachine() {
+        StateMachine machine = stateMachine;
+        if (machine == null) {
+            machine = StateMachine.of(body);
+            stateMachine = machine;
+        }
+        return machine;
+    }
+
+    @Override
+    public void setResolvedBody(ASTNode body, FrameLayout layout) {
+        super.setResolvedBody(body, layout);
+        stateMachine = null;
     }
 }
\ No newline at end of file
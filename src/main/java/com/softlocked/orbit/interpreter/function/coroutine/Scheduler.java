@@ -0,0 +1,85 @@
+package com.softlocked.orbit.interpreter.function.coroutine;
+
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the coroutines spawned in a context over the cores of the machine.
+ * <p>
+ * Every coroutine runs on a virtual thread of its own, in a global context of its own (see
+ * {@link com.softlocked.orbit.interpreter.memory.IsolatedContext}), so that coroutines never write the same global
+ * variable. Values are meant to be passed around through channels instead. Virtual threads are run by the
+ * work-stealing scheduler of the JDK, so idle cores take coroutines from busy ones.
+ * <p>
+ * A coroutine gives its core up to the others when it yields, and when it ran for a while at the checkpoints of its
+ * loops, so one that never yields doesn't keep a core to itself. Waiting on a {@link Channel} parks its thread only.
+ * Like {@link Coroutine#resume()}, a coroutine stops when its context is marked for deletion.
+ */
+public final class Scheduler {
+    private final GlobalContext context;
+
+    // Number of coroutines spawned which didn't finish yet
+    private int running;
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    public Scheduler(GlobalContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Starts running a coroutine. Once spawned, it can't be resumed by hand anymore.
+     */
+    public void spawn(Coroutine coroutine) {
+        coroutine.schedule();
+
+        synchronized (this) {
+            running++;
+        }
+
+        try {
+            Thread.ofVirtual().name(coroutine.toString()).start(() -> run(coroutine));
+        } catch (RuntimeException | Error e) {
+            done();
+            throw e;
+        }
+    }
+
+    private void run(Coroutine coroutine) {
+        try {
+            while (!context.isMarkedForDeletion() && !coroutine.step()) {
+                // Lets the coroutines waiting for a core take their turn
+                Thread.yield();
+            }
+        } catch (InterruptedException e) {
+            // The context is being deleted
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            done();
+        }
+    }
+
+    private synchronized void done() {
+        if (--running == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until every coroutine spawned in the context finished
+     * @throws RuntimeException The first exception a coroutine threw, if any did
+     */
+    public void join() throws InterruptedException {
+        synchronized (this) {
+            while (running > 0) {
+                wait();
+            }
+        }
+
+        RuntimeException e = failure.getAndSet(null);
+        if (e != null) {
+            throw e;
+        }
+    }
+}
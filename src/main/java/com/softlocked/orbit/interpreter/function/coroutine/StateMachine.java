@@ -0,0 +1,293 @@
+package com.softlocked.orbit.interpreter.function.coroutine;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.evaluator.Breakpoint;
+import com.softlocked.orbit.interpreter.ast.generic.BodyASTNode;
+import com.softlocked.orbit.interpreter.ast.generic.TryCatchASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.OptimizedLoopASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.WhileASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForDowntoASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForInASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForToASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.BranchASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.ConditionalASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.controlflow.BreakASTNode;
+import com.softlocked.orbit.utils.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The body of a coroutine turned into a flat list of steps, so that a coroutine is resumed by jumping to the step
+ * after the one which yielded, whatever the statements around it.
+ * <p>
+ * Only the statements which contain a yield are taken apart: blocks, conditions, loops and try blocks become jumps,
+ * and the counters and iterators of loops are kept by the coroutine (see {@link Coroutine}). Every other statement
+ * is one {@link Run} step, evaluated as it would be anywhere else.
+ * <p>
+ * A state machine only depends on the body, so it is built once per coroutine function and shared by all of its
+ * coroutines.
+ */
+final class StateMachine {
+    /**
+     * One step of a coroutine. Steps are numbered by their index in {@link #steps}.
+     */
+    sealed interface Step {
+    }
+
+    /**
+     * Evaluates a statement. A break or a continue completing it goes to the loop it is in, if it was taken apart.
+     */
+    record Run(ASTNode statement, Loop loop) implements Step {
+    }
+
+    /**
+     * Suspends the coroutine with a value
+     */
+    record Yield(ASTNode value) implements Step {
+    }
+
+    record Jump(int target) implements Step {
+    }
+
+    /**
+     * Continues at the given step if the condition is false
+     */
+    record JumpUnless(ASTNode condition, int target) implements Step {
+    }
+
+    /**
+     * Declares the counter of a for loop and keeps its end in a state slot, or jumps past the loop if it doesn't run
+     */
+    record CountStart(ASTNode init, ASTNode end, int state, boolean down, int exit) implements Step {
+    }
+
+    /**
+     * Moves the counter of a for loop, and jumps back to its body unless it passed its end
+     */
+    record CountNext(int state, boolean down, int body) implements Step {
+    }
+
+    /**
+     * Declares the variable of a for-in loop and keeps an iterator over its iterable in a state slot
+     */
+    record IterateStart(ASTNode init, ASTNode iterable, int state) implements Step {
+    }
+
+    /**
+     * Puts the next item in the variable of a for-in loop, or jumps past the loop at the end of the iterable
+     */
+    record IterateNext(int state, int exit) implements Step {
+    }
+
+    /**
+     * Where the breaks and continues of a loop which was taken apart go
+     */
+    static final class Loop {
+        int breakTo;
+        int continueTo;
+    }
+
+    /**
+     * The catch block of a try block which was taken apart
+     */
+    static final class Handler {
+        int target;
+        final String exceptionName;
+
+        Handler(String exceptionName) {
+            this.exceptionName = exceptionName;
+        }
+    }
+
+    final Step[] steps;
+    // The catch block each step continues at when it throws, or null
+    final Handler[] handlers;
+
+    // Number of state slots kept by every coroutine
+    final int stateSize;
+
+    private StateMachine(Step[] steps, Handler[] handlers, int stateSize) {
+        this.steps = steps;
+        this.handlers = handlers;
+        this.stateSize = stateSize;
+    }
+
+    static StateMachine of(ASTNode body) {
+        Builder builder = new Builder();
+        builder.lower(body);
+
+        return new StateMachine(
+                builder.steps.toArray(new Step[0]),
+                builder.handlers.toArray(new Handler[0]),
+                builder.stateSize
+        );
+    }
+
+    private static final class Builder {
+        private final List<Step> steps = new ArrayList<>();
+        private final List<Handler> handlers = new ArrayList<>();
+        private int stateSize;
+
+        private Loop loop;
+        private Handler handler;
+
+        private int emit(Step step) {
+            steps.add(step);
+            handlers.add(handler);
+            return steps.size() - 1;
+        }
+
+        private int next() {
+            return steps.size();
+        }
+
+        // Forward jumps are emitted empty and filled in once their target is known
+        private void patch(int index, Step step) {
+            steps.set(index, step);
+        }
+
+        void lower(ASTNode node) {
+            if (node == null) {
+                return;
+            }
+            if (!containsYield(node)) {
+                emit(new Run(node, loop));
+                return;
+            }
+
+            switch (node) {
+                case BodyASTNode body -> {
+                    for (ASTNode statement : body.statements()) {
+                        lower(statement);
+                    }
+                }
+                case BreakASTNode control -> emit(new Yield(control.getValue()));
+                case ConditionalASTNode conditional -> {
+                    int test = emit(null);
+                    lower(conditional.thenBranch());
+
+                    if (conditional.elseBranch() == null) {
+                        patch(test, new JumpUnless(conditional.condition(), next()));
+                        return;
+                    }
+
+                    int skip = emit(null);
+                    patch(test, new JumpUnless(conditional.condition(), next()));
+                    lower(conditional.elseBranch());
+                    patch(skip, new Jump(next()));
+                }
+                case BranchASTNode branch -> {
+                    List<Integer> ends = new ArrayList<>();
+                    for (Pair<ASTNode, ASTNode> pair : branch.branches()) {
+                        int test = emit(null);
+                        lower(pair.second);
+                        ends.add(emit(null));
+                        patch(test, new JumpUnless(pair.first, next()));
+                    }
+                    for (int end : ends) {
+                        patch(end, new Jump(next()));
+                    }
+                }
+                case OptimizedLoopASTNode optimized -> lower(optimized.original());
+                case WhileASTNode whileLoop -> {
+                    Loop outer = loop;
+                    loop = new Loop();
+
+                    int top = next();
+                    int test = emit(null);
+                    lower(whileLoop.body());
+                    emit(new Jump(top));
+                    patch(test, new JumpUnless(whileLoop.condition(), next()));
+
+                    loop.continueTo = top;
+                    loop.breakTo = next();
+                    loop = outer;
+                }
+                case ForToASTNode forLoop -> count(forLoop.init(), forLoop.end(), forLoop.body(), false);
+                case ForDowntoASTNode forLoop -> count(forLoop.init(), forLoop.end(), forLoop.body(), true);
+                case ForInASTNode forLoop -> {
+                    Loop outer = loop;
+                    loop = new Loop();
+
+                    int state = stateSize++;
+                    emit(new IterateStart(forLoop.init(), forLoop.iterable(), state));
+
+                    int top = emit(null);
+                    lower(forLoop.body());
+                    emit(new Jump(top));
+                    patch(top, new IterateNext(state, next()));
+
+                    loop.continueTo = top;
+                    loop.breakTo = next();
+                    loop = outer;
+                }
+                case TryCatchASTNode tryCatch -> {
+                    Handler outer = handler;
+                    Handler catchBlock = new Handler(tryCatch.exceptionName());
+
+                    handler = catchBlock;
+                    lower(tryCatch.tryBlock());
+                    handler = outer;
+
+                    int skip = emit(null);
+                    catchBlock.target = next();
+                    lower(tryCatch.catchBlock());
+                    patch(skip, new Jump(next()));
+                }
+                default -> emit(new Run(node, loop));
+            }
+        }
+
+        private void count(ASTNode init, ASTNode end, ASTNode body, boolean down) {
+            Loop outer = loop;
+            loop = new Loop();
+
+            int state = stateSize++;
+            int start = emit(null);
+
+            int top = next();
+            lower(body);
+            int step = emit(new CountNext(state, down, top));
+            patch(start, new CountStart(init, end, state, down, next()));
+
+            loop.continueTo = step;
+            loop.breakTo = next();
+            loop = outer;
+        }
+    }
+
+    /**
+     * Returns whether a statement yields, leaving out the functions it declares
+     */
+    static boolean containsYield(ASTNode node) {
+        return switch (node) {
+            case null -> false;
+            case BreakASTNode control -> control.getType() == Breakpoint.Type.YIELD;
+            case BodyASTNode body -> {
+                for (ASTNode statement : body.statements()) {
+                    if (containsYield(statement)) {
+                        yield true;
+                    }
+                }
+                yield false;
+            }
+            case ConditionalASTNode conditional -> containsYield(conditional.thenBranch()) || containsYield(conditional.elseBranch());
+            case BranchASTNode branch -> {
+                for (Pair<ASTNode, ASTNode> pair : branch.branches()) {
+                    if (containsYield(pair.second)) {
+                        yield true;
+                    }
+                }
+                yield false;
+            }
+            case OptimizedLoopASTNode loop -> containsYield(loop.original());
+            case WhileASTNode loop -> containsYield(loop.body());
+            case ForToASTNode loop -> containsYield(loop.body());
+            case ForDowntoASTNode loop -> containsYield(loop.body());
+            case ForInASTNode loop -> containsYield(loop.body());
+            case TryCatchASTNode tryCatch -> containsYield(tryCatch.tryBlock()) || containsYield(tryCatch.catchBlock());
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package com.softlocked.orbit.interpreter.memory;
+
+import com.softlocked.orbit.core.datatypes.functions.IFunction;
+
+/**
+ * The functions call sites linked to in one context, keyed by the identity of the call site. A context only holds
+ * the sites it ran, however many programs were parsed before it.
+ * <p>
+ * Lookups take no lock: entries are immutable, and a full table is replaced instead of grown in place. A lookup
+ * racing with a link may miss the new entry, in which case the call site links again.
+ */
+final class CallTargets {
+    private record Entry(Object site, IFunction function) {
+    }
+
+    private static final int INITIAL_SIZE = 64;
+
+    private volatile Entry[] table = new Entry[INITIAL_SIZE];
+    private int size;
+
+    IFunction get(Object site) {
+        Entry[] table = this.table;
+        int mask = table.length - 1;
+
+        for (int i = System.identityHashCode(site) & mask; ; i = (i + 1) & mask) {
+            Entry entry = table[i];
+
+            if (entry == null) {
+                return null;
+            }
+            if (entry.site == site) {
+                return entry.function;
+            }
+        }
+    }
+
+    synchronized void put(Object site, IFunction function) {
+        // Kept at most half full, so that misses end quickly
+        if ((size + 1) * 2 > table.length) {
+            Entry[] grown = new Entry[table.length * 2];
+            for (Entry entry : table) {
+                if (entry != null) {
+                    insert(grown, entry);
+                }
+            }
+            table = grown;
+        }
+
+        if (insert(table, new Entry(site, function))) {
+            size++;
+        }
+    }
+
+    /**
+     * Forgets every link, for when a function is replaced
+     */
+    synchronized void clear() {
+        table = new Entry[INITIAL_SIZE];
+        size = 0;
+    }
+
+    // Returns whether the site is new to the table
+    private static boolean insert(Entry[] table, Entry entry) {
+        int mask = table.length - 1;
+
+        for (int i = System.identityHashCode(entry.site) & mask; ; i = (i + 1) & mask) {
+            Entry current = table[i];
+
+            if (current == null || current.site == entry.site) {
+                table[i] = entry;
+                return current == null;
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.softlocked.orbit.interpreter.memory;
 
 import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.ast.SourceMap;
 import com.softlocked.orbit.core.datatypes.Variable;
 import com.softlocked.orbit.core.datatypes.classes.OrbitClass;
 import com.softlocked.orbit.core.datatypes.classes.OrbitObject;
@@ -15,17 +16,19 @@ import com.softlocked.orbit.interpreter.function.ClassConstructor;
 import com.softlocked.orbit.interpreter.function.Consumer;
 import com.softlocked.orbit.interpreter.function.NativeFunction;
 import com.softlocked.orbit.interpreter.function.coroutine.Coroutine;
+import com.softlocked.orbit.interpreter.function.coroutine.Scheduler;
 import com.softlocked.orbit.java.OrbitJavaLibrary;
-import com.softlocked.orbit.lexer.Lexer;
 import com.softlocked.orbit.libraries.*;
 import com.softlocked.orbit.libraries.Math.Math_Library;
+import com.softlocked.orbit.memory.FrameStack;
 import com.softlocked.orbit.memory.ILocalContext;
 import com.softlocked.orbit.memory.LocalContext;
 import com.softlocked.orbit.opm.ast.pkg.ImportFileASTNode;
 import com.softlocked.orbit.opm.ast.pkg.ImportModuleASTNode;
-import com.softlocked.orbit.parser.Parser;
+import com.softlocked.orbit.parser.IncrementalParser;
+import com.softlocked.orbit.parser.cache.AstCache;
 import com.softlocked.orbit.utils.Pair;
-import com.softlocked.orbit.utils.list.CacheList;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 import java.io.File;
@@ -33,6 +36,10 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The global context used to store global variables, functions, and classes.
@@ -40,13 +47,14 @@ import java.util.*;
  * @see LocalContext
  */
 public class GlobalContext extends LocalContext {
-    private final Map<Pair<String, Integer>, IFunction> functions = new TreeMap<>();
-    private final Map<Pair<String, Integer>, Class<? extends BFunction>> bakedFunctions = new TreeMap<>();
+    // Shared with the isolated contexts of coroutines running on other threads, see IsolatedContext
+    private final Map<Pair<String, Integer>, IFunction> functions;
+    private final Map<Pair<String, Integer>, Class<? extends BFunction>> bakedFunctions;
 
     protected Int2ObjectOpenHashMap<IFunction> easyAccessFunctions = new Int2ObjectOpenHashMap<>();
 
     private static final HashMap<String, Class<?>> primitives = new HashMap<>();
-    private final HashMap<String, OrbitClass> classes = new HashMap<>();
+    private final Map<String, OrbitClass> classes;
 
     private final HashSet<String> importedModules = new HashSet<>();
     private final HashSet<String> importedFiles = new HashSet<>();
@@ -55,6 +63,9 @@ public class GlobalContext extends LocalContext {
 
     private boolean forceExit = false;
 
+    // Whether parsed programs are compiled to bytecode
+    private boolean compilationEnabled = false;
+
     public boolean isMarkedForDeletion() {
         return false;
     }
@@ -63,30 +74,103 @@ public class GlobalContext extends LocalContext {
         return forceExit;
     }
 
-    private final HashMap<IFunction, CacheList<LocalContext>> functionContexts = new HashMap<>();
+    public boolean isCompilationEnabled() {
+        return compilationEnabled;
+    }
+
+    /**
+     * Enables or disables compiling programs parsed in this context to JVM bytecode.
+     * @see com.softlocked.orbit.compiler.BytecodeCompiler
+     */
+    public void setCompilationEnabled(boolean compilationEnabled) {
+        this.compilationEnabled = compilationEnabled;
+    }
+
+    // Where parsed files are kept between runs, or null
+    private AstCache astCache;
+
+    public AstCache getAstCache() {
+        return astCache;
+    }
+
+    /**
+     * Sets where the trees of parsed files are kept, so that files which didn't change are not parsed again the next
+     * time they are imported. Null disables it.
+     */
+    public void setAstCache(AstCache astCache) {
+        this.astCache = astCache;
+    }
 
-    public LocalContext getOrCreateFunctionContext(IFunction function) {
-        CacheList<LocalContext> contexts = functionContexts.get(function);
+    // Runs the coroutines spawned in this context, created on the first spawn
+    private Scheduler scheduler;
 
-        if(contexts == null) {
-            contexts = new CacheList<>();
-            functionContexts.put(function, contexts);
+    public synchronized Scheduler getScheduler() {
+        if (scheduler == null) {
+            scheduler = new Scheduler(this);
         }
+        return scheduler;
+    }
+
+    // Functions linked by call sites in this context
+    private final CallTargets callTargets = new CallTargets();
+
+    // Number of functions replaced so far, shared with the contexts sharing the functions, and its value when the
+    // links of this context were last dropped
+    private final AtomicInteger replacements;
+    private int linkedReplacements;
+
+    /**
+     * Returns the function a call site linked to in this context, or null if it didn't call anything yet. A call site
+     * remembers the function it calls separately in every context, so that a parsed program can run in several
+     * contexts at once.
+     * @param site The call site, compared by identity
+     */
+    public IFunction getCallTarget(Object site) {
+        int replacements = this.replacements.get();
+
+        if (replacements != linkedReplacements) {
+            callTargets.clear();
+            linkedReplacements = replacements;
+        }
+        return callTargets.get(site);
+    }
+
+    public void setCallTarget(Object site, IFunction function) {
+        callTargets.put(site, function);
+    }
+
+    // Code parsed in this context, used to find where a node came from
+    private final List<SourceMap> sources;
 
-        if(contexts.realSize() > contexts.size()) {
-            return contexts.getNext();
+    /**
+     * Registers the positions of a parsed piece of code
+     * @see #getLocation(ASTNode)
+     */
+    public void addSource(SourceMap source) {
+        if (!sources.contains(source)) {
+            sources.add(source);
         }
-        LocalContext context = new LocalContext(this);
-        contexts.addNext(context);
-        return context;
     }
 
-    public void freeFunctionContext(IFunction function) {
-        CacheList<LocalContext> contexts = functionContexts.get(function);
+    public void removeSource(SourceMap source) {
+        sources.remove(source);
+    }
 
-        if(contexts != null) {
-            contexts.move(-1);
+    /**
+     * Returns where a node was parsed from, as <code>name:line:column</code>, or null if it isn't known
+     */
+    public String getLocation(ASTNode node) {
+        if (node == null) {
+            return null;
         }
+
+        for (SourceMap source : sources) {
+            String location = source.describe(node);
+            if (location != null) {
+                return location;
+            }
+        }
+        return null;
     }
 
     static {
@@ -169,7 +253,12 @@ public class GlobalContext extends LocalContext {
     public void addFunction(IFunction function) {
         function.setID(functionIDCounter++);
 
-        functions.put(new Pair<>(function.getName(), function.getParameterCount()), function);
+        IFunction previous = functions.put(new Pair<>(function.getName(), function.getParameterCount()), function);
+
+        // Call sites linked to the function it replaces have to look it up again, in every context sharing it
+        if (previous != null && previous != function) {
+            replacements.incrementAndGet();
+        }
 
         if(function instanceof NativeFunction nativeFunction) {
             Class<? extends BFunction> bakedFunction = nativeFunction.getBakedFunction();
@@ -240,6 +329,12 @@ public class GlobalContext extends LocalContext {
 
     private String projectPath;
     public GlobalContext() {
+        functions = new ConcurrentSkipListMap<>();
+        bakedFunctions = new ConcurrentSkipListMap<>();
+        classes = new ConcurrentHashMap<>();
+        sources = new CopyOnWriteArrayList<>();
+        replacements = new AtomicInteger();
+
         try {
             addClass(new OrbitClass(
                     "exception", // name
@@ -268,6 +363,28 @@ public class GlobalContext extends LocalContext {
         }
     }
 
+    /**
+     * Creates a context which shares the functions, classes and sources of another one, and starts with copies of
+     * its global variables
+     * @see IsolatedContext
+     */
+    protected GlobalContext(GlobalContext origin) {
+        functions = origin.functions;
+        bakedFunctions = origin.bakedFunctions;
+        classes = origin.classes;
+        sources = origin.sources;
+        replacements = origin.replacements;
+        linkedReplacements = replacements.get();
+
+        compilationEnabled = origin.compilationEnabled;
+        astCache = origin.astCache;
+        projectPath = origin.projectPath;
+
+        for (Int2ObjectMap.Entry<Variable> entry : origin.variables.int2ObjectEntrySet()) {
+            variables.put(entry.getIntKey(), entry.getValue().copy());
+        }
+    }
+
     public void setProjectPath(String path) {
         this.projectPath = path;
     }
@@ -276,13 +393,20 @@ public class GlobalContext extends LocalContext {
         return projectPath;
     }
 
+    // Parsers of the imported files, so that importing a file again only parses what changed
+    private final HashMap<String, IncrementalParser> parsers = new HashMap<>();
+
+    /**
+     * Imports a file of the project. When the file was imported before, the declarations which didn't change are
+     * not parsed again.
+     * @see IncrementalParser
+     */
     public void importFile(String path) throws IOException, ParsingException, InterruptedException {
         byte[] file = Files.readAllBytes(Paths.get(projectPath + File.separator + path));
         String code = new String(file);
 
-        List<String> tokens = new Lexer(code).tokenize();
-
-        ASTNode ast = Parser.parse(tokens, this);
+        IncrementalParser parser = parsers.computeIfAbsent(path, name -> new IncrementalParser(name, this));
+        ASTNode ast = parser.parse(code);
 
         importModule(ast, new File(path).getParent());
     }
@@ -0,0 +1,53 @@
+package com.softlocked.orbit.interpreter.memory;
+
+/**
+ * The global context of a coroutine running on a thread of its own, see
+ * {@link com.softlocked.orbit.interpreter.function.coroutine.Coroutine#startAsync()} and
+ * {@link com.softlocked.orbit.interpreter.function.coroutine.Scheduler}.
+ * <p>
+ * It starts with copies of the global variables of the context the coroutine was created in, so that the coroutine
+ * and the code around it never write the same variable, and shares its functions and classes, which can be looked up
+ * from any thread. Values are not copied: lists, maps and objects reachable from both are still the same.
+ * <p>
+ * Its checkpoints follow the context it was created from, and give the thread up to other coroutines once it ran for
+ * a time slice, so a coroutine which never yields still doesn't keep a core to itself.
+ */
+public final class IsolatedContext extends GlobalContext {
+    private static final long SLICE_NANOS = 1_000_000;
+
+    // Number of checkpoints between two looks at the clock
+    private static final int CHECKS = 1024;
+
+    private final GlobalContext origin;
+
+    // Only touched by the thread of the coroutine
+    private int checks;
+    private long sliceStart = System.nanoTime();
+
+    public IsolatedContext(GlobalContext origin) {
+        super(origin);
+        this.origin = origin;
+    }
+
+    @Override
+    public boolean isMarkedForDeletion() {
+        if (origin.isMarkedForDeletion()) {
+            return true;
+        }
+
+        if (++checks == CHECKS) {
+            checks = 0;
+
+            if (System.nanoTime() - sliceStart > SLICE_NANOS) {
+                Thread.yield();
+                sliceStart = System.nanoTime();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isForcedExit() {
+        return origin.isForcedExit();
+    }
+}
@@ -1,445 +1,357 @@
 package com.softlocked.orbit.lexer;
 
-import com.softlocked.orbit.core.ast.operation.OperationType;
+import com.softlocked.orbit.core.ast.SourceMap;
 import com.softlocked.orbit.core.exception.ParsingException;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 /**
  * The Lexer class is used to tokenize the input string into a list of tokens.
+ * <p>
+ * The input is scanned once, from left to right. Operators made of several characters ('==', '->', '**', ...),
+ * decimal, hex and binary numbers are read as a whole, and comments are skipped as soon as they are found.
+ * <code>#define</code>s are collected while scanning and expanded at the end, everywhere in the input.
  */
 public class Lexer {
     private String input;
     private int p = 0;
-    private char c;
 
-    private final List<String> tokens = new ArrayList<>();
+    private final List<Token> tokens = new ArrayList<>();
+    private final HashMap<String, List<Token>> defines = new HashMap<>();
+
+    // Identifiers seen so far, see #intern
+    private String[] names = new String[256];
+    private int nameCount = 0;
+
+    // Tokens of a single ASCII character
+    private static final String[] CHARACTERS = new String[128];
+
+    static {
+        for (char c = 0; c < CHARACTERS.length; c++) {
+            CHARACTERS[c] = String.valueOf(c).intern();
+        }
+    }
 
     public Lexer(String input) {
         this.input = input;
-        if(!input.isEmpty())
-            c = input.charAt(p);
     }
 
     public void reset(String input) {
         this.input = input;
 
         p = 0;
-        if(!input.isEmpty())
-            c = input.charAt(p);
-
         tokens.clear();
+        defines.clear();
     }
 
+    /**
+     * Tokenizes the input
+     * @return The text of every token
+     * @see #scan()
+     */
     public List<String> tokenize() throws ParsingException {
-        try {
-            if (input.isEmpty()) {
-                return tokens;
-            }
+        List<Token> tokens = scan();
+        List<String> texts = new ArrayList<>(tokens.size());
 
-            reset(input);
+        for (Token token : tokens) {
+            texts.add(token.text());
+        }
 
-            // 1) Break the input into tokens
-            while (p < input.length()) {
-                String token = nextToken();
+        return texts;
+    }
 
-                if (!token.isEmpty())
-                    tokens.add(token);
-            }
+    /**
+     * Tokenizes the input into typed tokens
+     */
+    public List<Token> scan() throws ParsingException {
+        reset(input);
 
-            // Check whether the last character is \0, and remove it if it is
-            if (tokens.getLast().equals("\0")) {
-                tokens.removeLast();
-            }
+        scan(input.length(), tokens);
 
-            // 2) Editing the list of tokens for special interpretations (Such as comments, fields like '!=', etc.)
-            for (int i = 0; i < tokens.size(); i++) {
-                String token = tokens.get(i);
-
-                switch (token) {
-                    // 2.1) ++, --, +=, -=, *=, /=, ==, !=, <=, >=, ===
-                    case "+" -> {
-                        if (i + 1 < tokens.size()) {
-                            String nextToken = tokens.get(i + 1);
-
-                            if (nextToken.equals("=")) {
-                                tokens.set(i, token + "=");
-                                tokens.remove(i + 1);
-                            } else if (nextToken.equals(token)) {
-                                tokens.set(i, token + token);
-                                tokens.remove(i + 1);
-                            }
-                        }
-                    }
-                    case "*", "%", "/", "!", "=", ">", "<" -> {
-                        if (i + 1 < tokens.size()) {
-                            String nextToken = tokens.get(i + 1);
-
-                            if (nextToken.equals("=")) {
-                                tokens.set(i, token + "=");
-                                tokens.remove(i + 1);
-
-                                // if the current one is == and next one is =, then combine them
-                                if (tokens.get(i).equals("==") && tokens.get(i + 1).equals("=")) {
-                                    tokens.set(i, "===");
-                                    tokens.remove(i + 1);
-                                }
-                            }
-
-                            if (token.equals("*") || token.equals(">") || token.equals("<")) {
-                                // Combine all next tokens that are the same as the current token
-                                while (nextToken.equals(token.charAt(0) + "") && i + 1 < tokens.size()) {
-                                    tokens.set(i, token + token);
-                                    tokens.remove(i + 1);
-                                    nextToken = tokens.get(i + 1);
-                                }
-                            }
-                        }
-                    }
-                    // 2.2) ||, &&, :
-                    case "|", "&" -> {
-                        if (i + 1 < tokens.size()) {
-                            String nextToken = tokens.get(i + 1);
-
-                            if (nextToken.equals(token)) {
-                                tokens.set(i, token + token);
-                                tokens.remove(i + 1);
-                            }
-                        }
-                    }
-                }
+        if (defines.isEmpty()) {
+            return new ArrayList<>(tokens);
+        }
 
-                // 3) numbers (ints are supported by default, but combine numbers if they are separated by a '.' and additionally if there's "0x" at the start, it's a hex number)
-                if (token.matches("[0-9]+")) {
-                    if (i + 1 < tokens.size()) {
-                        String nextToken = tokens.get(i + 1);
-
-                        if (nextToken.equals(".")) {
-                            if (i + 2 < tokens.size()) {
-                                String nextNextToken = tokens.get(i + 2);
-
-                                if (nextNextToken.matches("[0-9]+")) {
-                                    tokens.set(i, token + "." + nextNextToken);
-                                    tokens.remove(i + 1);
-                                    tokens.remove(i + 1);
-                                }
-                            }
-                        } else if (nextToken.startsWith("x")) {
-                            if (nextToken.matches("x[0-9a-fA-F]+")) {
-                                tokens.set(i, token + nextToken);
-                                tokens.remove(i + 1);
-                            }
-                        } else if (nextToken.startsWith("b")) {
-                            if (nextToken.matches("b[01]+")) {
-                                tokens.set(i, token + nextToken);
-                                tokens.remove(i + 1);
-                            }
-                        }
-                    }
-                }
-            }
+        List<Token> expanded = new ArrayList<>(tokens.size());
+        expand(tokens, expanded, new HashSet<>());
 
-            // Now check for --
-            for (int i = 0; i < tokens.size(); i++) {
-                String token = tokens.get(i);
+        return expanded;
+    }
 
-                // Form --
-                if (token.equals("-")) {
-                    if (i + 1 < tokens.size()) {
-                        String nextToken = tokens.get(i + 1);
+    /**
+     * Returns whether the last scanned input had <code>#define</code>s
+     */
+    public boolean hasDefines() {
+        return !defines.isEmpty();
+    }
 
-                        if (nextToken.equals("-") || nextToken.equals("=") || nextToken.equals(">")) {
-                            tokens.set(i, "-" + nextToken);
-                            tokens.remove(i + 1);
-                        }
-                    }
-                }
+    /**
+     * Scans tokens until the given offset
+     */
+    private void scan(int end, List<Token> out) throws ParsingException {
+        while (p < end) {
+            char c = input.charAt(p);
+            int start = p;
 
-                switch (token) {
-                    case "#" -> {
-                        if (i + 1 < tokens.size()) {
-                            String nextToken = tokens.get(i + 1);
-
-                            if (nextToken.equals("=")) {
-                                // Search for the end of the block comment (token 1 = '=', token 2 = '#')
-                                int j = i + 2;
-                                while (j < tokens.size()) {
-                                    if (tokens.get(j).equals("=") && tokens.get(j + 1).equals("#")) {
-                                        break;
-                                    }
-
-                                    j++;
-                                }
-
-                                // Error handling
-                                if (j == tokens.size()) {
-                                    int line = 1;
-                                    for (int k = 0; k < i; k++) {
-                                        if (tokens.get(k).equals("\r") || tokens.get(k).equals("\n")) {
-                                            line++;
-                                        }
-                                    }
-
-                                    throw new ParsingException("Block comment not closed");
-                                }
-
-                                // Remove the tokens that are inside the block comment, including the start and end tokens
-                                tokens.subList(i, j + 2).clear();
-                            } else if (nextToken.equals("define")) {
-                                // preprocess
-                                // Get the next two tokens after the define
-                                String defineName = tokens.get(i + 2);
-
-                                int j = i + 1;
-                                while (j < tokens.size()) {
-                                    if (tokens.get(j).equals("\n") || tokens.get(j).equals("\r")) {
-                                        break;
-                                    }
-
-                                    j++;
-                                }
-
-                                List<String> defineValueTokens = new ArrayList<>(tokens.subList(i + 3, j));
-
-                                // Remove the tokens that are inside the define, including the start token
-                                tokens.subList(i, j + 1).clear();
-
-                                List<String> newTokens = new ArrayList<>();
-
-                                for (String token1 : tokens) {
-                                    if (token1.equals(defineName)) {
-                                        newTokens.addAll(defineValueTokens);
-                                    } else {
-                                        newTokens.add(token1);
-                                    }
-                                }
-
-                                tokens.clear();
-                                tokens.addAll(newTokens);
-
-                                i = -1;
-                            } else {
-                                // Look for '\n', and if found stop there
-                                int j = i + 1;
-                                while (j < tokens.size()) {
-                                    if (tokens.get(j).equals("\n") || tokens.get(j).equals("\r")) {
-                                        break;
-                                    }
-
-                                    j++;
-                                }
-
-                                // Remove the tokens that are inside the comment, including the start token
-                                tokens.subList(i, j).clear();
-                            }
-                        }
-                    }
-                    case "/" -> {
-                        if (i + 1 < tokens.size()) {
-                            String nextToken = tokens.get(i + 1);
-
-                            if (nextToken.equals("/")) {
-                                // Line comment
-                                // Look for '\n', and if found stop there
-                                int j = i + 1;
-                                while (j < tokens.size()) {
-                                    if (tokens.get(j).equals("\n") || tokens.get(j).equals("\r")) {
-                                        break;
-                                    }
-
-                                    j++;
-                                }
-
-                                // Remove the tokens that are inside the comment, including the start token
-                                tokens.subList(i, j).clear();
-                            } else if (nextToken.equals("*")) {
-                                // Block comment
-                                // Search for the end of the block comment (token 1 = '*', token 2 = '/')
-                                int j = i + 2;
-                                while (j < tokens.size()) {
-                                    if (tokens.get(j).equals("*") && tokens.get(j + 1).equals("/")) {
-                                        break;
-                                    }
-
-                                    j++;
-                                }
-
-                                // Error handling
-                                if (j == tokens.size()) {
-                                    throw new ParsingException("Block comment not closed");
-                                }
-
-                                // Remove the tokens that are inside the block comment, including the start and end tokens
-                                tokens.subList(i, j + 2).clear();
-                            }
-                        }
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\0') {
+                p++;
+            }
+            else if (Character.isAlphabetic(c) || c == '_' || c == '$') {
+                p = identifierEnd(p);
+                out.add(identifier(start, p));
+            }
+            else if (c == '"' || c == '\'') {
+                out.add(quoted(c));
+            }
+            else if (Character.isDigit(c)) {
+                out.add(number());
+            }
+            else if (c == '#') {
+                hash(end);
+            }
+            else if (c == '/' && (at(p + 1) == '/' || at(p + 1) == '*')) {
+                if (at(p + 1) == '/') {
+                    p = lineEnd(p);
+                } else {
+                    int close = input.indexOf("*/", p + 2);
+
+                    if (close == -1) {
+                        throw error("Block comment not closed", p);
                     }
+                    p = close + 2;
                 }
             }
+            else {
+                String operator = operator(c);
+                p += operator.length();
+                out.add(new Token(Token.Kind.OPERATOR, operator, start, null));
+            }
+        }
+    }
 
-            // One final pass, combine = with > to make =>, - with > to make -> and set 'or' to '||' and 'and' to '&&', 'not' to '!' xor to '^' and 'is' to '==='
-            for (int i = 0; i < tokens.size(); i++) {
-                String token = tokens.get(i);
-
-                switch (token) {
-                    case "=" -> {
-                        if (i + 1 < tokens.size()) {
-                            String nextToken = tokens.get(i + 1);
+    private ParsingException error(String message, int offset) {
+        SourceMap source = new SourceMap("", input);
+        return new ParsingException(message + " at line " + source.getLine(offset) + ", column " + source.getColumn(offset));
+    }
 
-                            if (nextToken.equals(">")) {
-                                tokens.set(i, "=>");
-                                tokens.remove(i + 1);
-                            }
-                        }
-                    }
-                    case "-" -> {
-                        if (i + 1 < tokens.size()) {
-                            String nextToken = tokens.get(i + 1);
-
-                            if (nextToken.equals(">")) {
-                                tokens.set(i, "->");
-                                tokens.remove(i + 1);
-                            }
-                        }
-                    }
-                    case "<" -> {
-                        if (i + 1 < tokens.size()) {
-                            String nextToken = tokens.get(i + 1);
-
-                            if (nextToken.equals("-")) {
-                                tokens.set(i, "<-");
-                                tokens.remove(i + 1);
-                            }
-                        }
-                    }
-                    case "or" -> tokens.set(i, "||");
-                    case "and" -> tokens.set(i, "&&");
-                    case "not" -> tokens.set(i, "!");
-                    case "xor" -> tokens.set(i, "^");
-                    case "is" -> tokens.set(i, "===");
-                }
-            }
+    private char at(int i) {
+        return i < input.length() ? input.charAt(i) : '\0';
+    }
 
-            // Remove all the empty tokens, or newlines
-            tokens.removeIf(token -> token.isEmpty() || token.equals("\r") || token.equals("\n"));
+    private int lineEnd(int from) {
+        int end = input.indexOf('\n', from);
+        return end == -1 ? input.length() : end;
+    }
 
-            return tokens;
-        } catch (Exception e) {
-            throw new ParsingException(e.getMessage());
-        }
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetter(c) || Character.isDigit(c) || c == '_' || c == '$';
     }
 
-    private void next() {
-        p++;
+    /**
+     * Returns where an identifier starting at the given offset ends. Identifiers can contain dots, as long as
+     * they are not followed by a digit (e.g. 'list.add').
+     */
+    private int identifierEnd(int i) {
+        do {
+            i++;
+        } while (isIdentifierPart(at(i)) || (at(i) == '.' && !Character.isDigit(at(i + 1))));
 
-        if (p >= input.length()) {
-            c = '\0';
-        } else {
-            c = input.charAt(p);
-        }
+        return i;
     }
 
-    private String nextToken() {
-        if (c == ' ' || c == '\t' || c == '\r') {
-            EMPTY();
+    private Token identifier(int start, int end) {
+        String name = intern(start, end);
 
-            return nextToken();
-        }
-        else if (Character.isAlphabetic(c) || c == '_' || c == '$') {
-            return IDENTIFIER();
-        }
-        else if (c == '"') {
-            return STRING();
-        }
-        else if (c == '\'') {
-            return CHAR();
+        String operator = switch (name) {
+            case "or" -> "||";
+            case "and" -> "&&";
+            case "not" -> "!";
+            case "xor" -> "^";
+            case "is" -> "===";
+            default -> null;
+        };
+
+        if (operator != null) {
+            return new Token(Token.Kind.OPERATOR, operator, start, null);
         }
-        else if (Character.isDigit(c)) {
-            return NUMBER();
+        return new Token(Token.Kind.IDENTIFIER, name, start, null);
+    }
+
+    /**
+     * Returns the interned text between two offsets of the input. The text is only copied the first time it is seen.
+     */
+    private String intern(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + input.charAt(i);
         }
-        else {
-            char current = c;
 
-            next();
+        int mask = names.length - 1;
+        int index = (hash ^ (hash >>> 16)) & mask;
+
+        while (true) {
+            String name = names[index];
+
+            if (name == null) {
+                name = input.substring(start, end).intern();
+                names[index] = name;
+
+                if (++nameCount * 2 > names.length) {
+                    growNames();
+                }
+                return name;
+            }
+
+            if (name.length() == end - start && input.regionMatches(start, name, 0, name.length())) {
+                return name;
+            }
 
-            return String.valueOf(current);
+            index = (index + 1) & mask;
         }
     }
 
-    /* Used for empty characters */
-    void EMPTY() {
-        while (c == ' ' || c == '\t' || c == '\r') {
-            next();
+    private void growNames() {
+        String[] old = names;
+        names = new String[old.length * 2];
+
+        int mask = names.length - 1;
+        for (String name : old) {
+            if (name != null) {
+                int hash = name.hashCode();
+                int index = (hash ^ (hash >>> 16)) & mask;
+
+                while (names[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                names[index] = name;
+            }
         }
     }
 
-    /* Used for strings (e.g. "Hello world!") */
-    String STRING() {
-        StringBuilder sb = new StringBuilder();
+    /* Used for strings (e.g. "Hello world!") and characters (e.g. 'a') */
+    private Token quoted(char quote) {
+        int start = p;
 
-        try {
-            do {
-                sb.append(c);
-                next();
-            } while (p < input.length() && (c != '"' || isEscaped()));
-            sb.append(c);
+        p++;
+        while (p < input.length()) {
+            char c = input.charAt(p);
 
-            next();
-        } catch (Exception ignored) {} // This is a really awful way to deal with this, but who cares?
+            if (c == '\\') {
+                p += 2;
+            } else {
+                p++;
 
-        return sb.toString();
+                if (c == quote) {
+                    Token.Kind kind = quote == '"' ? Token.Kind.STRING : Token.Kind.CHAR;
+                    return new Token(kind, input.substring(start, p), start, null);
+                }
+            }
+        }
+
+        // Not closed, the literal goes on until the end of the input
+        p = input.length();
+        Token.Kind kind = quote == '"' ? Token.Kind.STRING : Token.Kind.CHAR;
+        return new Token(kind, input.substring(start) + quote, start, null);
     }
 
-    private boolean isEscaped() {
-        int backslashCount = 0;
+    /* Used for numbers (e.g. 123, 1.5, 0xFF, 0b101) */
+    private Token number() {
+        int start = p;
+
+        do {
+            p++;
+        } while (Character.isDigit(at(p)));
+
+        char c = at(p);
+        if (c == '.' && Character.isDigit(at(p + 1))) {
+            p++;
+            do {
+                p++;
+            } while (Character.isDigit(at(p)));
+        } else if (c == 'x' || c == 'b') {
+            int end = identifierEnd(p);
+
+            boolean valid = end > p + 1;
+            for (int i = p + 1; i < end && valid; i++) {
+                char digit = input.charAt(i);
+                valid = c == 'x' ? Character.digit(digit, 16) != -1 : digit == '0' || digit == '1';
+            }
 
-        while (input.charAt(p - 1 - backslashCount) == '\\') {
-            backslashCount++;
+            if (valid) {
+                p = end;
+            }
         }
 
-        return backslashCount % 2 != 0;
+        String text = input.substring(start, p);
+        return new Token(Token.Kind.NUMBER, text, start, parseNumber(text));
     }
 
-    /* Used for characters (e.g. 'a') */
-    String CHAR() {
-        StringBuilder sb = new StringBuilder();
+    /* Used for comments (# ... and #= ... =#) and #define */
+    private void hash(int end) throws ParsingException {
+        int i = p + 1;
+        while (at(i) == ' ' || at(i) == '\t') {
+            i++;
+        }
 
-        try {
-            do {
-                sb.append(c);
-                next();
-            } while (p < input.length() && (c != '\'' || isEscaped()));
-            sb.append(c);
+        if (at(i) == '=') {
+            int close = input.indexOf("=#", i + 1);
 
-            next();
-        } catch (Exception ignored) {}
+            if (close == -1) {
+                throw error("Block comment not closed", p);
+            }
+            p = close + 2;
+        } else if (input.startsWith("define", i) && !isIdentifierPart(at(i + 6))) {
+            // #define NAME VALUE... replaces every NAME token with the tokens of the rest of the line
+            p = i + 6;
 
-        return sb.toString();
-    }
+            int lineEnd = Math.min(lineEnd(p), end);
 
-    /* Used for numbers (e.g. 123) */
-    String NUMBER() {
-        StringBuilder sb = new StringBuilder();
+            List<Token> line = new ArrayList<>();
+            scan(lineEnd, line);
 
-        // Read digits
-        do {
-            sb.append(c);
-            next();
-        } while (Character.isDigit(c));
+            if (!line.isEmpty()) {
+                defines.put(line.getFirst().text(), new ArrayList<>(line.subList(1, line.size())));
+            }
+        } else {
+            p = lineEnd(p);
+        }
+    }
 
-        return sb.toString();
+    private String operator(char c) {
+        char next = at(p + 1);
+
+        return switch (c) {
+            case '+' -> next == '=' ? "+=" : next == '+' ? "++" : "+";
+            case '-' -> next == '-' ? "--" : next == '=' ? "-=" : next == '>' ? "->" : "-";
+            case '*' -> next == '=' ? "*=" : next == '*' ? "**" : "*";
+            case '>' -> next == '=' ? ">=" : next == '>' ? ">>" : ">";
+            case '<' -> next == '=' ? "<=" : next == '<' ? "<<" : next == '-' ? "<-" : "<";
+            case '=' -> next == '=' ? (at(p + 2) == '=' ? "===" : "==") : next == '>' ? "=>" : "=";
+            case '!' -> next == '=' ? "!=" : "!";
+            case '%' -> next == '=' ? "%=" : "%";
+            case '/' -> next == '=' ? "/=" : "/";
+            case '|' -> next == '|' ? "||" : "|";
+            case '&' -> next == '&' ? "&&" : "&";
+            default -> c < CHARACTERS.length ? CHARACTERS[c] : String.valueOf(c);
+        };
     }
 
-    /* Used for identifiers (e.g. hello_world) */
-    String IDENTIFIER() {
-        StringBuilder sb = new StringBuilder();
-        do {
-            sb.append(c);
-            next();
-        } while (Character.isLetter(c)||Character.isDigit(c)||c=='_'||c=='$'||(c=='.' && (p+1>=input.length() || !Character.isDigit(input.charAt(p+1)))));
+    private void expand(List<Token> tokens, List<Token> out, HashSet<String> expanding) {
+        for (Token token : tokens) {
+            List<Token> value = defines.get(token.text());
+
+            // A define which refers to itself is only expanded once
+            if (value == null || !expanding.add(token.text())) {
+                out.add(token);
+                continue;
+            }
 
-        return sb.toString();
+            expand(value, out, expanding);
+            expanding.remove(token.text());
+        }
     }
 
     @Override
@@ -453,6 +365,79 @@ public class Lexer {
     }
 
     public static boolean isNumeric(String token) {
-        return token.matches("\\d+(\\.\\d+)?") || token.matches("0x[0-9a-fA-F]+") || token.matches("0b[01]+");
+        int length = token.length();
+
+        if (length > 2 && token.charAt(0) == '0' && (token.charAt(1) == 'x' || token.charAt(1) == 'b')) {
+            boolean hex = token.charAt(1) == 'x';
+
+            for (int i = 2; i < length; i++) {
+                char c = token.charAt(i);
+                if (hex ? Character.digit(c, 16) == -1 : c != '0' && c != '1') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int i = 0;
+        while (i < length && isAsciiDigit(token.charAt(i))) {
+            i++;
+        }
+        if (i == 0) {
+            return false;
+        }
+        if (i == length) {
+            return true;
+        }
+
+        if (token.charAt(i) != '.' || i + 1 == length) {
+            return false;
+        }
+        for (i++; i < length; i++) {
+            if (!isAsciiDigit(token.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Returns the value of a number literal: an int for hex and binary literals, otherwise the first of int, long,
+     * float and double which can hold it
+     */
+    public static Object parseNumber(String token) {
+        try {
+            if (token.startsWith("0x")) {
+                return Integer.parseInt(token.substring(2), 16);
+            } else if (token.startsWith("0b")) {
+                return Integer.parseInt(token.substring(2), 2);
+            }
+
+            boolean decimal = token.indexOf('.') != -1;
+
+            if (!decimal) {
+                // Up to 18 digits always fit in a long, so only longer literals can fail to parse
+                if (token.length() <= 18) {
+                    long value = Long.parseLong(token);
+
+                    if (value == (int) value) {
+                        return (int) value;
+                    }
+                    return value;
+                }
+                try {
+                    return Long.parseLong(token);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+
+            return Float.parseFloat(token);
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 }
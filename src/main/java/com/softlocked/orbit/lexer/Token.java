@@ -0,0 +1,25 @@
+package com.softlocked.orbit.lexer;
+
+/**
+ * A token produced by the {@link Lexer}
+ * @param kind The kind of the token
+ * @param text The text of the token. Identifiers and operators are interned, so they can be compared by reference.
+ *             String and character literals keep their quotes.
+ * @param offset The offset of the first character of the token in the source
+ * @param value The value of a number literal, or null for other tokens
+ */
+public record Token(Kind kind, String text, int offset, Object value) {
+    public enum Kind {
+        IDENTIFIER,
+        NUMBER,
+        STRING,
+        CHAR,
+        // Operators and punctuation, including the operators written as words ('and', 'or', 'not', 'xor', 'is')
+        OPERATOR
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -3,6 +3,7 @@ package com.softlocked.orbit.libraries;
 import com.softlocked.orbit.core.datatypes.Variable;
 import com.softlocked.orbit.interpreter.function.Consumer;
 import com.softlocked.orbit.interpreter.function.NativeFunction;
+import com.softlocked.orbit.interpreter.function.coroutine.Channel;
 import com.softlocked.orbit.interpreter.function.coroutine.Coroutine;
 import com.softlocked.orbit.interpreter.memory.GlobalContext;
 import com.softlocked.orbit.java.OrbitJavaLibrary;
@@ -10,6 +11,8 @@ import com.softlocked.orbit.memory.ILocalContext;
 import com.softlocked.orbit.memory.LocalContext;
 import com.softlocked.orbit.utils.list.CoroutineList;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Coroutine_Library implements OrbitJavaLibrary {
@@ -76,47 +79,186 @@ public class Coroutine_Library implements OrbitJavaLibrary {
             }
         });
 
-        // Async
-//        context.addFunction(new NativeFunction("coroutine.async", List.of(Variable.Type.COROUTINE), Variable.Type.ANY) {
-//            @Override
-//            public Object call(ILocalContext context, Object[] args) {
-//                Coroutine coroutine = (Coroutine) args[0];
-//
-//                coroutine.setAsync(true);
-//
-//                Thread thread = new Thread(() -> {
-//                    while (!coroutine.isFinished()) {
-//                        if (coroutine.getReturnValue() == null) {
-//                            coroutine.resume();
-//                        }
-//                    }
-//                });
-//
-//                thread.start();
-//
-//                return null;
-//            }
-//        });
-
-        // Await
+        // Runs the coroutine on a virtual thread, one value ahead of await
+        context.addFunction(new NativeFunction("coroutine.async", List.of(Variable.Type.COROUTINE), Variable.Type.COROUTINE) {
+            @Override
+            public Object call(ILocalContext context, Object[] args) {
+                Coroutine coroutine = (Coroutine) args[0];
+
+                coroutine.startAsync();
+
+                return coroutine;
+            }
+        });
+
+        // Parks until the next value of the coroutine is ready
         context.addFunction(new NativeFunction("coroutine.await", List.of(Variable.Type.COROUTINE), Variable.Type.ANY) {
+            @Override
+            public Object call(ILocalContext context, Object[] args) {
+                try {
+                    return ((Coroutine) args[0]).await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        });
+
+        // Scheduler
+        context.addFunction(new NativeFunction("coroutine.spawn", List.of(Variable.Type.COROUTINE), Variable.Type.COROUTINE) {
             @Override
             public Object call(ILocalContext context, Object[] args) {
                 Coroutine coroutine = (Coroutine) args[0];
 
-                while (coroutine.getReturnValue() == null) {
+                context.getRoot().getScheduler().spawn(coroutine);
+
+                return coroutine;
+            }
+        });
+
+        // Waits for every spawned coroutine to finish
+        context.addFunction(new NativeFunction("coroutine.run", 0, Variable.Type.VOID) {
+            @Override
+            public Object call(ILocalContext context, Object[] args) {
+                try {
+                    context.getRoot().getScheduler().join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        });
+
+        // Channels
+        context.addFunction(new NativeFunction("channel", 0, Variable.Type.ANY) {
+            @Override
+            public Object call(ILocalContext context, Object[] args) {
+                return new Channel(0);
+            }
+        });
+
+        context.addFunction(new NativeFunction("channel", List.of(Variable.Type.INT), Variable.Type.ANY) {
+            @Override
+            public Object call(ILocalContext context, Object[] args) {
+                return new Channel((int) args[0]);
+            }
+        });
+
+        context.addFunction(new NativeFunction("channel.send", List.of(Variable.Type.ANY, Variable.Type.ANY), Variable.Type.VOID) {
+            @Override
+            public Object call(ILocalContext context, Object[] args) {
+                try {
+                    channel(args[0]).send(args[1]);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        });
+
+        context.addFunction(new NativeFunction("channel.receive", List.of(Variable.Type.ANY), Variable.Type.ANY) {
+            @Override
+            public Object call(ILocalContext context, Object[] args) {
+                try {
+                    return channel(args[0]).receive();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        });
+
+        // Receives a batch of up to the given number of values, waiting for the first one only
+        context.addFunction(new NativeFunction("channel.receive", List.of(Variable.Type.ANY, Variable.Type.INT), Variable.Type.LIST) {
+            @Override
+            public Object call(ILocalContext context, Object[] args) {
+                try {
+                    return channel(args[0]).receive((int) args[1]);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return new ArrayList<>();
+                }
+            }
+        });
+
+        context.addFunction(new NativeFunction("channel.close", List.of(Variable.Type.ANY), Variable.Type.VOID) {
+            @Override
+            public Object call(ILocalContext context, Object[] args) {
+                channel(args[0]).close();
+                return null;
+            }
+        });
+
+        context.addFunction(new NativeFunction("channel.isClosed", List.of(Variable.Type.ANY), Variable.Type.BOOL) {
+            @Override
+            public Object call(ILocalContext context, Object[] args) {
+                return channel(args[0]).isClosed();
+            }
+        });
+
+        context.addFunction(new NativeFunction("channel.hasNext", List.of(Variable.Type.ANY), Variable.Type.BOOL) {
+            @Override
+            public Object call(ILocalContext context, Object[] args) {
+                try {
+                    return channel(args[0]).hasNext();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        });
+
+        // Receives from the first of a list of channels with a value, and returns [index, value]
+        context.addFunction(new NativeFunction("channel.select", List.of(Variable.Type.LIST), Variable.Type.LIST) {
+            @Override
+            public Object call(ILocalContext context, Object[] args) {
+                List<Channel> channels = new ArrayList<>();
+                for (Object channel : (List<?>) args[0]) {
+                    channels.add(channel(channel));
+                }
+
+                try {
+                    Channel.Selected selected = Channel.select(channels);
+                    return selected == null ? null : new ArrayList<>(Arrays.asList(selected.index(), selected.value()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        });
+
+        // Makes a coroutine async and sends every value it yields or returns to a channel, then closes the channel
+        context.addFunction(new NativeFunction("coroutine.pipe", List.of(Variable.Type.COROUTINE, Variable.Type.ANY), Variable.Type.ANY) {
+            @Override
+            public Object call(ILocalContext context, Object[] args) {
+                Coroutine coroutine = (Coroutine) args[0];
+                Channel channel = channel(args[1]);
+
+                coroutine.startAsync();
+
+                Thread.ofVirtual().name(coroutine + " -> " + channel).start(() -> {
                     try {
-                        Thread.sleep(1);
+                        // isFinished waits for the next value, and is only true once the body ended, so a null
+                        // yielded last is still sent
+                        while (!coroutine.isFinished()) {
+                            channel.send(coroutine.await());
+                        }
                     } catch (InterruptedException e) {
-                        e.printStackTrace();
+                        // The script is stopping
+                    } finally {
+                        channel.close();
                     }
-                }
+                });
 
-                Object value = coroutine.getReturnValue().get();
-                coroutine.resetReturnValue();
-
-                return value;
+                return channel;
             }
         });
     }
+
+    private static Channel channel(Object value) {
+        if (value instanceof Channel channel) {
+            return channel;
+        }
+        throw new RuntimeException("Expected a channel, got " + (value == null ? "null" : value.getClass().getSimpleName()));
+    }
 }
@@ -15,4 +15,9 @@ public class BFunction_Cos extends BFunction {
 
         return Math.cos(((Number)value).doubleValue());
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -11,4 +11,9 @@ public class BFunction_Max extends BFunction {
 
         return Math.max(((Number)value).doubleValue(), ((Number)value2).doubleValue());
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
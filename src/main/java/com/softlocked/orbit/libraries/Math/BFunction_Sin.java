@@ -15,4 +15,9 @@ public class BFunction_Sin extends BFunction {
 
         return Math.sin(((Number)value).doubleValue());
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
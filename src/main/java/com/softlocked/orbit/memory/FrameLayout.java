@@ -0,0 +1,25 @@
+package com.softlocked.orbit.memory;
+
+/**
+ * Describes the slots of a flat frame, as computed by the resolver.
+ * Slot <code>i</code> holds the local declared under <code>names[i]</code>.
+ * The name hashes are kept so that dynamic lookups (string templates, eval, lambdas) can still find resolved locals.
+ * @see com.softlocked.orbit.parser.Resolver
+ */
+public record FrameLayout(String[] names, int[] hashes) {
+    public FrameLayout(String[] names) {
+        this(names, hashes(names));
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    private static int[] hashes(String[] names) {
+        int[] hashes = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            hashes[i] = names[i].hashCode();
+        }
+        return hashes;
+    }
+}
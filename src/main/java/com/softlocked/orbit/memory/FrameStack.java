@@ -0,0 +1,84 @@
+package com.softlocked.orbit.memory;
+
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+
+import java.util.Arrays;
+
+/**
+ * The contexts used for function calls on one thread. Calls are nested, so frames are taken and given back in
+ * stack order: a recursive call gets the frame above the one of its caller, and a frame is cleared when it is given
+ * back, so that the next call starts clean. Slot arrays stay allocated and are reused by later calls.
+ * <p>
+ * There is one stack per thread, shared by every context the thread runs code of, so that a context is never kept
+ * alive by the threads it ran on. A frame belongs to the context it was made for, and is made again when a call of
+ * another context takes its place.
+ * @see #current()
+ */
+public class FrameStack {
+    private static final ThreadLocal<FrameStack> STACKS = ThreadLocal.withInitial(FrameStack::new);
+
+    private LocalContext[] frames = new LocalContext[16];
+    private int depth;
+
+    // The value of the return statement being completed on this thread, until the function it returns from takes it
+    private Object returnValue;
+
+    /**
+     * Returns the stack of reusable function call contexts of the current thread
+     */
+    public static FrameStack current() {
+        return STACKS.get();
+    }
+
+    /**
+     * Takes the next frame. It has to be given back with {@link #pop} when the call returns, also when it throws.
+     * @param root The context the call runs in
+     */
+    public LocalContext push(GlobalContext root) {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+        }
+
+        LocalContext frame = frames[depth];
+        if (frame == null || frame.getRoot() != root) {
+            frame = new LocalContext(root);
+            frames[depth] = frame;
+
+            // The frames above were made for another context too, which they shouldn't keep alive
+            for (int i = depth + 1; i < frames.length; i++) {
+                if (frames[i] != null && frames[i].getRoot() != root) {
+                    frames[i] = null;
+                }
+            }
+        }
+
+        depth++;
+        return frame;
+    }
+
+    public void pop(LocalContext frame) {
+        if (depth == 0 || frames[depth - 1] != frame) {
+            throw new IllegalStateException("Frames must be released in the order they were taken");
+        }
+
+        depth--;
+        frame.reset();
+    }
+
+    public void setReturnValue(Object value) {
+        returnValue = value;
+    }
+
+    /**
+     * Returns the value of the last return statement, and forgets it
+     */
+    public Object takeReturnValue() {
+        Object value = returnValue;
+        returnValue = null;
+        return value;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+}
@@ -20,6 +20,13 @@ public interface ILocalContext {
 
     Variable getVariable(int id);
 
+    /**
+     * Looks up a variable the same way as {@link #getVariable(int)}, leaving out the slots of this frame. The resolver
+     * uses it for the names it found no local for, since a slot with the same name belongs to a block which already
+     * ended.
+     */
+    Variable getOuterVariable(int id);
+
     Int2ObjectOpenHashMap<Variable> getVariables();
 
     void removeVariable(int id);
@@ -39,4 +46,21 @@ public interface ILocalContext {
     void addFunction(IFunction function);
 
     LocalContext getOrCreateChild();
+
+    /**
+     * Turns this context into a flat frame with the given slot layout. Every slot starts out empty.
+     * Block statements evaluated in a flat frame share it instead of creating child contexts.
+     * @param layout The layout computed by the resolver
+     */
+    void enterFrame(FrameLayout layout);
+
+    /**
+     * Returns the variable stored in the given slot of this frame
+     */
+    Variable getSlot(int slot);
+
+    /**
+     * Stores a variable in the given slot of this frame
+     */
+    void setSlot(int slot, Variable variable);
 }
@@ -1,11 +1,13 @@
 package com.softlocked.orbit.memory;
 
 import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.core.datatypes.classes.OrbitObject;
 import com.softlocked.orbit.core.datatypes.functions.IFunction;
 import com.softlocked.orbit.interpreter.memory.GlobalContext;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentSkipListMap;
@@ -22,6 +24,12 @@ public class LocalContext implements ILocalContext {
 
     protected Int2ObjectOpenHashMap<Variable> variables = new Int2ObjectOpenHashMap<>();
 
+    protected FrameLayout layout;
+    protected Variable[] slots;
+
+    // The object whose method runs in this context. Its fields are found after the locals.
+    protected OrbitObject receiver;
+
     public LocalContext(ILocalContext parent) {
         this.parent = parent;
         this.root = parent.getRoot();
@@ -49,11 +57,32 @@ public class LocalContext implements ILocalContext {
 
     @Override
     public Variable getVariable(int id) {
+        return lookup(id, true);
+    }
+
+    @Override
+    public Variable getOuterVariable(int id) {
+        return lookup(id, false);
+    }
+
+    private Variable lookup(int id, boolean searchSlots) {
         Variable variable = variables.get(id);
 
         if (variable != null) {
             return variable;
         } else {
+            if(searchSlots && layout != null) {
+                int slot = findSlot(id);
+                if(slot != -1) {
+                    return slots[slot];
+                }
+            }
+            if(receiver != null) {
+                int slot = receiver.getClazz().getFieldSlot(id);
+                if(slot != -1) {
+                    return receiver.getField(slot);
+                }
+            }
             if(parent != null) {
                 return parent.getVariable(id);
             }
@@ -67,6 +96,28 @@ public class LocalContext implements ILocalContext {
         variables.clear();
     }
 
+    /**
+     * Clears everything a call left in this context, including the variables of its child contexts,
+     * so that it can be reused for another call
+     * @see FrameStack
+     */
+    public void reset() {
+        if (!variables.isEmpty()) {
+            variables.clear();
+        }
+        if (layout != null) {
+            Arrays.fill(slots, 0, layout.size(), null);
+            layout = null;
+        }
+        receiver = null;
+
+        for (LocalContext context = child; context != null; context = context.child) {
+            if (!context.variables.isEmpty()) {
+                context.variables.clear();
+            }
+        }
+    }
+
     @Override
     public Int2ObjectOpenHashMap<Variable> getVariables() {
         return variables;
@@ -76,6 +127,14 @@ public class LocalContext implements ILocalContext {
     public void removeVariable(int id) {
         Variable variable = variables.remove(id);
 
+        if (variable == null && layout != null) {
+            int slot = findSlot(id);
+            if (slot != -1) {
+                slots[slot] = null;
+                return;
+            }
+        }
+
         if (variable == null && parent != null) {
             parent.removeVariable(id);
         }
@@ -116,9 +175,75 @@ public class LocalContext implements ILocalContext {
 
     @Override
     public LocalContext getOrCreateChild() {
+        // Flat frames hold the locals of nested blocks in their own slots
+        if (layout != null) {
+            return this;
+        }
         if (child == null) {
             child = new LocalContext(this);
         }
         return child;
     }
+
+    @Override
+    public void enterFrame(FrameLayout layout) {
+        this.layout = layout;
+
+        if (slots == null || slots.length < layout.size()) {
+            slots = new Variable[layout.size()];
+        } else {
+            Arrays.fill(slots, null);
+        }
+    }
+
+    /**
+     * Moves the locals of another context into this one, for carrying on its code under another root. Nested
+     * contexts are not moved, and are created again when needed.
+     */
+    public void takeLocals(LocalContext other) {
+        variables = other.variables;
+        layout = other.layout;
+        slots = other.slots;
+        receiver = other.receiver;
+
+        other.variables = new Int2ObjectOpenHashMap<>();
+        other.layout = null;
+        other.slots = null;
+        other.receiver = null;
+    }
+
+    public OrbitObject getReceiver() {
+        return receiver;
+    }
+
+    /**
+     * Makes the fields of an object visible in this context, for running one of its methods
+     * @param receiver The object, or null once the method returned
+     */
+    public void setReceiver(OrbitObject receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public Variable getSlot(int slot) {
+        return slots[slot];
+    }
+
+    @Override
+    public void setSlot(int slot, Variable variable) {
+        slots[slot] = variable;
+    }
+
+    /**
+     * Finds the innermost occupied slot declared under the given name hash
+     */
+    private int findSlot(int id) {
+        int[] hashes = layout.hashes();
+        for (int i = hashes.length - 1; i >= 0; i--) {
+            if (hashes[i] == id && slots[i] != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
 }
@@ -1,7 +1,9 @@
 package com.softlocked.orbit.opm.project;
 
 import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.ast.SourceMap;
 import com.softlocked.orbit.core.exception.ParsingException;
+import com.softlocked.orbit.core.exception.SourceException;
 import com.softlocked.orbit.interpreter.ast.operation.OperationASTNode;
 import com.softlocked.orbit.interpreter.ast.value.ValueASTNode;
 import com.softlocked.orbit.interpreter.ast.value.VariableASTNode;
@@ -9,6 +11,7 @@ import com.softlocked.orbit.interpreter.ast.variable.FunctionCallASTNode;
 import com.softlocked.orbit.interpreter.memory.GlobalContext;
 import com.softlocked.orbit.lexer.Lexer;
 import com.softlocked.orbit.parser.Parser;
+import com.softlocked.orbit.parser.cache.AstCache;
 
 import java.io.File;
 import java.net.URISyntaxException;
@@ -38,6 +41,9 @@ public class OrbitREPL {
                 GlobalContext context = new GlobalContext();
 
                 context.setProjectPath(jarDir.getAbsolutePath());
+                if(Arrays.stream(args).noneMatch(arg -> arg.equalsIgnoreCase("--no-cache"))) {
+                    context.setAstCache(AstCache.getDefault());
+                }
                 if(fileIndex != -1 && fileIndex + 1 < args.length) {
                     String filePath = args[fileIndex + 1];
                     // check if the path is relative or absolute
@@ -47,9 +53,14 @@ public class OrbitREPL {
                     File file = new File(filePath);
                     if(file.exists() && file.isFile()) {
                         try {
-                            List<String> tokens = new Lexer(java.nio.file.Files.readString(file.toPath())).tokenize();
-                            ASTNode ast = Parser.parse(tokens, context);
+                            SourceMap source = new SourceMap(file.getName(), java.nio.file.Files.readString(file.toPath()));
+                            ASTNode ast = Parser.parse(source, context);
                             ast.evaluate(context);
+                        } catch (SourceException e) {
+                            System.out.println("Error executing file: " + e.getMessage() + " (at " + e.getLocation() + ")");
+                            if(debug) {
+                                e.printStackTrace();
+                            }
                         } catch (Exception e) {
                             System.out.println("Error executing file: " + e.getMessage());
                             if(debug) {
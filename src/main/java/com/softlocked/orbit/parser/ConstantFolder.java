@@ -0,0 +1,177 @@
+package com.softlocked.orbit.parser;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.interpreter.ast.generic.BodyASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.WhileASTNode;
+import com.softlocked.orbit.interpreter.ast.object.ClassDefinitionASTNode;
+import com.softlocked.orbit.interpreter.ast.object.ConstObjASTNode;
+import com.softlocked.orbit.interpreter.ast.object.DecObjASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.OperationASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.TernaryASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.BranchASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.ConditionalASTNode;
+import com.softlocked.orbit.interpreter.ast.value.ValueASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.ConstVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.DecVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.DeleteVarASTNode;
+import com.softlocked.orbit.interpreter.function.OrbitFunction;
+import com.softlocked.orbit.utils.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Folds constant expressions and removes branches which can never run. The {@link Resolver} calls it on every node it
+ * rebuilds, once the children of the node are resolved (and folded), so constants fold from the leaves up.
+ * <p>
+ * An operation is folded when its operands are literals of immutable types (numbers, strings, booleans and chars),
+ * e.g. <code>60 * 60 * 24</code>, <code>-1</code> (parsed as <code>0 - 1</code>) or the values <code>#define</code>
+ * puts in the code. It is evaluated once, the same way it would be at runtime, and replaced with its result.
+ * Operations which fail, e.g. a division by zero, are left alone so that they fail when they run.
+ * <p>
+ * Conditions which are literals choose their branch once: the other branches are removed, and code which can never
+ * run is replaced with an empty body.
+ */
+final class ConstantFolder {
+    private ConstantFolder() {
+    }
+
+    static ASTNode operation(OperationASTNode operation) {
+        if (!isConstant(operation.left())) {
+            return operation;
+        }
+
+        switch (operation.type()) {
+            // Cloning makes a new object every time
+            case CLONE -> {
+                return operation;
+            }
+            case NOT, BITWISE_NOT -> {
+            }
+            default -> {
+                if (!isConstant(operation.right())) {
+                    return operation;
+                }
+            }
+        }
+
+        Object result;
+        try {
+            // Operands are values, so they don't need a context
+            result = operation.evaluate(null);
+        } catch (Exception e) {
+            return operation;
+        }
+
+        return isImmutable(result) ? new ValueASTNode(result) : operation;
+    }
+
+    static ASTNode ternary(TernaryASTNode ternary) {
+        if (!isConstant(ternary.condition())) {
+            return ternary;
+        }
+        return isTrue(ternary.condition()) ? ternary.trueBranch() : ternary.falseBranch();
+    }
+
+    static ASTNode conditional(ConditionalASTNode conditional) {
+        if (!isConstant(conditional.condition())) {
+            return conditional;
+        }
+
+        ASTNode taken = isTrue(conditional.condition()) ? conditional.thenBranch() : conditional.elseBranch();
+        if (taken == null) {
+            return new BodyASTNode();
+        }
+
+        // The branch runs in a block of its own, which only matters if it declares something there
+        if (declaresNames(taken)) {
+            return new ConditionalASTNode(new ValueASTNode(true), taken, null);
+        }
+        return taken;
+    }
+
+    static ASTNode branch(BranchASTNode branch) {
+        List<Pair<ASTNode, ASTNode>> branches = new ArrayList<>();
+
+        for (Pair<ASTNode, ASTNode> pair : branch.branches()) {
+            if (!isConstant(pair.first)) {
+                branches.add(pair);
+                continue;
+            }
+            if (!isTrue(pair.first)) {
+                continue;
+            }
+
+            // The branches after one which is always taken are never reached
+            if (branches.isEmpty()) {
+                return pair.second;
+            }
+            branches.add(pair);
+            break;
+        }
+
+        if (branches.isEmpty()) {
+            return new BodyASTNode();
+        }
+        return branches.size() == branch.branches().size() ? branch : new BranchASTNode(branches);
+    }
+
+    static ASTNode loop(WhileASTNode loop) {
+        if (isConstant(loop.condition()) && !isTrue(loop.condition())) {
+            return new BodyASTNode();
+        }
+        return loop;
+    }
+
+    /**
+     * Returns whether a node is an empty body, which statements folded to nothing are replaced with
+     */
+    static boolean isEmpty(ASTNode node) {
+        return node instanceof BodyASTNode body && body.statements().length == 0;
+    }
+
+    private static boolean isConstant(ASTNode node) {
+        return node instanceof ValueASTNode value && isImmutable(value.value());
+    }
+
+    private static boolean isTrue(ASTNode node) {
+        return OperationASTNode.toBool(((ValueASTNode) node).value());
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value instanceof Number || value instanceof String || value instanceof Boolean || value instanceof Character;
+    }
+
+    /**
+     * Returns whether a statement puts names in the context it runs in. Locals resolved to slots don't.
+     */
+    private static boolean declaresNames(ASTNode node) {
+        return switch (node) {
+            case BodyASTNode body -> {
+                for (ASTNode statement : body.statements()) {
+                    if (declaresNames(statement)) {
+                        yield true;
+                    }
+                }
+                yield false;
+            }
+            // Taken branches run in the context of the chain
+            case BranchASTNode branch -> {
+                for (Pair<ASTNode, ASTNode> pair : branch.branches()) {
+                    if (declaresNames(pair.second)) {
+                        yield true;
+                    }
+                }
+                yield false;
+            }
+            case DecVarASTNode ignored -> true;
+            case ConstVarASTNode ignored -> true;
+            case DecObjASTNode ignored -> true;
+            case ConstObjASTNode ignored -> true;
+            case DeleteVarASTNode ignored -> true;
+            case OrbitFunction ignored -> true;
+            case ClassDefinitionASTNode ignored -> true;
+            default -> false;
+        };
+    }
+}
@@ -7,6 +7,7 @@ import com.softlocked.orbit.core.exception.ParsingException;
 import com.softlocked.orbit.interpreter.ast.operation.OperationASTNode;
 import com.softlocked.orbit.interpreter.ast.operation.ReferenceASTNode;
 import com.softlocked.orbit.interpreter.ast.operation.TernaryASTNode;
+import com.softlocked.orbit.interpreter.ast.value.StringTemplateASTNode;
 import com.softlocked.orbit.interpreter.ast.value.ValueASTNode;
 import com.softlocked.orbit.interpreter.ast.value.VariableASTNode;
 import com.softlocked.orbit.interpreter.ast.variable.FunctionCallASTNode;
@@ -15,21 +16,31 @@ import com.softlocked.orbit.interpreter.function.BFunction;
 import com.softlocked.orbit.interpreter.function.OrbitFunction;
 import com.softlocked.orbit.interpreter.memory.GlobalContext;
 import com.softlocked.orbit.lexer.Lexer;
+import com.softlocked.orbit.lexer.Token;
 import com.softlocked.orbit.utils.Pair;
 import com.softlocked.orbit.utils.Utils;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Pratt parser for expressions. Directly builds an AST from tokens using
  * operator precedence climbing.
  */
 public class ExpressionParser {
+    // A ${...} which isn't escaped as \${...}
+    private static final Pattern TEMPLATE_PATTERN = Pattern.compile("(?<!\\\\)\\$\\{[^{}]*}");
+
     private final TokenStream stream;
     private final GlobalContext context;
 
+    // Set while parsing the part before a ':' which separates two expressions (ternaries and map literals), so
+    // that the ':' isn't read as a reference
+    private boolean colonTerminates;
+
     public ExpressionParser(TokenStream stream, GlobalContext context) {
         this.stream = stream;
         this.context = context;
@@ -65,6 +76,32 @@ public class ExpressionParser {
         return left;
     }
 
+    /**
+     * Parse an expression ending before a ':' separator
+     */
+    private ASTNode parseBeforeColon() throws ParsingException, InterruptedException {
+        boolean previous = colonTerminates;
+        colonTerminates = true;
+        try {
+            return parse(0);
+        } finally {
+            colonTerminates = previous;
+        }
+    }
+
+    /**
+     * Parse an expression which can contain references, e.g. an argument or an element
+     */
+    private ASTNode parseEnclosed() throws ParsingException, InterruptedException {
+        boolean previous = colonTerminates;
+        colonTerminates = false;
+        try {
+            return parse(0);
+        } finally {
+            colonTerminates = previous;
+        }
+    }
+
     /**
      * Parse prefix expressions (literals, variables, unary operators, parentheses, etc.)
      */
@@ -75,14 +112,15 @@ public class ExpressionParser {
             throw new ParsingException("Unexpected end of expression");
         }
 
-        // Numeric literals
-        if (Lexer.isNumeric(token)) {
-            return parseNumericLiteral(token);
+        // Numeric literals. Tokens from the lexer come with their value, plain token lists are parsed here.
+        Token.Kind kind = stream.previousKind();
+        if (kind == Token.Kind.NUMBER || kind == null && Lexer.isNumeric(token)) {
+            return parseNumericLiteral(token, stream.previousValue());
         }
 
         // String literals
         if (token.startsWith("\"")) {
-            return new ValueASTNode(token.substring(1, token.length() - 1));
+            return parseStringLiteral(token.substring(1, token.length() - 1), context);
         }
 
         // Character literals
@@ -246,7 +284,7 @@ public class ExpressionParser {
             } else {
                 // It's a grouped expression, reparse it
                 stream.setPosition(contentStart);
-                ASTNode expr = parse(0);
+                ASTNode expr = parseEnclosed();
 
                 if (!stream.peek().equals(")")) {
                     throw new ParsingException("Expected ')' after expression");
@@ -284,11 +322,11 @@ public class ExpressionParser {
             throw new ParsingException("Unmatched '{' in lambda expression");
         }
 
-        List<String> bodyTokens = stream.getRange(startPos, closePos);
+        TokenStream bodyTokens = stream.subStream(startPos, closePos);
         stream.setPosition(closePos + 1); // move past '}'
 
-        // Parse the body using the old parser for now
-        ASTNode body = Parser.parse(bodyTokens, context);
+        // The body is resolved together with the enclosing program
+        ASTNode body = Parser.parseBody(bodyTokens, context);
 
         List<Pair<String, Variable.Type>> args = new ArrayList<>();
         for (String param : paramNames) {
@@ -319,7 +357,7 @@ public class ExpressionParser {
 
         if (!stream.peek().equals(")")) {
             while (true) {
-                arguments.add(parse(0));
+                arguments.add(parseEnclosed());
 
                 if (stream.peek().equals(",")) {
                     stream.next(); // consume ','
@@ -359,7 +397,7 @@ public class ExpressionParser {
         while (stream.hasNext() && stream.peek().equals("[")) {
             stream.next(); // consume '['
 
-            ASTNode index = parse(0);
+            ASTNode index = parseEnclosed();
             indices.add(index);
 
             if (!stream.peek().equals("]")) {
@@ -377,14 +415,14 @@ public class ExpressionParser {
     private ASTNode parseTernary(ASTNode condition) throws ParsingException, InterruptedException {
         stream.next(); // consume '?'
 
-        ASTNode trueExpr = parse(0);
+        ASTNode trueExpr = parseBeforeColon();
 
         if (!stream.peek().equals(":")) {
             throw new ParsingException("Expected ':' in ternary expression");
         }
         stream.next(); // consume ':'
 
-        ASTNode falseExpr = parse(0);
+        ASTNode falseExpr = parseEnclosed();
 
         // Constant folding
         if (condition instanceof ValueASTNode) {
@@ -404,7 +442,7 @@ public class ExpressionParser {
 
         if (!stream.peek().equals("]")) {
             while (true) {
-                elements.add(parse(0));
+                elements.add(parseEnclosed());
 
                 if (stream.peek().equals(",")) {
                     stream.next(); // consume ','
@@ -431,7 +469,7 @@ public class ExpressionParser {
         if (!stream.peek().equals("}")) {
             while (true) {
                 // Parse key
-                ASTNode key = parse(0);
+                ASTNode key = parseBeforeColon();
 
                 // Normalize key to string if it's an identifier
                 if (key instanceof VariableASTNode) {
@@ -452,7 +490,7 @@ public class ExpressionParser {
                 stream.next(); // consume separator
 
                 // Parse value
-                ASTNode value = parse(0);
+                ASTNode value = parseEnclosed();
 
                 pairs.add(key);
                 pairs.add(value);
@@ -476,32 +514,15 @@ public class ExpressionParser {
     /**
      * Parse numeric literal (handles hex, binary, and various numeric types)
      */
-    private ASTNode parseNumericLiteral(String token) {
-        if (token.startsWith("0x")) {
-            return new ValueASTNode(Integer.parseInt(token.substring(2), 16));
-        } else if (token.startsWith("0b")) {
-            return new ValueASTNode(Integer.parseInt(token.substring(2), 2));
-        } else {
-            // Try parsing as different numeric types
-            Class<?>[] numericTypes = {Integer.class, Long.class, Float.class, Double.class};
-
-            for (Class<?> numericType : numericTypes) {
-                try {
-                    if (numericType == Integer.class) {
-                        return new ValueASTNode(Integer.parseInt(token));
-                    } else if (numericType == Long.class) {
-                        return new ValueASTNode(Long.parseLong(token));
-                    } else if (numericType == Float.class) {
-                        return new ValueASTNode(Float.parseFloat(token));
-                    } else if (numericType == Double.class) {
-                        return new ValueASTNode(Double.parseDouble(token));
-                    }
-                } catch (NumberFormatException ignored) {
-                }
-            }
+    private ASTNode parseNumericLiteral(String token, Object value) {
+        if (value == null) {
+            value = Lexer.parseNumber(token);
         }
 
-        throw new RuntimeException("Invalid numeric literal: " + token);
+        if (value == null) {
+            throw new RuntimeException("Invalid numeric literal: " + token);
+        }
+        return new ValueASTNode(value);
     }
 
     /**
@@ -542,8 +563,47 @@ public class ExpressionParser {
         if (token == null) return true;
 
         return switch (token) {
-            case ";", "\n", ")", "]", "}", ",", ":", "then", "do", "does", "end", "else" -> true;
+            case ";", "\n", ")", "]", "}", ",", "then", "do", "does", "end", "else" -> true;
+            case ":" -> colonTerminates;
             default -> false;
         };
     }
+
+    /**
+     * Parses the contents of a string literal. Escape sequences are replaced, and every <code>${...}</code> in it is
+     * parsed into an expression of a {@link StringTemplateASTNode}.
+     * @return A {@link ValueASTNode} holding the string if it has no expressions, the template otherwise
+     */
+    public static ASTNode parseStringLiteral(String contents, GlobalContext context) throws ParsingException, InterruptedException {
+        String string = Utils.unescape(contents);
+        Matcher matcher = TEMPLATE_PATTERN.matcher(string);
+
+        List<String> segments = new ArrayList<>();
+        List<ASTNode> expressions = new ArrayList<>();
+
+        int end = 0;
+        while (matcher.find()) {
+            segments.add(string.substring(end, matcher.start()).replace("\\$", "$"));
+
+            String expression = string.substring(matcher.start() + 2, matcher.end() - 1);
+            TokenStream tokens = new TokenStream(new Lexer(expression).tokenize());
+
+            expressions.add(new ExpressionParser(tokens, context).parse());
+
+            if (tokens.hasNext()) {
+                throw new ParsingException("Unexpected token '" + tokens.peek() + "' in string template: " + expression);
+            }
+
+            end = matcher.end();
+        }
+
+        String rest = string.substring(end).replace("\\$", "$");
+
+        if (expressions.isEmpty()) {
+            return new ValueASTNode(rest);
+        }
+
+        segments.add(rest);
+        return new StringTemplateASTNode(segments.toArray(new String[0]), expressions.toArray(new ASTNode[0]));
+    }
 }
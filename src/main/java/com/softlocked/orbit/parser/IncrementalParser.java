@@ -0,0 +1,268 @@
+package com.softlocked.orbit.parser;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.ast.SourceMap;
+import com.softlocked.orbit.core.exception.ParsingException;
+import com.softlocked.orbit.interpreter.ast.generic.BodyASTNode;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import com.softlocked.orbit.lexer.Lexer;
+import com.softlocked.orbit.lexer.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Parses the successive versions of a piece of code, e.g. a file which is reloaded every time it is edited.
+ * <p>
+ * Top-level declarations (functions, classes, records and enums) whose text didn't change since the previous version
+ * are not parsed again: the resolved (and compiled) node of the previous version is reused, with its positions
+ * moved to where the declaration is now. Only the declarations which changed and the statements between
+ * declarations are parsed.
+ * <p>
+ * Code which uses <code>#define</code> is always parsed as a whole, since a define can change the meaning of a
+ * declaration without changing its text.
+ * @see Parser#parse(SourceMap, GlobalContext)
+ */
+public final class IncrementalParser {
+    private final String name;
+    private final GlobalContext context;
+
+    // Declarations of the previous version, by their text
+    private HashMap<String, Declaration> declarations = new HashMap<>();
+    private SourceMap source;
+
+    private int reused;
+
+    private record Declaration(ASTNode node, int offset) {
+    }
+
+    /**
+     * @param name The name shown in positions, usually the path of the file
+     * @param context The context the code is parsed (and compiled) in
+     */
+    public IncrementalParser(String name, GlobalContext context) {
+        this.name = name;
+        this.context = context;
+    }
+
+    /**
+     * Parses a new version of the code
+     * @return The resolved program
+     */
+    public synchronized ASTNode parse(String code) throws ParsingException {
+        if (source == null && context.getAstCache() != null) {
+            // The first version can come from the cache. Its declarations are only reused once it is parsed again.
+            SourceMap first = new SourceMap(name, code);
+            ASTNode program = context.getAstCache().parse(first, context);
+
+            source = first;
+            return program;
+        }
+
+        Lexer lexer = new Lexer(code);
+        List<Token> tokens = lexer.scan();
+
+        SourceMap next = new SourceMap(name, code);
+        TokenStream stream = new TokenStream(tokens, next);
+
+        boolean reuse = !lexer.hasDefines();
+
+        HashMap<String, Declaration> found = new HashMap<>();
+        List<ASTNode> statements = new ArrayList<>();
+        // Old start, old end and new start of every reused declaration
+        List<int[]> moved = new ArrayList<>();
+        int count = 0;
+
+        int from = 0;
+        int i = 0;
+        while (i < tokens.size()) {
+            int end = reuse ? declarationEnd(tokens, i) : -1;
+
+            if (end == -1) {
+                int close = closing(tokens, i);
+                i = close == -1 ? tokens.size() : close + 1;
+                continue;
+            }
+
+            parseRange(stream, from, i, next, statements);
+
+            int start = tokens.get(i).offset();
+            String text = code.substring(start, tokens.get(end - 1).offset() + tokens.get(end - 1).text().length());
+
+            Declaration previous = declarations.get(text);
+            if (previous != null) {
+                statements.add(previous.node());
+                moved.add(new int[] { previous.offset(), previous.offset() + text.length(), start });
+                found.put(text, new Declaration(previous.node(), start));
+                count++;
+            } else {
+                int size = statements.size();
+                parseRange(stream, i, end, next, statements);
+
+                if (statements.size() == size + 1) {
+                    found.put(text, new Declaration(statements.get(size), start));
+                }
+            }
+
+            from = i = end;
+        }
+        parseRange(stream, from, tokens.size(), next, statements);
+
+        if (source != null) {
+            move(source, next, moved);
+            context.removeSource(source);
+        }
+        context.addSource(next);
+
+        declarations = found;
+        source = next;
+        reused = count;
+
+        return new BodyASTNode(statements);
+    }
+
+    /**
+     * Returns how many declarations the last parse reused
+     */
+    public synchronized int getReusedCount() {
+        return reused;
+    }
+
+    private void parseRange(TokenStream stream, int from, int to, SourceMap next, List<ASTNode> statements) {
+        if (from >= to) {
+            return;
+        }
+
+        ASTNode body = Parser.finish(Parser.parseBody(stream.subStream(from, to), context), context, next);
+        statements.addAll(Arrays.asList(((BodyASTNode) body).statements()));
+    }
+
+    /**
+     * Gives the nodes of the reused declarations their positions in the new version of the code
+     */
+    private static void move(SourceMap previous, SourceMap next, List<int[]> moved) {
+        if (moved.isEmpty()) {
+            return;
+        }
+
+        int[][] ranges = moved.toArray(new int[0][]);
+        Arrays.sort(ranges, (a, b) -> Integer.compare(a[0], b[0]));
+
+        previous.forEach((node, offset) -> {
+            int low = 0;
+            int high = ranges.length - 1;
+
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int[] range = ranges[middle];
+
+                if (offset < range[0]) {
+                    high = middle - 1;
+                } else if (offset >= range[1]) {
+                    low = middle + 1;
+                } else {
+                    next.put(node, offset - range[0] + range[2]);
+                    return;
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns where the top-level declaration starting at a token ends (exclusive), or -1 if no declaration starts
+     * there. Only declarations with a body are recognized, e.g. <code>fun f(a) { ... }</code>,
+     * <code>int f(a) { ... }</code>, <code>class A : B { ... }</code>, <code>record R(a, b) { ... }</code> and
+     * <code>enum E { ... }</code>.
+     */
+    private static int declarationEnd(List<Token> tokens, int start) {
+        String keyword = tokens.get(start).text();
+        int i = start + 1;
+
+        switch (keyword) {
+            case "class", "record", "enum" -> {
+                if (!isName(tokens, i++)) {
+                    return -1;
+                }
+
+                if (!keyword.equals("enum") && (is(tokens, i, ":") || is(tokens, i, "extends"))) {
+                    do {
+                        i++;
+                        if (!isName(tokens, i++)) {
+                            return -1;
+                        }
+                    } while (is(tokens, i, ","));
+                }
+
+                if (keyword.equals("record") && is(tokens, i, "(")) {
+                    i = closing(tokens, i);
+                    if (i == -1) {
+                        return -1;
+                    }
+                    i++;
+                }
+            }
+            default -> {
+                if (!keyword.equals("fun") && GlobalContext.getPrimitiveType(keyword) == null) {
+                    return -1;
+                }
+                if (!isName(tokens, i++) || !is(tokens, i, "(")) {
+                    return -1;
+                }
+
+                i = closing(tokens, i);
+                if (i == -1) {
+                    return -1;
+                }
+                i++;
+            }
+        }
+
+        if (!is(tokens, i, "{")) {
+            return -1;
+        }
+
+        int close = closing(tokens, i);
+        return close == -1 ? -1 : close + 1;
+    }
+
+    /**
+     * Returns the index of the bracket closing the one at an index, the index itself if it isn't an opening
+     * bracket, or -1 if the bracket is never closed
+     */
+    private static int closing(List<Token> tokens, int index) {
+        String open = tokens.get(index).text();
+        String close = switch (open) {
+            case "(" -> ")";
+            case "[" -> "]";
+            case "{" -> "}";
+            default -> null;
+        };
+
+        if (close == null) {
+            return index;
+        }
+
+        // String literals keep their quotes, so only brackets can match
+        int depth = 0;
+        for (int i = index; i < tokens.size(); i++) {
+            String text = tokens.get(i).text();
+
+            if (text.equals(open)) {
+                depth++;
+            } else if (text.equals(close) && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean is(List<Token> tokens, int index, String text) {
+        return index < tokens.size() && tokens.get(index).text().equals(text);
+    }
+
+    private static boolean isName(List<Token> tokens, int index) {
+        return index < tokens.size() && tokens.get(index).kind() == Token.Kind.IDENTIFIER;
+    }
+}
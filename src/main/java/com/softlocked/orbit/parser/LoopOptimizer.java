@@ -0,0 +1,373 @@
+package com.softlocked.orbit.parser;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.ast.SourceMap;
+import com.softlocked.orbit.core.ast.operation.OperationType;
+import com.softlocked.orbit.interpreter.ast.generic.BodyASTNode;
+import com.softlocked.orbit.interpreter.ast.generic.TryCatchASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.InvariantASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.OptimizedLoopASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.WhileASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForDowntoASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForInASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForToASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.OperationASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.TernaryASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.BranchASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.ConditionalASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.controlflow.BreakASTNode;
+import com.softlocked.orbit.interpreter.ast.value.LocalVariableASTNode;
+import com.softlocked.orbit.interpreter.ast.value.StringTemplateASTNode;
+import com.softlocked.orbit.interpreter.ast.value.ValueASTNode;
+import com.softlocked.orbit.interpreter.ast.value.VariableASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.AssignLocalASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.AssignVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.ConstLocalASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.ConstVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.DecLocalASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.DecVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.DeleteVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.FunctionCallASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.collection.CollectionAccessASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.collection.CollectionSetASTNode;
+import com.softlocked.orbit.interpreter.function.BFunction;
+import com.softlocked.orbit.utils.Pair;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Moves the expressions of a resolved loop which don't change while it runs out of its iterations. Called by the
+ * {@link Resolver} on every loop, once its body is resolved.
+ * <p>
+ * An expression is invariant when it is made of operations, calls and pure baked functions whose operands are
+ * literals and locals the loop never writes, e.g. <code>i * width</code> inside a loop over <code>j</code>, or
+ * <code>math.sqrt(n)</code>. Each of the largest invariant expressions gets a frame slot of its own and becomes an
+ * {@link InvariantASTNode}, which evaluates it once per run of the loop. Nested loops are optimized on their own, so
+ * the expressions inside them are not moved further out.
+ * <p>
+ * Only locals are considered, since anything the loop calls can change a global. Loops containing nodes this class
+ * doesn't know (method calls, lambdas, object declarations...) are left as they are, and what can only be checked
+ * at runtime is checked every time the loop is entered, see {@link OptimizedLoopASTNode}.
+ */
+final class LoopOptimizer {
+    private final IntSupplier newSlot;
+    private final SourceMap source;
+
+    // What the loop writes and calls
+    private final HashSet<Integer> writtenSlots = new HashSet<>();
+    private final HashSet<String> writtenNames = new HashSet<>();
+    private final LinkedHashMap<Pair<String, Integer>, FunctionCallASTNode> calls = new LinkedHashMap<>();
+    private boolean unknown;
+
+    // What the invariants need
+    private final List<Integer> slots = new ArrayList<>();
+    private final HashSet<Integer> leaves = new HashSet<>();
+    private final LinkedHashMap<Pair<String, Integer>, FunctionCallASTNode> pureCalls = new LinkedHashMap<>();
+
+    private LoopOptimizer(IntSupplier newSlot, SourceMap source) {
+        this.newSlot = newSlot;
+        this.source = source;
+    }
+
+    /**
+     * Optimizes a resolved loop
+     * @param newSlot Allocates a slot in the frame the loop runs in
+     * @param source The positions of the nodes, or null
+     * @return An {@link OptimizedLoopASTNode}, or the loop itself if nothing in it is invariant
+     */
+    static ASTNode optimize(ASTNode loop, IntSupplier newSlot, SourceMap source) {
+        LoopOptimizer optimizer = new LoopOptimizer(newSlot, source);
+
+        optimizer.scan(loop);
+        if (optimizer.unknown) {
+            return loop;
+        }
+
+        ASTNode optimized = switch (loop) {
+            case WhileASTNode whileLoop ->
+                    new WhileASTNode(optimizer.rewrite(whileLoop.condition()), optimizer.rewrite(whileLoop.body()));
+            // The bounds and the iterable are evaluated once already
+            case ForToASTNode forLoop -> new ForToASTNode(forLoop.init(), forLoop.end(), optimizer.rewrite(forLoop.body()));
+            case ForDowntoASTNode forLoop -> new ForDowntoASTNode(forLoop.init(), forLoop.end(), optimizer.rewrite(forLoop.body()));
+            case ForInASTNode forLoop -> new ForInASTNode(forLoop.init(), forLoop.iterable(), optimizer.rewrite(forLoop.body()));
+            default -> loop;
+        };
+
+        if (optimizer.slots.isEmpty()) {
+            return loop;
+        }
+
+        return new OptimizedLoopASTNode(
+                optimized,
+                loop,
+                optimizer.slots.stream().mapToInt(Integer::intValue).toArray(),
+                optimizer.leaves.stream().mapToInt(Integer::intValue).toArray(),
+                optimizer.pureCalls.values().toArray(new FunctionCallASTNode[0]),
+                optimizer.calls.values().toArray(new FunctionCallASTNode[0])
+        );
+    }
+
+    // Analysis
+
+    private void scanAll(List<ASTNode> nodes) {
+        for (ASTNode node : nodes) {
+            scan(node);
+        }
+    }
+
+    /**
+     * Records the locals and globals a node writes and the functions it calls, or marks the loop as unknown
+     */
+    private void scan(ASTNode node) {
+        switch (node) {
+            case null -> {
+            }
+            case ValueASTNode ignored -> {
+            }
+            case LocalVariableASTNode ignored -> {
+            }
+            case VariableASTNode ignored -> {
+            }
+
+            // Writes
+            case DecLocalASTNode declaration -> {
+                writtenSlots.add(declaration.slot());
+                scan(declaration.value());
+            }
+            case ConstLocalASTNode declaration -> {
+                writtenSlots.add(declaration.slot());
+                scan(declaration.value());
+            }
+            case AssignLocalASTNode assign -> {
+                writtenSlots.add(assign.slot());
+                scan(assign.value());
+            }
+            // Names written dynamically can end up in a slot with the same name
+            case AssignVarASTNode assign -> {
+                writtenNames.add(assign.variableName());
+                scan(assign.value());
+            }
+            case DecVarASTNode declaration -> {
+                writtenNames.add(declaration.variableName());
+                scan(declaration.value());
+            }
+            case ConstVarASTNode declaration -> {
+                writtenNames.add(declaration.variableName());
+                scan(declaration.value());
+            }
+            case DeleteVarASTNode delete -> writtenNames.add(delete.variableName());
+            case CollectionSetASTNode set -> {
+                scan(set.collection);
+                scanAll(set.indices);
+                scan(set.value);
+            }
+
+            // Blocks and control flow
+            case BodyASTNode body -> {
+                for (ASTNode statement : body.statements()) {
+                    scan(statement);
+                }
+            }
+            case ConditionalASTNode conditional -> {
+                scan(conditional.condition());
+                scan(conditional.thenBranch());
+                scan(conditional.elseBranch());
+            }
+            case BranchASTNode branch -> {
+                for (Pair<ASTNode, ASTNode> pair : branch.branches()) {
+                    scan(pair.first);
+                    scan(pair.second);
+                }
+            }
+            case WhileASTNode loop -> {
+                scan(loop.condition());
+                scan(loop.body());
+            }
+            case ForToASTNode loop -> {
+                scan(loop.init());
+                scan(loop.end());
+                scan(loop.body());
+            }
+            case ForDowntoASTNode loop -> {
+                scan(loop.init());
+                scan(loop.end());
+                scan(loop.body());
+            }
+            case ForInASTNode loop -> {
+                scan(loop.init());
+                scan(loop.iterable());
+                scan(loop.body());
+            }
+            case OptimizedLoopASTNode loop -> scan(loop.original());
+            case TryCatchASTNode tryCatch -> {
+                scan(tryCatch.tryBlock());
+                writtenNames.add(tryCatch.exceptionName());
+                scan(tryCatch.catchBlock());
+            }
+            case BreakASTNode breakNode -> scan(breakNode.getValue());
+
+            // Expressions
+            case OperationASTNode operation -> {
+                scan(operation.left());
+                scan(operation.right());
+            }
+            case TernaryASTNode ternary -> {
+                scan(ternary.condition());
+                scan(ternary.trueBranch());
+                scan(ternary.falseBranch());
+            }
+            case FunctionCallASTNode call -> {
+                calls.putIfAbsent(new Pair<>(call.name(), call.args().size()), call);
+                scanAll(call.args());
+            }
+            case BFunction baked -> {
+                if (!baked.isPure()) {
+                    unknown = true;
+                }
+                scanAll(baked.getValues());
+            }
+            case StringTemplateASTNode template -> {
+                for (ASTNode expression : template.expressions()) {
+                    scan(expression);
+                }
+            }
+            case CollectionAccessASTNode access -> {
+                scan(access.collection);
+                scanAll(access.indices);
+            }
+
+            default -> unknown = true;
+        }
+    }
+
+    private boolean isInvariant(ASTNode node) {
+        return switch (node) {
+            case ValueASTNode value -> isImmutable(value.value());
+            case LocalVariableASTNode local -> !writtenSlots.contains(local.slot()) && !writtenNames.contains(local.name());
+            case OperationASTNode operation -> operation.type() != OperationType.CLONE && isInvariant(operation.left())
+                    && (operation.right() == null || isInvariant(operation.right()));
+            case BFunction baked -> baked.isPure() && baked.getValues().stream().allMatch(this::isInvariant);
+            // Whether the function is pure is checked when the loop is entered
+            case FunctionCallASTNode call -> call.args().stream().allMatch(this::isInvariant);
+            case null, default -> false;
+        };
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value instanceof Number || value instanceof String || value instanceof Boolean || value instanceof Character;
+    }
+
+    /**
+     * Records the locals an invariant reads and the functions it calls
+     */
+    private void collect(ASTNode node) {
+        switch (node) {
+            case LocalVariableASTNode local -> leaves.add(local.slot());
+            case OperationASTNode operation -> {
+                collect(operation.left());
+                if (operation.right() != null) {
+                    collect(operation.right());
+                }
+            }
+            case BFunction baked -> baked.getValues().forEach(this::collect);
+            case FunctionCallASTNode call -> {
+                pureCalls.putIfAbsent(new Pair<>(call.name(), call.args().size()), call);
+                call.args().forEach(this::collect);
+            }
+            default -> {
+            }
+        }
+    }
+
+    // Rewriting
+
+    private List<ASTNode> rewriteAll(List<ASTNode> nodes) {
+        List<ASTNode> result = new ArrayList<>(nodes.size());
+        for (ASTNode node : nodes) {
+            result.add(rewrite(node));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy of a node with its largest invariant expressions replaced. Nested loops are kept as they are.
+     */
+    private ASTNode rewrite(ASTNode node) {
+        if (node == null) {
+            return null;
+        }
+
+        if ((node instanceof OperationASTNode || node instanceof BFunction || node instanceof FunctionCallASTNode) && isInvariant(node)) {
+            collect(node);
+
+            int slot = newSlot.getAsInt();
+            slots.add(slot);
+
+            return moved(node, new InvariantASTNode(node, slot));
+        }
+
+        ASTNode rewritten = switch (node) {
+            case BodyASTNode body -> {
+                List<ASTNode> statements = new ArrayList<>();
+                for (ASTNode statement : body.statements()) {
+                    statements.add(rewrite(statement));
+                }
+                yield new BodyASTNode(statements);
+            }
+            case ConditionalASTNode conditional -> new ConditionalASTNode(
+                    rewrite(conditional.condition()), rewrite(conditional.thenBranch()), rewrite(conditional.elseBranch()));
+            case BranchASTNode branch -> {
+                List<Pair<ASTNode, ASTNode>> branches = new ArrayList<>();
+                for (Pair<ASTNode, ASTNode> pair : branch.branches()) {
+                    branches.add(new Pair<>(rewrite(pair.first), rewrite(pair.second)));
+                }
+                yield new BranchASTNode(branches);
+            }
+            case TryCatchASTNode tryCatch ->
+                    new TryCatchASTNode(rewrite(tryCatch.tryBlock()), rewrite(tryCatch.catchBlock()), tryCatch.exceptionName());
+            case BreakASTNode breakNode -> new BreakASTNode(breakNode.getType(), rewrite(breakNode.getValue()));
+
+            case DecLocalASTNode declaration -> new DecLocalASTNode(
+                    declaration.variableName(), declaration.slot(), rewrite(declaration.value()), declaration.type());
+            case ConstLocalASTNode declaration -> new ConstLocalASTNode(
+                    declaration.variableName(), declaration.slot(), rewrite(declaration.value()), declaration.type());
+            case AssignLocalASTNode assign -> new AssignLocalASTNode(assign.variableName(), assign.slot(), rewrite(assign.value()));
+            case DecVarASTNode declaration -> new DecVarASTNode(
+                    declaration.variableName(), declaration.hash(), rewrite(declaration.value()), declaration.type());
+            case ConstVarASTNode declaration -> new ConstVarASTNode(
+                    declaration.variableName(), declaration.hash(), rewrite(declaration.value()), declaration.type());
+            case AssignVarASTNode assign -> new AssignVarASTNode(assign.variableName(), assign.hash(), rewrite(assign.value()), assign.outer(), assign.field());
+            case CollectionSetASTNode set -> new CollectionSetASTNode(rewrite(set.collection), rewriteAll(set.indices), rewrite(set.value));
+
+            case OperationASTNode operation ->
+                    new OperationASTNode(rewrite(operation.left()), rewrite(operation.right()), operation.type());
+            case TernaryASTNode ternary ->
+                    new TernaryASTNode(rewrite(ternary.condition()), rewrite(ternary.trueBranch()), rewrite(ternary.falseBranch()));
+            case FunctionCallASTNode call -> new FunctionCallASTNode(call.name(), rewriteAll(call.args()));
+            case StringTemplateASTNode template -> {
+                ASTNode[] expressions = new ASTNode[template.expressions().length];
+                for (int i = 0; i < expressions.length; i++) {
+                    expressions[i] = rewrite(template.expressions()[i]);
+                }
+                yield new StringTemplateASTNode(template.segments(), expressions);
+            }
+            case CollectionAccessASTNode access -> new CollectionAccessASTNode(rewrite(access.collection), rewriteAll(access.indices));
+
+            default -> node;
+        };
+
+        return moved(node, rewritten);
+    }
+
+    private ASTNode moved(ASTNode node, ASTNode rewritten) {
+        // The original loop keeps its positions too, it runs when the optimized one can't
+        if (source != null && rewritten != node) {
+            source.copy(node, rewritten);
+        }
+        return rewritten;
+    }
+}
@@ -1,43 +1,58 @@
 package com.softlocked.orbit.parser;
 
+import com.softlocked.orbit.compiler.BytecodeCompiler;
 import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.ast.SourceMap;
+import com.softlocked.orbit.core.exception.ParsingException;
+import com.softlocked.orbit.core.exception.SourceException;
 import com.softlocked.orbit.interpreter.ast.generic.BodyASTNode;
 import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import com.softlocked.orbit.lexer.Lexer;
 import com.softlocked.orbit.parser.parsers.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 
 public class Parser implements TokenParser {
-    private static final List<TokenParser> PARSERS = List.of(
+    // Statements which start with a keyword, by their keyword
+    private static final HashMap<String, TokenParser> KEYWORDS = new HashMap<>();
+
+    private static final TokenParser FUNCTION_DECLARATION = new FunctionDeclarationParser();
+    private static final TokenParser VARIABLE_DECLARATION = new VariableDeclarationParser();
+    private static final TokenParser VARIABLE_ASSIGNMENT = new VariableAssignmentParser();
+    private static final TokenParser EXPRESSION = new ExpressionTokenParser();
+
+    private static final Set<String> ASSIGNMENT_OPERATORS = Set.of("=", "+=", "-=", "*=", "/=", "%=", "++", "--");
+
+    static {
         // Control flow
-        new ReturnParser(),
-        new YieldParser(),
-        new ThrowParser(),
-        new BreakParser(),
-        new ContinueParser(),
+        register(new ReturnParser(), "return");
+        register(new YieldParser(), "yield");
+        register(new ThrowParser(), "throw");
+        register(new BreakParser(), "break");
+        register(new ContinueParser(), "continue");
 
         // Imports and cleanup
-        new ImportParser(),
-        new DeleteParser(),
+        register(new ImportParser(), "import");
+        register(new DeleteParser(), "delete");
 
         // Loops and conditionals
-        new WhileParser(),
-        new ForParser(),
-        new IfParser(),
-        new TryCatchParser(),
+        register(new WhileParser(), "while");
+        register(new ForParser(), "for");
+        register(new IfParser(), "if");
+        register(new TryCatchParser(), "try");
 
         // Declarations
-        new ClassDeclarationParser(),
-        new EnumParser(),
-        new FunctionDeclarationParser(),
-        new VariableDeclarationParser(),
-
-        // Assignments (should be after declarations)
-        new VariableAssignmentParser(),
+        register(new ClassDeclarationParser(), "class", "record");
+        register(new EnumParser(), "enum");
+    }
 
-        // Expressions (fallback)
-        new ExpressionTokenParser()
-    );
+    private static void register(TokenParser parser, String... keywords) {
+        for (String keyword : keywords) {
+            KEYWORDS.put(keyword, parser);
+        }
+    }
 
     @Override
     public java.util.function.Predicate<String> predicate() {
@@ -51,7 +66,7 @@ public class Parser implements TokenParser {
     }
 
     /**
-     * Parse a single statement using the first matching parser
+     * Parse a single statement with the parser {@link #classify(TokenStream) chosen} for it
      */
     private static ASTNode parseStatement(TokenStream tokens, GlobalContext context) {
         if (!tokens.hasNext()) {
@@ -59,19 +74,71 @@ public class Parser implements TokenParser {
         }
 
         String currentToken = tokens.peek();
+        int offset = tokens.offset();
+
+        try {
+            TokenParser parser = classify(tokens);
+            if (parser == null) {
+                throw new RuntimeException("No parser found for token: " + currentToken);
+            }
+
+            ASTNode result = parser.parse(tokens, context);
+            if (result == null) {
+                throw new RuntimeException("Unexpected token: " + currentToken);
+            }
+
+            tokens.mark(result, offset);
+            return result;
+        } catch (SourceException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            SourceMap source = tokens.getSourceMap();
 
-        // Try each parser in order
-        for (TokenParser parser : PARSERS) {
-            if (parser.predicate().test(currentToken)) {
-                ASTNode result = parser.parse(tokens, context);
-                if (result != null) {
-                    return result;
-                }
-                // If parser returned null, try next parser
+            if (source == null) {
+                throw e;
             }
+            // The innermost statement knows the position best, so the ones around it let the error through
+            throw new SourceException(e, source.describe(tokens.offset()));
+        }
+    }
+
+    /**
+     * Chooses the parser of the statement at the current token, looking at most three tokens ahead, so that every
+     * statement is parsed once:
+     * <ul>
+     *     <li>a keyword, e.g. <code>if</code> or <code>class</code>, has its own parser</li>
+     *     <li><code>fun</code> or a type, followed by a name and <code>(</code>, declares a function</li>
+     *     <li>any other type declares a variable</li>
+     *     <li>a name followed by an assignment operator or <code>[</code> is an assignment</li>
+     *     <li>anything else is an expression</li>
+     * </ul>
+     * @return The parser, or null if no statement can start with the token
+     */
+    private static TokenParser classify(TokenStream tokens) {
+        String token = tokens.peek();
+
+        TokenParser parser = KEYWORDS.get(token);
+        if (parser != null) {
+            return parser;
         }
 
-        throw new RuntimeException("No parser found for token: " + currentToken);
+        boolean primitive = GlobalContext.getPrimitiveType(token) != null;
+        if (primitive || token.equals("fun")) {
+            // The function parser reports names which aren't valid
+            if (tokens.peek(1) != null && "(".equals(tokens.peek(2))) {
+                return FUNCTION_DECLARATION;
+            }
+            if (primitive) {
+                return VARIABLE_DECLARATION;
+            }
+        }
+
+        String next = tokens.peek(1);
+        if (next != null && (next.equals("[") || ASSIGNMENT_OPERATORS.contains(next)) && VARIABLE_ASSIGNMENT.predicate().test(token)) {
+            return VARIABLE_ASSIGNMENT;
+        }
+
+        return EXPRESSION.predicate().test(token) ? EXPRESSION : null;
     }
 
     /**
@@ -108,11 +175,14 @@ public class Parser implements TokenParser {
     }
 
     /**
-     * Main entry point for parsing a list of tokens
+     * Main entry point for parsing a list of tokens. Locals are resolved to frame slots before returning,
+     * and the program is compiled to bytecode if the context has compilation enabled.
+     * @see Resolver
+     * @see BytecodeCompiler
      */
     public static ASTNode parse(List<String> tokens, GlobalContext context) {
         TokenStream tokenStream = new TokenStream(tokens);
-        return parseBody(tokenStream, context);
+        return finish(parseBody(tokenStream, context), context);
     }
 
     /**
@@ -120,6 +190,41 @@ public class Parser implements TokenParser {
      */
     public static ASTNode parse(List<String> tokens, GlobalContext context, String className) {
         TokenStream tokenStream = new TokenStream(tokens);
-        return parseBody(tokenStream, context, className);
+        return finish(parseBody(tokenStream, context, className), context);
+    }
+
+    /**
+     * Parses a piece of code, remembering where its statements start in the source map. The map is added to the
+     * context, so that errors thrown while evaluating the program tell where they happened. If the context has an
+     * AST cache, the tree is read from it when the same code was parsed before.
+     * @see GlobalContext#getLocation(ASTNode)
+     */
+    public static ASTNode parse(SourceMap source, GlobalContext context) throws ParsingException {
+        if (context.getAstCache() != null) {
+            return context.getAstCache().parse(source, context);
+        }
+
+        TokenStream tokenStream = new TokenStream(new Lexer(source.getCode()).scan(), source);
+        ASTNode program = finish(parseBody(tokenStream, context), context, source);
+
+        context.addSource(source);
+        return program;
+    }
+
+    private static ASTNode finish(ASTNode program, GlobalContext context) {
+        return finish(program, context, null);
+    }
+
+    /**
+     * Resolves a parsed program, and compiles it if the context has compilation enabled
+     * @param source The positions of the parsed nodes, or null
+     */
+    public static ASTNode finish(ASTNode program, GlobalContext context, SourceMap source) {
+        ASTNode resolved = Resolver.resolve(program, source);
+
+        if (context.isCompilationEnabled()) {
+            return BytecodeCompiler.compile(resolved, context, source);
+        }
+        return resolved;
     }
 }
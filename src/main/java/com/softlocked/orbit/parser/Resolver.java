@@ -0,0 +1,466 @@
+package com.softlocked.orbit.parser;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.ast.SourceMap;
+import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.core.datatypes.functions.IFunction;
+import com.softlocked.orbit.interpreter.ast.generic.BodyASTNode;
+import com.softlocked.orbit.interpreter.ast.generic.FrameASTNode;
+import com.softlocked.orbit.interpreter.ast.generic.TryCatchASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.WhileASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForDowntoASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForInASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForToASTNode;
+import com.softlocked.orbit.interpreter.ast.object.ClassDefinitionASTNode;
+import com.softlocked.orbit.interpreter.ast.object.ConstObjASTNode;
+import com.softlocked.orbit.interpreter.ast.object.DecObjASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.OperationASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.ReferenceASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.TernaryASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.BranchASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.ConditionalASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.controlflow.BreakASTNode;
+import com.softlocked.orbit.interpreter.ast.value.FieldSite;
+import com.softlocked.orbit.interpreter.ast.value.LocalVariableASTNode;
+import com.softlocked.orbit.interpreter.ast.value.StringTemplateASTNode;
+import com.softlocked.orbit.interpreter.ast.value.VariableASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.AssignLocalASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.AssignVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.ConstLocalASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.ConstVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.DecLocalASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.DecVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.FunctionCallASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.collection.CollectionAccessASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.collection.CollectionSetASTNode;
+import com.softlocked.orbit.interpreter.function.BFunction;
+import com.softlocked.orbit.interpreter.function.ClassConstructor;
+import com.softlocked.orbit.interpreter.function.OrbitFunction;
+import com.softlocked.orbit.memory.FrameLayout;
+import com.softlocked.orbit.utils.Pair;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves local variables to frame slots once parsing is done, so that they are read and written by array index
+ * instead of being hashed and looked up through the context chain on every access.
+ * <p>
+ * Every function body gets a flat frame: parameters take the first slots, and every declaration inside the body
+ * (including the ones in nested blocks) gets a slot of its own. Names which are not declared inside the function
+ * are left as they are and looked up dynamically, the same as before. Coroutines get a frame the same way. In
+ * methods and constructors, these names get a {@link FieldSite}, which reads the fields of the object by slot.
+ * <p>
+ * Top-level code, lambdas and class field initializers have no frame of their own. Their top-level declarations stay
+ * dynamic, and each statement which declares block locals is wrapped in a {@link FrameASTNode}.
+ * <p>
+ * Constant expressions and branches which can never run are folded on the way, see {@link ConstantFolder}, and the
+ * expressions loops don't change are moved out of their iterations, see {@link LoopOptimizer}.
+ */
+public class Resolver {
+    private static final int DYNAMIC = -1;
+
+    private final List<String> slots = new ArrayList<>();
+    private final ArrayDeque<HashMap<String, Integer>> scopes = new ArrayDeque<>();
+
+    // When set, declarations in the outermost scope stay in the context's variable map
+    private final boolean dynamicRoot;
+
+    // Positions of the parsed nodes, handed over to the nodes which replace them. May be null.
+    private final SourceMap source;
+
+    // Set when resolving a method or constructor, whose names which aren't locals are most likely fields
+    private boolean member;
+
+    private Resolver(boolean dynamicRoot, SourceMap source) {
+        this.dynamicRoot = dynamicRoot;
+        this.source = source;
+        this.scopes.push(new HashMap<>());
+    }
+
+    /**
+     * Resolves a parsed program (or any body without a frame of its own)
+     * @param program The program returned by the parser
+     * @return The resolved program
+     */
+    public static ASTNode resolve(ASTNode program) {
+        return resolve(program, null);
+    }
+
+    /**
+     * Resolves a parsed program, keeping the positions of its nodes in the source map
+     * @param source The positions of the parsed nodes, or null
+     */
+    public static ASTNode resolve(ASTNode program, SourceMap source) {
+        if (program instanceof BodyASTNode body) {
+            List<ASTNode> statements = new ArrayList<>();
+            for (ASTNode statement : body.statements()) {
+                statements.add(resolveStatement(statement, source));
+            }
+            return new BodyASTNode(statements);
+        }
+
+        return resolveStatement(program, source);
+    }
+
+    private static ASTNode resolveStatement(ASTNode statement, SourceMap source) {
+        Resolver resolver = new Resolver(true, source);
+        ASTNode resolved = resolver.visit(statement);
+
+        if (resolver.slots.isEmpty()) {
+            return resolved;
+        }
+
+        FrameASTNode frame = new FrameASTNode(resolver.layout(), resolved);
+        if (source != null) {
+            source.copy(resolved, frame);
+        }
+        return frame;
+    }
+
+    /**
+     * Resolves the body of a function in place. Lambdas run inside the caller's context, so they are resolved
+     * like top-level code instead.
+     */
+    public static void resolveFunction(OrbitFunction function) {
+        resolveFunction(function, null);
+    }
+
+    private static void resolveFunction(OrbitFunction function, SourceMap source) {
+        resolveFunction(function, source, false);
+    }
+
+    private static void resolveFunction(OrbitFunction function, SourceMap source, boolean member) {
+        if (function.getLayout() != null) {
+            return;
+        }
+
+        if (function.getName() == null) {
+            function.setResolvedBody(resolve(function.getBody(), source), null);
+            return;
+        }
+
+        Resolver resolver = new Resolver(false, source);
+        resolver.member = member;
+        for (String parameter : function.getParameterNames()) {
+            resolver.declare(parameter);
+        }
+
+        ASTNode body = resolver.visit(function.getBody());
+        function.setResolvedBody(body, resolver.layout());
+    }
+
+    /**
+     * Resolves the body of a class constructor in place
+     */
+    public static void resolveConstructor(ClassConstructor constructor) {
+        resolveConstructor(constructor, null);
+    }
+
+    private static void resolveConstructor(ClassConstructor constructor, SourceMap source) {
+        if (constructor.getLayout() != null) {
+            return;
+        }
+
+        Resolver resolver = new Resolver(false, source);
+        resolver.member = true;
+        for (String parameter : constructor.getParameterNames()) {
+            resolver.declare(parameter);
+        }
+
+        ASTNode body = resolver.visit(constructor.getBody());
+        constructor.setResolvedBody(body, resolver.layout());
+    }
+
+    private FrameLayout layout() {
+        return new FrameLayout(slots.toArray(new String[0]));
+    }
+
+    private int declare(String name) {
+        HashMap<String, Integer> scope = scopes.peek();
+
+        if (dynamicRoot && scopes.size() == 1) {
+            scope.put(name, DYNAMIC);
+            return DYNAMIC;
+        }
+
+        int slot = slots.size();
+        slots.add(name);
+        scope.put(name, slot);
+        return slot;
+    }
+
+    /**
+     * Allocates a slot for a value kept by a loop, see {@link LoopOptimizer}
+     */
+    private int invariantSlot() {
+        slots.add("<invariant>");
+        return slots.size() - 1;
+    }
+
+    /**
+     * Returns whether the code being resolved always runs in the frame this resolver lays out. Function bodies do,
+     * so a name which is not in scope can't be one of their slots. Top-level code doesn't: eval runs it in the frame
+     * of its caller, whose locals it can still read by name.
+     */
+    private boolean ownsFrame() {
+        return !dynamicRoot;
+    }
+
+    private void declareDynamic(String name) {
+        scopes.peek().put(name, DYNAMIC);
+    }
+
+    /**
+     * Returns the field site of a name which isn't declared in scope, or null outside of methods. Names declared
+     * dynamically, like caught exceptions, are looked up in the frame as usual.
+     */
+    private FieldSite fieldSite(String name) {
+        if (!member) {
+            return null;
+        }
+        for (HashMap<String, Integer> scope : scopes) {
+            if (scope.containsKey(name)) {
+                return null;
+            }
+        }
+        return new FieldSite(name);
+    }
+
+    private int lookup(String name) {
+        for (HashMap<String, Integer> scope : scopes) {
+            Integer slot = scope.get(name);
+            if (slot != null) {
+                return slot;
+            }
+        }
+        return DYNAMIC;
+    }
+
+    private void enterScope() {
+        scopes.push(new HashMap<>());
+    }
+
+    private void exitScope() {
+        scopes.pop();
+    }
+
+    private List<ASTNode> visitAll(List<ASTNode> nodes) {
+        List<ASTNode> result = new ArrayList<>(nodes.size());
+        for (ASTNode node : nodes) {
+            result.add(visit(node));
+        }
+        return result;
+    }
+
+    private ASTNode visit(ASTNode node) {
+        ASTNode resolved = resolveNode(node);
+
+        if (source != null && resolved != node) {
+            source.move(node, resolved);
+        }
+        return resolved;
+    }
+
+    private ASTNode resolveNode(ASTNode node) {
+        return switch (node) {
+            case null -> null;
+
+            // Variables
+            case VariableASTNode variable -> {
+                int slot = lookup(variable.name());
+                yield slot == DYNAMIC
+                        ? new VariableASTNode(variable.name(), variable.hash(), ownsFrame(), fieldSite(variable.name()))
+                        : new LocalVariableASTNode(variable.name(), slot);
+            }
+            case AssignVarASTNode assign -> {
+                ASTNode value = visit(assign.value());
+                int slot = lookup(assign.variableName());
+                yield slot == DYNAMIC
+                        ? new AssignVarASTNode(assign.variableName(), assign.hash(), value, ownsFrame(), fieldSite(assign.variableName()))
+                        : new AssignLocalASTNode(assign.variableName(), slot, value);
+            }
+            case DecVarASTNode declaration -> {
+                ASTNode value = visit(declaration.value());
+                int slot = declare(declaration.variableName());
+                yield slot == DYNAMIC
+                        ? new DecVarASTNode(declaration.variableName(), declaration.hash(), value, declaration.type())
+                        : new DecLocalASTNode(declaration.variableName(), slot, value, declaration.type());
+            }
+            case ConstVarASTNode declaration -> {
+                ASTNode value = visit(declaration.value());
+                int slot = declare(declaration.variableName());
+                yield slot == DYNAMIC
+                        ? new ConstVarASTNode(declaration.variableName(), declaration.hash(), value, declaration.type())
+                        : new ConstLocalASTNode(declaration.variableName(), slot, value, declaration.type());
+            }
+            case DecObjASTNode declaration -> {
+                ASTNode value = visit(declaration.value());
+                declareDynamic(declaration.variableName());
+                yield new DecObjASTNode(declaration.variableName(), declaration.hash(), value, declaration.clazz());
+            }
+            case ConstObjASTNode declaration -> {
+                ASTNode value = visit(declaration.value());
+                declareDynamic(declaration.variableName());
+                yield new ConstObjASTNode(declaration.variableName(), declaration.hash(), value, declaration.clazz());
+            }
+
+            // Blocks and control flow
+            case BodyASTNode body -> {
+                List<ASTNode> statements = new ArrayList<>();
+                for (ASTNode statement : body.statements()) {
+                    ASTNode resolved = visit(statement);
+
+                    if (!ConstantFolder.isEmpty(resolved)) {
+                        statements.add(resolved);
+                    }
+                }
+                yield new BodyASTNode(statements);
+            }
+            case ConditionalASTNode conditional -> {
+                ASTNode condition = visit(conditional.condition());
+
+                enterScope();
+                ASTNode thenBranch = visit(conditional.thenBranch());
+                exitScope();
+
+                enterScope();
+                ASTNode elseBranch = visit(conditional.elseBranch());
+                exitScope();
+
+                yield ConstantFolder.conditional(new ConditionalASTNode(condition, thenBranch, elseBranch));
+            }
+            case BranchASTNode branch -> {
+                List<Pair<ASTNode, ASTNode>> branches = new ArrayList<>();
+                for (Pair<ASTNode, ASTNode> pair : branch.branches()) {
+                    branches.add(new Pair<>(visit(pair.first), visit(pair.second)));
+                }
+                yield ConstantFolder.branch(new BranchASTNode(branches));
+            }
+            case WhileASTNode loop -> {
+                enterScope();
+                ASTNode condition = visit(loop.condition());
+                ASTNode body = visit(loop.body());
+                exitScope();
+
+                ASTNode folded = ConstantFolder.loop(new WhileASTNode(condition, body));
+                yield folded instanceof WhileASTNode ? LoopOptimizer.optimize(folded, this::invariantSlot, source) : folded;
+            }
+            case ForToASTNode loop -> {
+                enterScope();
+                ASTNode init = visit(loop.init());
+                ASTNode end = visit(loop.end());
+                ASTNode body = visit(loop.body());
+                exitScope();
+
+                yield LoopOptimizer.optimize(new ForToASTNode(init, end, body), this::invariantSlot, source);
+            }
+            case ForDowntoASTNode loop -> {
+                enterScope();
+                ASTNode init = visit(loop.init());
+                ASTNode end = visit(loop.end());
+                ASTNode body = visit(loop.body());
+                exitScope();
+
+                yield LoopOptimizer.optimize(new ForDowntoASTNode(init, end, body), this::invariantSlot, source);
+            }
+            case ForInASTNode loop -> {
+                enterScope();
+                ASTNode init = visit(loop.init());
+                ASTNode iterable = visit(loop.iterable());
+                ASTNode body = visit(loop.body());
+                exitScope();
+
+                yield LoopOptimizer.optimize(new ForInASTNode(init, iterable, body), this::invariantSlot, source);
+            }
+            case TryCatchASTNode tryCatch -> {
+                ASTNode tryBlock = visit(tryCatch.tryBlock());
+
+                // The exception is bound by name when it is caught
+                enterScope();
+                declareDynamic(tryCatch.exceptionName());
+                ASTNode catchBlock = visit(tryCatch.catchBlock());
+                exitScope();
+
+                yield new TryCatchASTNode(tryBlock, catchBlock, tryCatch.exceptionName());
+            }
+            case BreakASTNode breakNode -> new BreakASTNode(breakNode.getType(), visit(breakNode.getValue()));
+
+            // Expressions
+            case OperationASTNode operation -> ConstantFolder.operation(
+                    new OperationASTNode(visit(operation.left()), visit(operation.right()), operation.type()));
+            case TernaryASTNode ternary -> ConstantFolder.ternary(
+                    new TernaryASTNode(visit(ternary.condition()), visit(ternary.trueBranch()), visit(ternary.falseBranch())));
+            case ReferenceASTNode reference -> {
+                // 'super' is bound at call time, and the right hand side only names a member
+                ASTNode param = reference.param() instanceof VariableASTNode variable && variable.name().equals("super")
+                        ? variable
+                        : visit(reference.param());
+
+                ASTNode function = reference.function();
+                if (function instanceof FunctionCallASTNode call) {
+                    function = new FunctionCallASTNode(call.name(), visitAll(call.args()));
+                }
+
+                yield new ReferenceASTNode(param, function);
+            }
+            case FunctionCallASTNode call -> new FunctionCallASTNode(call.name(), visitAll(call.args()));
+            case StringTemplateASTNode template -> {
+                ASTNode[] expressions = new ASTNode[template.expressions().length];
+                for (int i = 0; i < expressions.length; i++) {
+                    expressions[i] = visit(template.expressions()[i]);
+                }
+                yield new StringTemplateASTNode(template.segments(), expressions);
+            }
+            case CollectionAccessASTNode access -> {
+                access.collection = visit(access.collection);
+                access.indices = visitAll(access.indices);
+                yield access;
+            }
+            case CollectionSetASTNode set -> {
+                set.collection = visit(set.collection);
+                set.indices = visitAll(set.indices);
+                set.value = visit(set.value);
+                yield set;
+            }
+            case BFunction baked -> {
+                baked.setValues(visitAll(baked.getValues()));
+                yield baked;
+            }
+
+            // Declarations with frames of their own
+            case OrbitFunction function -> {
+                resolveFunction(function, source);
+                yield function;
+            }
+            case ClassDefinitionASTNode definition -> {
+                resolveClass(definition, source);
+                yield definition;
+            }
+
+            default -> node;
+        };
+    }
+
+    private static void resolveClass(ClassDefinitionASTNode definition, SourceMap source) {
+        for (Map.Entry<String, Pair<Variable.Type, ASTNode>> field : definition.fields().entrySet()) {
+            Pair<Variable.Type, ASTNode> value = field.getValue();
+            if (value.second != null) {
+                value.second = resolveStatement(value.second, source);
+            }
+        }
+
+        for (IFunction function : definition.functions().values()) {
+            if (function instanceof OrbitFunction orbitFunction) {
+                resolveFunction(orbitFunction, source, true);
+            }
+        }
+
+        for (ClassConstructor constructor : definition.constructors().values()) {
+            resolveConstructor(constructor, source);
+        }
+    }
+}
@@ -1,27 +1,86 @@
 package com.softlocked.orbit.parser;
 
-import java.util.ArrayList;
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.ast.SourceMap;
+import com.softlocked.orbit.lexer.Token;
+
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
+/**
+ * A cursor over a window of tokens. Sub-streams are windows over the same tokens, so parsing nested blocks doesn't
+ * copy them: positions, sizes and indices are relative to the start of the window.
+ */
 public class TokenStream {
-    private List<String> tokens;
+    // Shared by every sub-stream, whitespace removed
+    private final String[] tokens;
+    private final int start;
+    private final int end;
+
     private int position;
 
+    // Source offset of every token, and where the positions of parsed nodes go. Null for plain token lists.
+    private final int[] offsets;
+    private final SourceMap sourceMap;
+
+    // Kind and value of every token, as the lexer found them. Null for plain token lists.
+    private final Token.Kind[] kinds;
+    private final Object[] values;
+
     public TokenStream(List<String> tokens) {
-        this.tokens = tokens;
-        this.tokens.removeIf(t -> t.equals("\r") || t.equals("\n") || t.equals("\t"));
-        this.position = 0;
+        this.tokens = tokens.stream()
+            .filter(t -> !t.equals("\r") && !t.equals("\n") && !t.equals("\t"))
+            .toArray(String[]::new);
+        this.start = 0;
+        this.end = this.tokens.length;
+        this.offsets = null;
+        this.sourceMap = null;
+        this.kinds = null;
+        this.values = null;
+    }
+
+    /**
+     * Creates a stream of tokens from the lexer. The parser records where the nodes it builds start in the source map.
+     */
+    public TokenStream(List<Token> tokens, SourceMap sourceMap) {
+        this.tokens = new String[tokens.size()];
+        this.offsets = new int[tokens.size()];
+        this.kinds = new Token.Kind[tokens.size()];
+        this.values = new Object[tokens.size()];
+        this.start = 0;
+        this.end = this.tokens.length;
+        this.sourceMap = sourceMap;
+
+        for (int i = 0; i < offsets.length; i++) {
+            Token token = tokens.get(i);
+            this.tokens[i] = token.text();
+            this.offsets[i] = token.offset();
+            this.kinds[i] = token.kind();
+            this.values[i] = token.value();
+        }
+    }
+
+    private TokenStream(TokenStream stream, int start, int end) {
+        this.tokens = stream.tokens;
+        this.start = start;
+        this.end = end;
+        this.offsets = stream.offsets;
+        this.sourceMap = stream.sourceMap;
+        this.kinds = stream.kinds;
+        this.values = stream.values;
     }
 
     public boolean hasNext() {
-        return position < tokens.size();
+        return start + position < end;
     }
 
     public String next() {
         if (!hasNext()) {
             return null;
         }
-        return tokens.get(position++);
+        return tokens[start + position++];
     }
 
     public void consumeSemicolon() {
@@ -31,10 +90,10 @@ public class TokenStream {
     }
 
     public String peek(int offset) {
-        if (position + offset >= tokens.size()) {
+        if (start + position + offset >= end) {
             return null;
         }
-        return tokens.get(position + offset);
+        return tokens[start + position + offset];
     }
 
     public String peek() {
@@ -65,9 +124,9 @@ public class TokenStream {
     }
 
     public int findNext(String target) {
-        for (int i = position; i < tokens.size(); i++) {
-            if (tokens.get(i).equals(target)) {
-                return i;
+        for (int i = start + position; i < end; i++) {
+            if (tokens[i].equals(target)) {
+                return i - start;
             }
         }
         return -1;
@@ -75,33 +134,92 @@ public class TokenStream {
 
     public int findPair(String open, String close) {
         int depth = 1;
-        int startPos = position;
-
-        for (int i = startPos; i < tokens.size(); i++) {
-            String token = tokens.get(i);
+        for (int i = start + position; i < end; i++) {
+            String token = tokens[i];
             if (token.equals(open)) depth++;
             if (token.equals(close)) {
                 depth--;
-                if (depth == 0) return i;
+                if (depth == 0) return i - start;
             }
         }
         return -1;
     }
 
-    public List<String> getRange(int start, int end) {
-        return new ArrayList<>(tokens.subList(start, end));
+    /**
+     * Returns a read-only view of the tokens between two positions
+     */
+    public List<String> getRange(int from, int to) {
+        checkRange(from, to);
+        return Collections.unmodifiableList(Arrays.asList(tokens).subList(start + from, start + to));
+    }
+
+    /**
+     * Returns a stream of the tokens between two positions. It shares the tokens of this stream, so creating it costs
+     * the same however many tokens it has.
+     */
+    public TokenStream subStream(int from, int to) {
+        checkRange(from, to);
+        return new TokenStream(this, start + from, start + to);
     }
 
-    public TokenStream subStream(int start, int end) {
-        return new TokenStream(getRange(start, end));
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > end - start || from > to) {
+            throw new IndexOutOfBoundsException("Range " + from + " to " + to + " of " + (end - start) + " tokens");
+        }
+    }
+
+    /**
+     * Returns the kind of the token last returned by {@link #next()}, or null if it isn't known
+     */
+    public Token.Kind previousKind() {
+        if (kinds == null || position == 0) {
+            return null;
+        }
+        return kinds[start + position - 1];
+    }
+
+    /**
+     * Returns the value the lexer read from the token last returned by {@link #next()}, or null if it has none
+     * @see Token#value()
+     */
+    public Object previousValue() {
+        if (values == null || position == 0) {
+            return null;
+        }
+        return values[start + position - 1];
+    }
+
+    public SourceMap getSourceMap() {
+        return sourceMap;
+    }
+
+    /**
+     * Returns the source offset of the next token (or of the last one at the end of the stream), or -1 if it isn't known
+     */
+    public int offset() {
+        if (offsets == null || start == end) {
+            return -1;
+        }
+        return offsets[Math.min(start + position, end - 1)];
+    }
+
+    /**
+     * Records that a node starts at a source offset
+     * @see #offset()
+     */
+    public void mark(ASTNode node, int offset) {
+        if (sourceMap != null) {
+            sourceMap.put(node, offset);
+        }
     }
 
     public int size() {
-        return tokens.size();
+        return end - start;
     }
 
     public String get(int index) {
-        return tokens.get(index);
+        Objects.checkIndex(index, end - start);
+        return tokens[start + index];
     }
 
     public int cursor() {
@@ -0,0 +1,127 @@
+package com.softlocked.orbit.parser.cache;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.ast.SourceMap;
+import com.softlocked.orbit.core.exception.ParsingException;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
+import com.softlocked.orbit.lexer.Lexer;
+import com.softlocked.orbit.parser.Parser;
+import com.softlocked.orbit.parser.TokenStream;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Keeps parsed programs on disk, so that code which didn't change since it was last run is not lexed and parsed again.
+ * <p>
+ * A program is stored in a file named after the SHA-256 hash of its code, in the layout of {@link AstFormat}, and
+ * read back with memory-mapped I/O. What is stored is the tree the parser produced, before it is resolved (and
+ * compiled), so one file serves every context. Programs with nodes or constants the format doesn't know are not
+ * stored, and files which can't be read are ignored, so the cache never changes what a program does.
+ * @see GlobalContext#setAstCache(AstCache)
+ */
+public final class AstCache {
+    private final Path directory;
+
+    /**
+     * @param directory The directory of the cached files. It is created when the first file is written.
+     */
+    public AstCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns a cache in <code>~/.orbit/cache</code>, or in the directory of the <code>orbit.cache</code>
+     * system property if it is set
+     */
+    public static AstCache getDefault() {
+        String directory = System.getProperty("orbit.cache");
+
+        if (directory == null) {
+            return new AstCache(Path.of(System.getProperty("user.home"), ".orbit", "cache"));
+        }
+        return new AstCache(Path.of(directory));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Parses a piece of code like {@link Parser#parse(SourceMap, GlobalContext)}, reading the tree from the cache
+     * if the same code was parsed before, and storing it otherwise
+     */
+    public ASTNode parse(SourceMap source, GlobalContext context) throws ParsingException {
+        Path file = directory.resolve(key(source.getCode()) + ".ast");
+
+        ASTNode program = load(file, source);
+
+        if (program == null) {
+            program = Parser.parseBody(new TokenStream(new Lexer(source.getCode()).scan(), source), context);
+            store(file, program, source);
+        }
+
+        ASTNode resolved = Parser.finish(program, context, source);
+        context.addSource(source);
+
+        return resolved;
+    }
+
+    private static ASTNode load(Path file, SourceMap source) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return AstReader.read(buffer, source);
+        } catch (IOException | RuntimeException e) {
+            // Damaged or written by another version, it is parsed and written again
+            return null;
+        }
+    }
+
+    private void store(Path file, ASTNode program, SourceMap source) {
+        byte[] bytes;
+        try {
+            bytes = AstWriter.write(program, source);
+        } catch (AstWriter.Unsupported e) {
+            return;
+        }
+
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+
+            // Written next to the file first, so that no one ever reads half of it
+            temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            Files.write(temporary, bytes);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException e) {
+            try {
+                if (temporary != null) {
+                    Files.deleteIfExists(temporary);
+                }
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static String key(String code) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(code.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
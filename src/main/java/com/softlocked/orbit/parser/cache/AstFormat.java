@@ -0,0 +1,68 @@
+package com.softlocked.orbit.parser.cache;
+
+/**
+ * Layout of a cached tree.
+ * <p>
+ * A file starts with {@link #MAGIC} and {@link #VERSION}, followed by the program as a tree of nodes. Every node is a
+ * tag byte, the offset it starts at in the code (plus one, 0 when it isn't known) and its fields. Integers are written
+ * as variable-length numbers. A string is written once: the first time as a new index followed by its characters,
+ * and after that as its index alone.
+ * <p>
+ * {@link #VERSION} has to change whenever the layout, or what the parser produces for some code, changes.
+ */
+final class AstFormat {
+    static final int MAGIC = 0x4F524254; // "ORBT"
+    static final int VERSION = 1;
+
+    // Nodes
+    static final byte NULL = 0;
+    static final byte BODY = 1;
+    static final byte VALUE = 2;
+    static final byte VARIABLE = 3;
+    static final byte TEMPLATE = 4;
+    static final byte OPERATION = 5;
+    static final byte REFERENCE = 6;
+    static final byte TERNARY = 7;
+    static final byte CALL = 8;
+    static final byte BAKED_CALL = 9;
+    static final byte DECLARE = 10;
+    static final byte CONSTANT = 11;
+    static final byte ASSIGN = 12;
+    static final byte DELETE = 13;
+    static final byte DECLARE_OBJECT = 14;
+    static final byte CONSTANT_OBJECT = 15;
+    static final byte COLLECTION_GET = 16;
+    static final byte COLLECTION_SET = 17;
+    static final byte CONDITIONAL = 18;
+    static final byte BRANCH = 19;
+    static final byte BREAK = 20;
+    static final byte WHILE = 21;
+    static final byte FOR_TO = 22;
+    static final byte FOR_DOWNTO = 23;
+    static final byte FOR_IN = 24;
+    static final byte TRY_CATCH = 25;
+    static final byte FUNCTION = 26;
+    static final byte COROUTINE = 27;
+    static final byte CONSTRUCTOR = 28;
+    static final byte CLASS = 29;
+    static final byte IMPORT_FILE = 30;
+    static final byte IMPORT_MODULE = 31;
+    static final byte RECORD_CAST = 32;
+
+    // Values
+    static final byte V_NULL = 0;
+    static final byte V_INT = 1;
+    static final byte V_LONG = 2;
+    static final byte V_FLOAT = 3;
+    static final byte V_DOUBLE = 4;
+    static final byte V_BOOLEAN = 5;
+    static final byte V_CHAR = 6;
+    static final byte V_BYTE = 7;
+    static final byte V_SHORT = 8;
+    static final byte V_STRING = 9;
+    static final byte V_LIST = 10;
+    static final byte V_MAP = 11;
+
+    private AstFormat() {
+    }
+}
@@ -0,0 +1,327 @@
+package com.softlocked.orbit.parser.cache;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.ast.SourceMap;
+import com.softlocked.orbit.core.ast.operation.OperationType;
+import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.core.datatypes.functions.IFunction;
+import com.softlocked.orbit.core.evaluator.Breakpoint;
+import com.softlocked.orbit.interpreter.ast.generic.BodyASTNode;
+import com.softlocked.orbit.interpreter.ast.generic.TryCatchASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.WhileASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForDowntoASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForInASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForToASTNode;
+import com.softlocked.orbit.interpreter.ast.object.ClassDefinitionASTNode;
+import com.softlocked.orbit.interpreter.ast.object.ConstObjASTNode;
+import com.softlocked.orbit.interpreter.ast.object.DecObjASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.OperationASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.ReferenceASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.TernaryASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.BranchASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.ConditionalASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.controlflow.BreakASTNode;
+import com.softlocked.orbit.interpreter.ast.value.StringTemplateASTNode;
+import com.softlocked.orbit.interpreter.ast.value.ValueASTNode;
+import com.softlocked.orbit.interpreter.ast.value.VariableASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.AssignVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.ConstVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.DecVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.DeleteVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.FunctionCallASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.collection.CollectionAccessASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.collection.CollectionSetASTNode;
+import com.softlocked.orbit.interpreter.function.BFunction;
+import com.softlocked.orbit.interpreter.function.ClassConstructor;
+import com.softlocked.orbit.interpreter.function.OrbitFunction;
+import com.softlocked.orbit.interpreter.function.coroutine.CoroutineFunction;
+import com.softlocked.orbit.opm.ast.pkg.ImportFileASTNode;
+import com.softlocked.orbit.opm.ast.pkg.ImportModuleASTNode;
+import com.softlocked.orbit.parser.parsers.ClassDeclarationParser;
+import com.softlocked.orbit.utils.Pair;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static com.softlocked.orbit.parser.cache.AstFormat.*;
+
+/**
+ * Reads a program written by {@link AstWriter}. Every node is created anew, so a program read twice shares nothing.
+ */
+final class AstReader {
+    private final ByteBuffer buffer;
+    private final SourceMap source;
+
+    private final List<String> strings = new ArrayList<>();
+
+    private AstReader(ByteBuffer buffer, SourceMap source) {
+        this.buffer = buffer;
+        this.source = source;
+    }
+
+    /**
+     * Reads a program, putting the positions of its nodes in the source map
+     * @return The program, or null if the bytes aren't in the current layout
+     * @throws IllegalStateException If the bytes are damaged
+     */
+    static ASTNode read(ByteBuffer buffer, SourceMap source) {
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        return new AstReader(buffer, source).node();
+    }
+
+    private ASTNode node() {
+        byte tag = buffer.get();
+        if (tag == NULL) {
+            return null;
+        }
+
+        int offset = readInt() - 1;
+
+        ASTNode node = switch (tag) {
+            case BODY -> new BodyASTNode(nodes());
+            case VALUE -> new ValueASTNode(value());
+            case VARIABLE -> new VariableASTNode(readString(), readInt());
+            case TEMPLATE -> {
+                String[] segments = new String[readInt()];
+                for (int i = 0; i < segments.length; i++) {
+                    segments[i] = readString();
+                }
+                yield new StringTemplateASTNode(segments, nodes().toArray(new ASTNode[0]));
+            }
+            case OPERATION -> {
+                OperationType type = readEnum(OperationType.class);
+                yield new OperationASTNode(node(), node(), type);
+            }
+            case REFERENCE -> new ReferenceASTNode(node(), node());
+            case TERNARY -> new TernaryASTNode(node(), node(), node());
+            case CALL -> new FunctionCallASTNode(readString(), nodes());
+            case BAKED_CALL -> {
+                String name = readString();
+                BFunction baked;
+                try {
+                    baked = (BFunction) Class.forName(name).getConstructor().newInstance();
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    throw new IllegalStateException("Unknown baked function " + name, e);
+                }
+                baked.setValues(nodes());
+                yield baked;
+            }
+
+            // Variables
+            case DECLARE -> {
+                String name = readString();
+                int hash = readInt();
+                Variable.Type type = readEnum(Variable.Type.class);
+                yield new DecVarASTNode(name, hash, node(), type);
+            }
+            case CONSTANT -> {
+                String name = readString();
+                int hash = readInt();
+                Variable.Type type = readEnum(Variable.Type.class);
+                yield new ConstVarASTNode(name, hash, node(), type);
+            }
+            case ASSIGN -> new AssignVarASTNode(readString(), readInt(), node());
+            case DELETE -> new DeleteVarASTNode(readString(), readInt());
+            case DECLARE_OBJECT -> {
+                String name = readString();
+                int hash = readInt();
+                String clazz = readString();
+                yield new DecObjASTNode(name, hash, node(), clazz);
+            }
+            case CONSTANT_OBJECT -> {
+                String name = readString();
+                int hash = readInt();
+                String clazz = readString();
+                yield new ConstObjASTNode(name, hash, node(), clazz);
+            }
+            case COLLECTION_GET -> new CollectionAccessASTNode(node(), nodes());
+            case COLLECTION_SET -> new CollectionSetASTNode(node(), nodes(), node());
+
+            // Control flow
+            case CONDITIONAL -> new ConditionalASTNode(node(), node(), node());
+            case BRANCH -> {
+                int count = readInt();
+                List<Pair<ASTNode, ASTNode>> branches = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    branches.add(new Pair<>(node(), node()));
+                }
+                yield new BranchASTNode(branches);
+            }
+            case BREAK -> new BreakASTNode(readEnum(Breakpoint.Type.class), node());
+            case WHILE -> new WhileASTNode(node(), node());
+            case FOR_TO -> new ForToASTNode(node(), node(), node());
+            case FOR_DOWNTO -> new ForDowntoASTNode(node(), node(), node());
+            case FOR_IN -> new ForInASTNode(node(), node(), node());
+            case TRY_CATCH -> {
+                String exceptionName = readString();
+                yield new TryCatchASTNode(node(), node(), exceptionName);
+            }
+
+            // Declarations
+            case FUNCTION -> {
+                String name = readString();
+                List<Pair<String, Variable.Type>> parameters = parameters();
+                Variable.Type returnType = readEnum(Variable.Type.class);
+                yield new OrbitFunction(name, parameters.size(), parameters, node(), returnType);
+            }
+            case COROUTINE -> {
+                String name = readString();
+                List<Pair<String, Variable.Type>> parameters = parameters();
+                yield new CoroutineFunction(name, parameters.size(), parameters, node());
+            }
+            case CONSTRUCTOR -> {
+                List<Pair<String, Variable.Type>> parameters = parameters();
+                yield new ClassConstructor(parameters.size(), parameters, node());
+            }
+            case CLASS -> {
+                String name = readString();
+
+                int count = readInt();
+                List<String> superClasses = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    superClasses.add(readString());
+                }
+
+                count = readInt();
+                HashMap<String, Pair<Variable.Type, ASTNode>> fields = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    String field = readString();
+                    Variable.Type type = readEnum(Variable.Type.class);
+                    fields.put(field, new Pair<>(type, node()));
+                }
+
+                count = readInt();
+                HashMap<Pair<String, Integer>, IFunction> functions = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    Pair<String, Integer> key = new Pair<>(readString(), readInt());
+                    functions.put(key, (IFunction) node());
+                }
+
+                count = readInt();
+                HashMap<Integer, ClassConstructor> constructors = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    int parameterCount = readInt();
+                    constructors.put(parameterCount, (ClassConstructor) node());
+                }
+
+                yield new ClassDefinitionASTNode(name, superClasses, fields, functions, constructors);
+            }
+            case RECORD_CAST -> {
+                String className = readString();
+
+                int count = readInt();
+                List<String> fieldNames = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    fieldNames.add(readString());
+                }
+                yield new ClassDeclarationParser.RecordCastFunction(className, fieldNames);
+            }
+            case IMPORT_FILE -> new ImportFileASTNode(readString());
+            case IMPORT_MODULE -> new ImportModuleASTNode(readString());
+
+            default -> throw new IllegalStateException("Unknown node " + tag);
+        };
+
+        if (source != null && offset >= 0) {
+            source.put(node, offset);
+        }
+        return node;
+    }
+
+    private List<ASTNode> nodes() {
+        int count = readInt();
+
+        List<ASTNode> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            nodes.add(node());
+        }
+        return nodes;
+    }
+
+    private List<Pair<String, Variable.Type>> parameters() {
+        int count = readInt();
+
+        List<Pair<String, Variable.Type>> parameters = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            parameters.add(new Pair<>(readString(), readEnum(Variable.Type.class)));
+        }
+        return parameters;
+    }
+
+    private Object value() {
+        byte tag = buffer.get();
+
+        return switch (tag) {
+            case V_NULL -> null;
+            case V_INT -> readInt();
+            case V_LONG -> buffer.getLong();
+            case V_FLOAT -> buffer.getFloat();
+            case V_DOUBLE -> buffer.getDouble();
+            case V_BOOLEAN -> buffer.get() != 0;
+            case V_CHAR -> (char) readInt();
+            case V_BYTE -> buffer.get();
+            case V_SHORT -> (short) readInt();
+            case V_STRING -> readString();
+            case V_LIST -> {
+                int count = readInt();
+                List<Object> list = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    list.add(value());
+                }
+                yield list;
+            }
+            case V_MAP -> {
+                int count = readInt();
+                HashMap<Object, Object> map = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    map.put(value(), value());
+                }
+                yield map;
+            }
+            default -> throw new IllegalStateException("Unknown value " + tag);
+        };
+    }
+
+    // Primitives
+
+    private int readInt() {
+        int bits = 0;
+        int shift = 0;
+
+        byte b;
+        do {
+            b = buffer.get();
+            bits |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        return (bits >>> 1) ^ -(bits & 1);
+    }
+
+    private String readString() {
+        int index = readInt();
+        if (index == 0) {
+            return null;
+        }
+        if (index <= strings.size()) {
+            return strings.get(index - 1);
+        }
+
+        byte[] bytes = new byte[readInt()];
+        buffer.get(bytes);
+
+        String value = new String(bytes, StandardCharsets.UTF_8).intern();
+        strings.add(value);
+        return value;
+    }
+
+    private <E extends Enum<E>> E readEnum(Class<E> type) {
+        String name = readString();
+        return name == null ? null : Enum.valueOf(type, name);
+    }
+}
@@ -0,0 +1,458 @@
+package com.softlocked.orbit.parser.cache;
+
+import com.softlocked.orbit.core.ast.ASTNode;
+import com.softlocked.orbit.core.ast.SourceMap;
+import com.softlocked.orbit.core.datatypes.Variable;
+import com.softlocked.orbit.core.datatypes.functions.IFunction;
+import com.softlocked.orbit.interpreter.ast.generic.BodyASTNode;
+import com.softlocked.orbit.interpreter.ast.generic.TryCatchASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.WhileASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForDowntoASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForInASTNode;
+import com.softlocked.orbit.interpreter.ast.loops.forloops.ForToASTNode;
+import com.softlocked.orbit.interpreter.ast.object.ClassDefinitionASTNode;
+import com.softlocked.orbit.interpreter.ast.object.ConstObjASTNode;
+import com.softlocked.orbit.interpreter.ast.object.DecObjASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.OperationASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.ReferenceASTNode;
+import com.softlocked.orbit.interpreter.ast.operation.TernaryASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.BranchASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.ConditionalASTNode;
+import com.softlocked.orbit.interpreter.ast.statement.controlflow.BreakASTNode;
+import com.softlocked.orbit.interpreter.ast.value.StringTemplateASTNode;
+import com.softlocked.orbit.interpreter.ast.value.ValueASTNode;
+import com.softlocked.orbit.interpreter.ast.value.VariableASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.AssignVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.ConstVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.DecVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.DeleteVarASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.FunctionCallASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.collection.CollectionAccessASTNode;
+import com.softlocked.orbit.interpreter.ast.variable.collection.CollectionSetASTNode;
+import com.softlocked.orbit.interpreter.function.BFunction;
+import com.softlocked.orbit.interpreter.function.ClassConstructor;
+import com.softlocked.orbit.interpreter.function.OrbitFunction;
+import com.softlocked.orbit.interpreter.function.coroutine.CoroutineFunction;
+import com.softlocked.orbit.opm.ast.pkg.ImportFileASTNode;
+import com.softlocked.orbit.opm.ast.pkg.ImportModuleASTNode;
+import com.softlocked.orbit.parser.parsers.ClassDeclarationParser;
+import com.softlocked.orbit.utils.Pair;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.softlocked.orbit.parser.cache.AstFormat.*;
+
+/**
+ * Writes a parsed (not yet resolved) program in the layout of {@link AstFormat}
+ * @see AstReader
+ */
+final class AstWriter {
+    /**
+     * Thrown for nodes and values which can't be written, in which case the program isn't cached
+     */
+    static final class Unsupported extends Exception {
+        Unsupported(Object what) {
+            super(String.valueOf(what), null, false, false);
+        }
+    }
+
+    private final SourceMap source;
+
+    private byte[] buffer = new byte[4096];
+    private int size;
+
+    private final HashMap<String, Integer> strings = new HashMap<>();
+
+    AstWriter(SourceMap source) {
+        this.source = source;
+    }
+
+    /**
+     * Writes a program
+     * @return The bytes of the file
+     */
+    static byte[] write(ASTNode program, SourceMap source) throws Unsupported {
+        AstWriter writer = new AstWriter(source);
+
+        writer.writeFixed(MAGIC);
+        writer.writeFixed(VERSION);
+        writer.node(program);
+
+        return Arrays.copyOf(writer.buffer, writer.size);
+    }
+
+    private void node(ASTNode node) throws Unsupported {
+        if (node == null) {
+            writeByte(NULL);
+            return;
+        }
+
+        switch (node) {
+            // Subclasses come before the classes they extend
+            case CoroutineFunction function -> {
+                header(COROUTINE, node);
+                writeString(function.getName());
+                parameters(function.getParameterNames(), function.getParameters());
+                node(function.getBody());
+            }
+            case OrbitFunction function -> {
+                header(FUNCTION, node);
+                writeString(function.getName());
+                parameters(function.getParameterNames(), function.getParameters());
+                writeEnum(function.getReturnType());
+                node(function.getBody());
+            }
+            case ClassConstructor constructor -> {
+                header(CONSTRUCTOR, node);
+                parameters(constructor.getParameterNames(), constructor.getParameters());
+                node(constructor.getBody());
+            }
+            case ClassDeclarationParser.RecordCastFunction cast -> {
+                header(RECORD_CAST, node);
+                writeString(cast.getClassName());
+                writeInt(cast.getFieldNames().size());
+                for (String field : cast.getFieldNames()) {
+                    writeString(field);
+                }
+            }
+            case BFunction baked -> {
+                header(BAKED_CALL, node);
+                writeString(baked.getClass().getName());
+                nodes(baked.getValues());
+            }
+
+            case BodyASTNode body -> {
+                header(BODY, node);
+                nodes(body.getStatements());
+            }
+            case ValueASTNode value -> {
+                header(VALUE, node);
+                value(value.value());
+            }
+            case VariableASTNode variable -> {
+                header(VARIABLE, node);
+                writeString(variable.name());
+                writeInt(variable.hash());
+            }
+            case StringTemplateASTNode template -> {
+                header(TEMPLATE, node);
+                writeInt(template.segments().length);
+                for (String segment : template.segments()) {
+                    writeString(segment);
+                }
+                nodes(Arrays.asList(template.expressions()));
+            }
+            case OperationASTNode operation -> {
+                header(OPERATION, node);
+                writeEnum(operation.type());
+                node(operation.left());
+                node(operation.right());
+            }
+            case ReferenceASTNode reference -> {
+                header(REFERENCE, node);
+                node(reference.param());
+                node(reference.function());
+            }
+            case TernaryASTNode ternary -> {
+                header(TERNARY, node);
+                node(ternary.condition());
+                node(ternary.trueBranch());
+                node(ternary.falseBranch());
+            }
+            case FunctionCallASTNode call -> {
+                header(CALL, node);
+                writeString(call.name());
+                nodes(call.args());
+            }
+
+            // Variables
+            case DecVarASTNode declaration -> {
+                header(DECLARE, node);
+                writeString(declaration.variableName());
+                writeInt(declaration.hash());
+                writeEnum(declaration.type());
+                node(declaration.value());
+            }
+            case ConstVarASTNode declaration -> {
+                header(CONSTANT, node);
+                writeString(declaration.variableName());
+                writeInt(declaration.hash());
+                writeEnum(declaration.type());
+                node(declaration.value());
+            }
+            case AssignVarASTNode assign -> {
+                header(ASSIGN, node);
+                writeString(assign.variableName());
+                writeInt(assign.hash());
+                node(assign.value());
+            }
+            case DeleteVarASTNode delete -> {
+                header(DELETE, node);
+                writeString(delete.variableName());
+                writeInt(delete.hash());
+            }
+            case DecObjASTNode declaration -> {
+                header(DECLARE_OBJECT, node);
+                writeString(declaration.variableName());
+                writeInt(declaration.hash());
+                writeString(declaration.clazz());
+                node(declaration.value());
+            }
+            case ConstObjASTNode declaration -> {
+                header(CONSTANT_OBJECT, node);
+                writeString(declaration.variableName());
+                writeInt(declaration.hash());
+                writeString(declaration.clazz());
+                node(declaration.value());
+            }
+            case CollectionAccessASTNode access -> {
+                header(COLLECTION_GET, node);
+                node(access.collection);
+                nodes(access.indices);
+            }
+            case CollectionSetASTNode set -> {
+                header(COLLECTION_SET, node);
+                node(set.collection);
+                nodes(set.indices);
+                node(set.value);
+            }
+
+            // Control flow
+            case ConditionalASTNode conditional -> {
+                header(CONDITIONAL, node);
+                node(conditional.condition());
+                node(conditional.thenBranch());
+                node(conditional.elseBranch());
+            }
+            case BranchASTNode branch -> {
+                header(BRANCH, node);
+                writeInt(branch.branches().size());
+                for (Pair<ASTNode, ASTNode> pair : branch.branches()) {
+                    node(pair.first);
+                    node(pair.second);
+                }
+            }
+            case BreakASTNode breakNode -> {
+                header(BREAK, node);
+                writeEnum(breakNode.getType());
+                node(breakNode.getValue());
+            }
+            case WhileASTNode loop -> {
+                header(WHILE, node);
+                node(loop.condition());
+                node(loop.body());
+            }
+            case ForToASTNode loop -> {
+                header(FOR_TO, node);
+                node(loop.init());
+                node(loop.end());
+                node(loop.body());
+            }
+            case ForDowntoASTNode loop -> {
+                header(FOR_DOWNTO, node);
+                node(loop.init());
+                node(loop.end());
+                node(loop.body());
+            }
+            case ForInASTNode loop -> {
+                header(FOR_IN, node);
+                node(loop.init());
+                node(loop.iterable());
+                node(loop.body());
+            }
+            case TryCatchASTNode tryCatch -> {
+                header(TRY_CATCH, node);
+                writeString(tryCatch.exceptionName());
+                node(tryCatch.tryBlock());
+                node(tryCatch.catchBlock());
+            }
+
+            // Declarations
+            case ClassDefinitionASTNode definition -> {
+                header(CLASS, node);
+                writeString(definition.name());
+
+                writeInt(definition.superClasses().size());
+                for (String superClass : definition.superClasses()) {
+                    writeString(superClass);
+                }
+
+                writeInt(definition.fields().size());
+                for (Map.Entry<String, Pair<Variable.Type, ASTNode>> field : definition.fields().entrySet()) {
+                    writeString(field.getKey());
+                    writeEnum(field.getValue().first);
+                    node(field.getValue().second);
+                }
+
+                writeInt(definition.functions().size());
+                for (Map.Entry<Pair<String, Integer>, IFunction> function : definition.functions().entrySet()) {
+                    writeString(function.getKey().first);
+                    writeInt(function.getKey().second);
+                    node(function.getValue());
+                }
+
+                writeInt(definition.constructors().size());
+                for (Map.Entry<Integer, ClassConstructor> constructor : definition.constructors().entrySet()) {
+                    writeInt(constructor.getKey());
+                    node(constructor.getValue());
+                }
+            }
+            case ImportFileASTNode importFile -> {
+                header(IMPORT_FILE, node);
+                writeString(importFile.fileName());
+            }
+            case ImportModuleASTNode importModule -> {
+                header(IMPORT_MODULE, node);
+                writeString(importModule.moduleName());
+            }
+
+            default -> throw new Unsupported(node.getClass());
+        }
+    }
+
+    private void header(byte tag, ASTNode node) {
+        writeByte(tag);
+        writeInt(source == null ? 0 : source.getOffset(node) + 1);
+    }
+
+    private void nodes(List<? extends ASTNode> nodes) throws Unsupported {
+        writeInt(nodes.size());
+        for (ASTNode node : nodes) {
+            node(node);
+        }
+    }
+
+    private void parameters(String[] names, Pair<Integer, Variable.Type>[] parameters) {
+        writeInt(names.length);
+        for (int i = 0; i < names.length; i++) {
+            writeString(names[i]);
+            writeEnum(parameters[i].second);
+        }
+    }
+
+    private void value(Object value) throws Unsupported {
+        switch (value) {
+            case null -> writeByte(V_NULL);
+            case Integer i -> {
+                writeByte(V_INT);
+                writeInt(i);
+            }
+            case Long l -> {
+                writeByte(V_LONG);
+                writeFixed((int) (l >>> 32));
+                writeFixed((int) (long) l);
+            }
+            case Float f -> {
+                writeByte(V_FLOAT);
+                writeFixed(Float.floatToRawIntBits(f));
+            }
+            case Double d -> {
+                writeByte(V_DOUBLE);
+                long bits = Double.doubleToRawLongBits(d);
+                writeFixed((int) (bits >>> 32));
+                writeFixed((int) bits);
+            }
+            case Boolean b -> {
+                writeByte(V_BOOLEAN);
+                writeByte((byte) (b ? 1 : 0));
+            }
+            case Character c -> {
+                writeByte(V_CHAR);
+                writeInt(c);
+            }
+            case Byte b -> {
+                writeByte(V_BYTE);
+                writeByte(b);
+            }
+            case Short s -> {
+                writeByte(V_SHORT);
+                writeInt(s);
+            }
+            case String s -> {
+                writeByte(V_STRING);
+                writeString(s);
+            }
+            case List<?> list -> {
+                writeByte(V_LIST);
+                writeInt(list.size());
+                for (Object element : list) {
+                    value(element);
+                }
+            }
+            case Map<?, ?> map -> {
+                writeByte(V_MAP);
+                writeInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    value(entry.getKey());
+                    value(entry.getValue());
+                }
+            }
+            default -> throw new Unsupported(value.getClass());
+        }
+    }
+
+    // Primitives
+
+    private void ensure(int bytes) {
+        if (size + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+        }
+    }
+
+    private void writeByte(byte value) {
+        ensure(1);
+        buffer[size++] = value;
+    }
+
+    private void writeFixed(int value) {
+        ensure(4);
+        buffer[size++] = (byte) (value >>> 24);
+        buffer[size++] = (byte) (value >>> 16);
+        buffer[size++] = (byte) (value >>> 8);
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * Writes an int in 1 to 5 bytes, 7 bits at a time. Negative numbers are zigzag encoded so that small ones stay short.
+     */
+    private void writeInt(int value) {
+        int bits = (value << 1) ^ (value >> 31);
+
+        ensure(5);
+        while ((bits & ~0x7F) != 0) {
+            buffer[size++] = (byte) ((bits & 0x7F) | 0x80);
+            bits >>>= 7;
+        }
+        buffer[size++] = (byte) bits;
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            writeInt(0);
+            return;
+        }
+
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeInt(index + 1);
+            return;
+        }
+
+        strings.put(value, strings.size());
+        writeInt(strings.size());
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void writeEnum(Enum<?> value) {
+        writeString(value == null ? null : value.name());
+    }
+}
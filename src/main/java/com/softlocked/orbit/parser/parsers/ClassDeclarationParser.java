@@ -144,39 +144,61 @@ public class ClassDeclarationParser implements TokenParser {
 
         constructors.put(parameters.size(), new ClassConstructor(parameters.size(), parameters, constructorBody));
 
-        final List<Pair<String, Variable.Type>> finalParams = new ArrayList<>(parameters);
-        functions.put(
-            new Pair<>("cast", 1),
-            new NativeFunction("cast", List.of(Variable.Type.STRING), Variable.Type.ANY) {
-                @Override
-                public Object call(ILocalContext localContext, Object[] args) {
-                    String type = (String) args[0];
-                    if (type.equals("string")) {
-                        try {
-                            StringBuilder sb = new StringBuilder();
-                            sb.append(className).append("(");
-
-                            for (int i = 0; i < finalParams.size(); i++) {
-                                String name = finalParams.get(i).first.substring(1);
-                                Object value = new VariableASTNode(name, name.hashCode()).evaluate(localContext);
-                                value = Utils.cast(value, String.class);
-                                sb.append(value);
-
-                                if (i != finalParams.size() - 1) {
-                                    sb.append(", ");
-                                }
-                            }
-
-                            sb.append(")");
-                            return sb.toString();
-                        } catch (InterruptedException e) {
-                            throw new RuntimeException(e);
+        List<String> fieldNames = new ArrayList<>();
+        for (Pair<String, Variable.Type> param : parameters) {
+            fieldNames.add(param.first.substring(1));
+        }
+        functions.put(new Pair<>("cast", 1), new RecordCastFunction(className, fieldNames));
+    }
+
+    /**
+     * The <code>cast</code> method of a record, which turns it into a string like <code>Name(a, b)</code>
+     */
+    public static final class RecordCastFunction extends NativeFunction {
+        private final String className;
+        private final List<String> fieldNames;
+
+        public RecordCastFunction(String className, List<String> fieldNames) {
+            super("cast", List.of(Variable.Type.STRING), Variable.Type.ANY);
+            this.className = className;
+            this.fieldNames = fieldNames;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public List<String> getFieldNames() {
+            return fieldNames;
+        }
+
+        @Override
+        public Object call(ILocalContext localContext, Object[] args) {
+            String type = (String) args[0];
+            if (type.equals("string")) {
+                try {
+                    StringBuilder sb = new StringBuilder();
+                    sb.append(className).append("(");
+
+                    for (int i = 0; i < fieldNames.size(); i++) {
+                        String name = fieldNames.get(i);
+                        Object value = new VariableASTNode(name, name.hashCode()).evaluate(localContext);
+                        value = Utils.cast(value, String.class);
+                        sb.append(value);
+
+                        if (i != fieldNames.size() - 1) {
+                            sb.append(", ");
                         }
                     }
-                    return null;
+
+                    sb.append(")");
+                    return sb.toString();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
                 }
             }
-        );
+            return null;
+        }
     }
 
     private void extractClassMembers(ASTNode bodyNode,
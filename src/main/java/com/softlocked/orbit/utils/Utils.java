@@ -1,14 +1,13 @@
 package com.softlocked.orbit.utils;
 
 import com.google.gson.Gson;
-import com.softlocked.orbit.core.ast.ASTNode;
 import com.softlocked.orbit.core.datatypes.Variable;
 import com.softlocked.orbit.core.datatypes.classes.OrbitObject;
 import com.softlocked.orbit.core.evaluator.Evaluator;
 import com.softlocked.orbit.core.exception.ParsingException;
-import com.softlocked.orbit.lexer.Lexer;
+import com.softlocked.orbit.interpreter.memory.GlobalContext;
 import com.softlocked.orbit.memory.ILocalContext;
-import com.softlocked.orbit.parser.Parser;
+import com.softlocked.orbit.parser.ExpressionParser;
 
 import java.util.*;
 import java.util.regex.Matcher;
@@ -75,34 +74,25 @@ public class Utils {
     private static final Pattern CARRIAGE_RETURN_PATTERN = Pattern.compile("\\\\r");
     private static final Pattern QUOTE_PATTERN = Pattern.compile("\\\\\"");
 
-    public static String formatString(String s, ILocalContext context) throws ParsingException, InterruptedException {
-        String formattedString = NEWLINE_PATTERN.matcher(s).replaceAll("\n");
-        formattedString = TAB_PATTERN.matcher(formattedString).replaceAll("\t");
-        formattedString = CARRIAGE_RETURN_PATTERN.matcher(formattedString).replaceAll("\r");
-        formattedString = QUOTE_PATTERN.matcher(formattedString).replaceAll("\"");
-
-        formattedString = unescapeUnicode(formattedString);
-
-        // And lastly, if it contains '${...}', replace it with the value of the expression inside the brackets
-        String regex = "(?<!\\\\)\\$\\{[^{}]*\\}";
-        Matcher matcher = Pattern.compile(regex).matcher(formattedString);
-
-        while (matcher.find()) {
-            String expression = matcher.group().substring(2, matcher.group().length() - 1);
-
-            List<String> tokens = new Lexer(expression).tokenize();
+    /**
+     * Replaces the escape sequences in the contents of a string literal
+     */
+    public static String unescape(String s) {
+        String unescaped = NEWLINE_PATTERN.matcher(s).replaceAll("\n");
+        unescaped = TAB_PATTERN.matcher(unescaped).replaceAll("\t");
+        unescaped = CARRIAGE_RETURN_PATTERN.matcher(unescaped).replaceAll("\r");
+        unescaped = QUOTE_PATTERN.matcher(unescaped).replaceAll("\"");
 
-            ASTNode node = Parser.parse(tokens, context.getRoot());
-
-            Object value = node.evaluate(context);
-
-            formattedString = formattedString.replace(matcher.group(), cast(value, String.class).toString());
-        }
-
-        // Replace '\$' with '$'
-        formattedString = formattedString.replace("\\$", "$");
+        return unescapeUnicode(unescaped);
+    }
 
-        return formattedString;
+    /**
+     * Evaluates a string the same way a string literal with the same contents would be evaluated.
+     * Literals in code are parsed once instead.
+     * @see ExpressionParser#parseStringLiteral(String, GlobalContext)
+     */
+    public static String formatString(String s, ILocalContext context) throws ParsingException, InterruptedException {
+        return (String) ExpressionParser.parseStringLiteral(s, context.getRoot()).evaluate(context);
     }
 
     private static String unescapeUnicode(String input) {